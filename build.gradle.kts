@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "1.9.25"
     id("org.jetbrains.intellij") version "1.17.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
@@ -14,6 +15,24 @@ repositories {
 dependencies {
     implementation("dev.langchain4j:langchain4j:0.24.0")
     implementation("dev.langchain4j:langchain4j-open-ai:0.24.0")
+    // The platform's test framework is added by the IntelliJ plugin and runs on JUnit 4
+    testImplementation("junit:junit:4.13.2")
+}
+
+// Benchmarks run outside the IDE, against the same platform jars the plugin is compiled with.
+// Run with ./gradlew jmh, results are written to build/results/jmh/results.json
+sourceSets.named("jmh") {
+    compileClasspath += sourceSets.main.get().compileClasspath
+    runtimeClasspath += sourceSets.main.get().compileClasspath
+}
+
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    // The platform jars have more entries than a plain zip allows
+    zip64.set(true)
 }
 
 // Configure Gradle IntelliJ Plugin
@@ -22,7 +41,7 @@ intellij {
     version.set("2023.2.8")
     type.set("IC") // Target IDE Platform
 
-    plugins.set(listOf(/* Plugin Dependencies */))
+    plugins.set(listOf("com.intellij.java"))
 }
 
 tasks {
@@ -0,0 +1,80 @@
+package services;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonManagerImpl;
+import com.intellij.mock.MockApplication;
+import com.intellij.mock.MockProject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import settings.PluginSettings;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A headless application with the plugin's services, so that benchmarks can drive the real code
+ * paths without starting an IDE.
+ */
+final class BenchmarkEnvironment {
+    private static Disposable disposable;
+    private static Project project;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Starts the application on first use and resets the settings to their defaults, with every
+     * cache switched off so that each invocation does the full work.
+     */
+    static synchronized PluginSettings start() throws IOException {
+        if (disposable == null) {
+            File home = FileUtil.createTempDirectory("eeagent-benchmark", null, true);
+            System.setProperty(PathManager.PROPERTY_SYSTEM_PATH, new File(home, "system").getPath());
+            System.setProperty(PathManager.PROPERTY_CONFIG_PATH, new File(home, "config").getPath());
+            System.setProperty(PathManager.PROPERTY_LOG_PATH, new File(home, "log").getPath());
+
+            disposable = Disposer.newDisposable("EEAgent benchmarks");
+            MockApplication application = new MockApplication(disposable);
+            ApplicationManager.setApplication(application, disposable);
+            application.registerService(PluginSettings.class, new PluginSettings());
+            application.registerService(ExecutionCache.class, new ExecutionCache());
+            application.registerService(LlmResponseCache.class, new LlmResponseCache());
+            application.registerService(LlmRequestScheduler.class, new LlmRequestScheduler());
+            application.registerService(MetricsRegistry.class, new MetricsRegistry());
+            application.registerService(ModelStatistics.class, new ModelStatistics());
+            application.registerService(CdsArchiveManager.class, new CdsArchiveManager());
+            application.registerService(ComparisonManager.class, new ComparisonManagerImpl());
+            WorkspacePool workspacePool = new WorkspacePool();
+            Disposer.register(disposable, workspacePool);
+            application.registerService(WorkspacePool.class, workspacePool);
+            ExecutionWorkerPool workerPool = new ExecutionWorkerPool();
+            Disposer.register(disposable, workerPool);
+            application.registerService(ExecutionWorkerPool.class, workerPool);
+            project = new MockProject(null, disposable);
+
+            // Worker JVMs must not outlive the benchmark fork.
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> Disposer.dispose(disposable)));
+        }
+
+        PluginSettings settings = PluginSettings.getInstance();
+        settings.loadState(new PluginSettings.State());
+        settings.setExecutionCacheEnabled(false);
+        settings.setLlmCacheEnabled(false);
+        // The daemon needs a real project; the forked compiler is measured instead.
+        settings.setUseKotlinDaemon(false);
+        // The mock project has no PSI, so every candidate goes to the compiler and the model.
+        settings.setPsiPreCheck(false);
+        settings.setQuickFixes(false);
+        // Building the class-data archive in the background would disturb other measurements.
+        settings.setStartupTunedRuns(false);
+        return settings;
+    }
+
+    static Project project() {
+        return project;
+    }
+}
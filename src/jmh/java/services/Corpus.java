@@ -0,0 +1,60 @@
+package services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Broken snippets of different sizes with their fixed versions. Every Java snippet declares
+ * {@code Main} in the default package, like the code the executor compiles on its own.
+ */
+final class Corpus {
+    // Enough generated methods to turn the medium snippet into a file of about 2000 lines.
+    private static final int LARGE_EXTRA_METHODS = 150;
+
+    private Corpus() {
+    }
+
+    /**
+     * @param size     {@code small}, {@code medium} or {@code large}
+     * @param language {@code java} or {@code kt}
+     */
+    static String broken(String size, String language) throws IOException {
+        return load(size, "broken", language);
+    }
+
+    static String fixed(String size, String language) throws IOException {
+        return load(size, "fixed", language);
+    }
+
+    private static String load(String size, String variant, String language) throws IOException {
+        if (size.equals("large")) {
+            return enlarge(load("medium", variant, language));
+        }
+        String name = "/corpus/" + size + "." + variant + "." + language;
+        try (InputStream in = Corpus.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing corpus snippet " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Adds helper methods before the last closing brace, so the error stays where it was.
+     */
+    private static String enlarge(String source) {
+        StringBuilder methods = new StringBuilder();
+        for (int i = 0; i < LARGE_EXTRA_METHODS; i++) {
+            methods.append("\n    static int helper").append(i).append("(int[] values) {\n")
+                    .append("        int result = ").append(i).append(";\n")
+                    .append("        for (int value : values) {\n")
+                    .append("            result = result * 31 + value;\n")
+                    .append("        }\n")
+                    .append("        return result;\n")
+                    .append("    }\n");
+        }
+        int end = source.lastIndexOf('}');
+        return source.substring(0, end) + methods + source.substring(end);
+    }
+}
@@ -0,0 +1,53 @@
+package services;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import models.DiffHunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing the original and the fixed code: the hunks the preview highlights, by line and by word,
+ * and the hunks a follow-up prompt carries.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private String broken;
+    private String fixed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.start();
+        broken = Corpus.broken(size, "java");
+        fixed = Corpus.fixed(size, "java");
+    }
+
+    @Benchmark
+    public List<DiffHunk> previewHunks() {
+        return DiffEngine.compute(broken, fixed, false, new EmptyProgressIndicator());
+    }
+
+    @Benchmark
+    public List<DiffHunk> previewHunksWithWords() {
+        return DiffEngine.compute(broken, fixed, true, new EmptyProgressIndicator());
+    }
+
+    @Benchmark
+    public String followUpDiff() {
+        return LineDiff.describe(broken, fixed);
+    }
+}
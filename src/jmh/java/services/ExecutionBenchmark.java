@@ -0,0 +1,71 @@
+package services;
+
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import models.ExecutionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import settings.PluginSettings;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link CodeExecutor#execute} for Java. {@code compileError} stops after the compiler
+ * reports the error, {@code compileAndRun} compiles the fixed snippet and runs it, so the
+ * difference between the two is the run stage. {@code startupTuned} starts the run with the
+ * class-data archive and startup flags, which only affects runs in a new JVM.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExecutionBenchmark {
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    @Param({PluginSettings.COMPILER_FORKED, PluginSettings.COMPILER_IN_PROCESS})
+    public String compilerMode;
+
+    @Param({PluginSettings.EXECUTION_PROCESS, PluginSettings.EXECUTION_WORKER})
+    public String executionMode;
+
+    @Param({"false", "true"})
+    public boolean startupTuned;
+
+    private CodeExecutor executor;
+    private String broken;
+    private String fixed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PluginSettings settings = BenchmarkEnvironment.start();
+        settings.setCompilerMode(compilerMode);
+        settings.setExecutionMode(executionMode);
+        settings.setStartupTunedRuns(startupTuned);
+        if (startupTuned && CdsArchiveManager.getInstance().prepare(null).get() == null) {
+            throw new IllegalStateException("Could not build the class-data archive, is java 13 or later on the PATH?");
+        }
+        executor = new CodeExecutor(null);
+        broken = Corpus.broken(size, "java");
+        fixed = Corpus.fixed(size, "java");
+
+        if (!executor.execute(fixed, new ProgressIndicatorBase(), false).isSuccess()) {
+            throw new IllegalStateException("The fixed " + size + " snippet does not run");
+        }
+    }
+
+    @Benchmark
+    public ExecutionResult compileError() throws Exception {
+        return executor.execute(broken, new ProgressIndicatorBase(), false);
+    }
+
+    @Benchmark
+    public ExecutionResult compileAndRun() throws Exception {
+        return executor.execute(fixed, new ProgressIndicatorBase(), false);
+    }
+}
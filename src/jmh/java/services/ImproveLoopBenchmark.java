@@ -0,0 +1,61 @@
+package services;
+
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import models.FixOutcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import settings.PluginSettings;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole execute and improve run against a scripted model that answers with the fixed snippet:
+ * the failing compilation, the prompt, the model call and the verification of its answer. Opening
+ * the preview needs an editor and is left out. {@code llmLatencyMillis} imitates the model's
+ * response time, it is zero by default so that only the plugin's own overhead is measured.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ImproveLoopBenchmark {
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean streamResponses;
+
+    @Param({"0"})
+    public int llmLatencyMillis;
+
+    private CodeExecutorImprover improver;
+    private String broken;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PluginSettings settings = BenchmarkEnvironment.start();
+        settings.setStreamResponses(streamResponses);
+        broken = Corpus.broken(size, "java");
+        String answer = "```java\n" + Corpus.fixed(size, "java") + "\n```";
+
+        ScriptedChatBackend backend = new ScriptedChatBackend(messages -> answer, Duration.ofMillis(llmLatencyMillis));
+        OpenAIService openAiService = new OpenAIService(backend, LlmRequestScheduler.Priority.INTERACTIVE);
+        improver = new CodeExecutorImprover(new CodeExecutor(null), BenchmarkEnvironment.project(), openAiService, false);
+
+        if (!fix().isFixed()) {
+            throw new IllegalStateException("The scripted fix for the " + size + " snippet does not pass");
+        }
+    }
+
+    @Benchmark
+    public FixOutcome fix() throws Exception {
+        return improver.fix(broken, new ProgressIndicatorBase());
+    }
+}
@@ -0,0 +1,67 @@
+package services;
+
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import models.ExecutionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import settings.PluginSettings;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link CodeExecutor#execute} for Kotlin with a forked kotlinc, which has to be on the
+ * PATH.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class KotlinExecutionBenchmark {
+    @Param({PluginSettings.EXECUTION_PROCESS, PluginSettings.EXECUTION_WORKER})
+    public String executionMode;
+
+    @Param({"false", "true"})
+    public boolean startupTuned;
+
+    private CodeExecutor executor;
+    private String broken;
+    private String fixed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        PluginSettings settings = BenchmarkEnvironment.start();
+        settings.setExecutionMode(executionMode);
+        settings.setStartupTunedRuns(startupTuned);
+        File kotlinHome = KotlinCompileDaemon.findKotlinHome();
+        if (startupTuned && kotlinHome != null
+                && CdsArchiveManager.getInstance().prepare(new File(kotlinHome, "lib/kotlin-stdlib.jar")).get() == null) {
+            throw new IllegalStateException("Could not build the class-data archive for Kotlin runs");
+        }
+        executor = new CodeExecutor(null);
+        broken = Corpus.broken("small", "kt");
+        fixed = Corpus.fixed("small", "kt");
+
+        ExecutionResult result = executor.execute(fixed, new ProgressIndicatorBase(), true);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("The fixed Kotlin snippet does not run, is kotlinc on the PATH? "
+                    + result.getErrors());
+        }
+    }
+
+    @Benchmark
+    public ExecutionResult compileError() throws Exception {
+        return executor.execute(broken, new ProgressIndicatorBase(), true);
+    }
+
+    @Benchmark
+    public ExecutionResult compileAndRun() throws Exception {
+        return executor.execute(fixed, new ProgressIndicatorBase(), true);
+    }
+}
@@ -0,0 +1,55 @@
+package services;
+
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.util.io.FileUtil;
+import models.CompilationTarget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The file system work around every compilation: getting a pooled workspace, writing the source
+ * into it and handing it back, compared with a fresh temp directory that is deleted afterwards.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WorkspaceBenchmark {
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private CodeExecutor executor;
+    private String source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.start();
+        executor = new CodeExecutor(null, CompilationTarget.standalone());
+        source = Corpus.broken(size, "java");
+    }
+
+    @Benchmark
+    public File acquireWriteRelease() throws Exception {
+        ProgressIndicatorBase indicator = new ProgressIndicatorBase();
+        WorkspacePool.Workspace workspace = executor.acquireWorkspace(indicator);
+        File sourceFile = executor.createSourceFile(workspace, source, indicator, false);
+        WorkspacePool.getInstance().release(workspace, true);
+        return sourceFile;
+    }
+
+    @Benchmark
+    public boolean createWriteDelete() throws Exception {
+        File tempDir = FileUtil.createTempDirectory("codeexecution", "temp", true);
+        FileUtil.writeToFile(new File(tempDir, "Main.java"), source);
+        return FileUtil.delete(tempDir);
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Main {
+
+    static class Item {
+        private final String name;
+        private final String category;
+        private final int quantity;
+        private final double price;
+
+        Item(String name, String category, int quantity, double price) {
+            this.name = name;
+            this.category = category;
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getCategory() {
+            return category;
+        }
+
+        int getQuantity() {
+            return quantity;
+        }
+
+        double getPrice() {
+            return price;
+        }
+
+        double getValue() {
+            return quantity * price;
+        }
+    }
+
+    static class Inventory {
+        private final List<Item> items = new ArrayList<>();
+
+        void add(Item item) {
+            items.add(item);
+        }
+
+        int totalQuantity() {
+            int total = 0;
+            for (Item item : items) {
+                total += item.getQuantity();
+            }
+            return total;
+        }
+
+        double totalValue() {
+            double total = 0;
+            for (Item item : items) {
+                total += item.getValue();
+            }
+            return total;
+        }
+
+        Map<String, Integer> quantityByCategory() {
+            Map<String, Integer> result = new HashMap<>();
+            for (Item item : items) {
+                result.merge(item.getCategory(), item.getQuantity(), Integer::sum);
+            }
+            return result;
+        }
+
+        List<Item> mostValuable(int count) {
+            List<Item> sorted = new ArrayList<>(items);
+            sorted.sort(Comparator.comparingDouble(Item::getValue).reversed());
+            return sorted.subList(0, Math.min(count, sorted.size()));
+        }
+
+        List<Item> lowStock(int threshold) {
+            List<Item> result = new ArrayList<>();
+            for (Item item : items) {
+                if (item.getQuantity() < threshold) {
+                    result.add(item);
+                }
+            }
+            return result;
+        }
+    }
+
+    public static void main(String[] args) {
+        Inventory inventory = new Inventory();
+        inventory.add(new Item("Hammer", "Tools", 12, 9.99));
+        inventory.add(new Item("Screwdriver", "Tools", 30, 4.49));
+        inventory.add(new Item("Paint", "Supplies", 5, 19.90));
+        inventory.add(new Item("Brush", "Supplies", 42, 2.75));
+        inventory.add(new Item("Ladder", "Equipment", 2, 89.00));
+        inventory.add(new Item("Tape", "Supplies", 3, 1.99));
+
+        System.out.println("Total quantity: " + inventory.totalQuantity());
+        System.out.printf("Total value: %.2f%n", inventory.totalValue());
+        System.out.println("By category: " + inventory.quantityByCategory());
+
+        for (Item item : inventory.mostValuable(3)) {
+            System.out.printf("Valuable: %s (%.2f)%n", item.getName(), item.getValue());
+        }
+        for (Item item : inventory.lowStock(10)) {
+            System.out.println("Reorder: " + item.getName());
+        }
+    }
+}
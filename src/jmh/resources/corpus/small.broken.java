@@ -0,0 +1,16 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public class Main {
+    public static void main(String[] args) {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            numbers.add(i * i)
+        }
+        int sum = 0;
+        for (int n : numbers) {
+            sum += n;
+        }
+        System.out.println("Sum of squares: " + sum);
+    }
+}
@@ -0,0 +1,10 @@
+fun average(values: List<Int>): Double {
+    if (values.isEmpty()) return 0.0
+    return values.sum() / values.size
+}
+
+fun main() {
+    val values = listOf(3, 8, 15, 4, 23, 42)
+    val label: Int = "Average"
+    println("$label: ${average(values)}")
+}
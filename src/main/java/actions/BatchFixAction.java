@@ -0,0 +1,127 @@
+package actions;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import services.BatchFixer;
+import services.BatchReviewPanel;
+import services.LlmClientService;
+import services.LlmRequestScheduler;
+import services.OpenAIService;
+import settings.PluginSettings;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fixes every failing Java and Kotlin file under the selected directories, packages or modules.
+ * The results are collected in one review panel instead of one preview per file.
+ */
+public class BatchFixAction extends AnAction {
+
+    @Override
+    public @NotNull ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+
+        String apiKey = PluginSettings.getInstance().getApiKey();
+        // A local OpenAI-compatible server usually needs no key
+        boolean usesOpenAi = PluginSettings.getInstance().getLlmBaseUrl().isBlank();
+        if (usesOpenAi && (apiKey == null || apiKey.isEmpty())) {
+            Messages.showErrorDialog(project, "Please set your OpenAI API Key in the settings.", "API Key Missing");
+            return;
+        }
+
+        VirtualFile[] roots = selectedRoots(e);
+        // Batch requests queue behind interactive fixes
+        OpenAIService openAiService = LlmClientService.getInstance().get(LlmRequestScheduler.Priority.BATCH);
+        BatchReviewPanel reviewPanel = BatchReviewPanel.show(project);
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Fixing files", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    indicator.setText("Collecting source files...");
+                    List<VirtualFile> files = ReadAction.compute(() -> collectSourceFiles(project, roots));
+                    if (files.isEmpty()) {
+                        showError(project, "No Java or Kotlin source files found in the selection.");
+                        return;
+                    }
+                    indicator.setText("Fixing " + files.size() + " files...");
+                    indicator.setIndeterminate(false);
+                    new BatchFixer(project, openAiService).run(files, indicator, reviewPanel);
+                } catch (ProcessCanceledException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    showError(project, "Batch fix failed: " + ex.getMessage());
+                }
+            }
+        });
+    }
+
+    private static VirtualFile[] selectedRoots(AnActionEvent e) {
+        VirtualFile[] files = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        if (files != null && files.length > 0) {
+            return files;
+        }
+        Module module = e.getData(LangDataKeys.MODULE_CONTEXT);
+        return module != null ? ModuleRootManager.getInstance(module).getSourceRoots() : VirtualFile.EMPTY_ARRAY;
+    }
+
+    private static List<VirtualFile> collectSourceFiles(Project project, VirtualFile[] roots) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Set<VirtualFile> files = new LinkedHashSet<>();
+        for (VirtualFile root : roots) {
+            VfsUtilCore.iterateChildrenRecursively(root, fileIndex::isInContent, file -> {
+                if (!file.isDirectory() && isSourceFile(file) && fileIndex.isInSourceContent(file)) {
+                    files.add(file);
+                }
+                return true;
+            });
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static boolean isSourceFile(VirtualFile file) {
+        String extension = file.getExtension();
+        return "java".equalsIgnoreCase(extension) || "kt".equalsIgnoreCase(extension);
+    }
+
+    private static void showError(Project project, String message) {
+        ApplicationManager.getApplication().invokeLater(() ->
+                Messages.showErrorDialog(project, message, "Error")
+        );
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        boolean hasSelection = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY) != null
+                || e.getData(LangDataKeys.MODULE_CONTEXT) != null;
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null && hasSelection);
+    }
+}
@@ -1,8 +1,12 @@
 package actions;
 
 import com.intellij.openapi.vfs.VirtualFile;
+import models.CompilationTarget;
 import models.ExecutionResult;
 import services.CodeExecutor;
+import services.LlmClientService;
+import services.LlmRequestScheduler;
+import services.ProjectClasspath;
 import services.OpenAIService;
 import services.CodeExecutorImprover;
 import settings.PluginSettings;
@@ -13,6 +17,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -21,13 +26,8 @@ import com.intellij.openapi.ui.Messages;
 import org.jetbrains.annotations.NotNull;
 
 public class Initializer extends AnAction {
-    private final CodeExecutor codeExecutor;
     private CodeExecutorImprover codeExecutorImprover;
 
-    public Initializer() {
-        this.codeExecutor = new CodeExecutor();
-    }
-
     @Override
     public @NotNull ActionUpdateThread getActionUpdateThread() {
         return ActionUpdateThread.BGT;
@@ -43,15 +43,17 @@ public class Initializer extends AnAction {
 
         // Get the latest API key from PluginSettings
         String apiKey = PluginSettings.getInstance().getApiKey();
-        if (apiKey == null || apiKey.isEmpty()) {
+        // A local OpenAI-compatible server usually needs no key
+        boolean usesOpenAi = PluginSettings.getInstance().getLlmBaseUrl().isBlank();
+        if (usesOpenAi && (apiKey == null || apiKey.isEmpty())) {
             ApplicationManager.getApplication().invokeLater(() -> {
                 Messages.showErrorDialog("Please set your OpenAI API Key in the settings.", "API Key Missing");
             });
             throw new IllegalStateException("API Key is missing");
         }
 
-        // Create OpenAIService with the current API key
-        OpenAIService openAiService = new OpenAIService(apiKey);
+        // The shared client keeps its connections; it is rebuilt when the key, model or server changes
+        OpenAIService openAiService = LlmClientService.getInstance().get(LlmRequestScheduler.Priority.INTERACTIVE);
 
         var editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
         if (editor == null) {
@@ -78,6 +80,9 @@ public class Initializer extends AnAction {
         String userCode = document.getText();
 
         // Initialize CodeExecutorImprover with the latest openAiService instance
+        // Compile against the module's classpath so the file can use the rest of the project
+        CompilationTarget target = ProjectClasspath.targetFor(project, currentFile);
+        CodeExecutor codeExecutor = new CodeExecutor(project, target);
         this.codeExecutorImprover = new CodeExecutorImprover(codeExecutor, project, openAiService, isKotlin);
 
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "Executing and improving code", true) {
@@ -87,13 +92,15 @@ public class Initializer extends AnAction {
                     indicator.setText("Preparing execution environment...");
                     indicator.setFraction(0.1);
 
-                    ExecutionResult result = codeExecutorImprover.executeAndImproveCode(userCode, indicator);
+                    ExecutionResult result = codeExecutorImprover.executeAndImproveCode(userCode, document, indicator);
 
                     ApplicationManager.getApplication().invokeLater(() -> {
                         if (!result.isSuccess()) {
                             showError("Final execution failed: " + result.getErrors());
                         }
                     });
+                } catch (ProcessCanceledException ex) {
+                    throw ex;
                 } catch (Exception ex) {
                     ApplicationManager.getApplication().invokeLater(() -> showError("Execution failed: " + ex.getMessage()));
                 }
@@ -0,0 +1,84 @@
+package daemon;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Loads the classes a typical candidate program uses, so that a JVM started with
+ * {@code -XX:ArchiveClassesAtExit} puts them into its class-data archive. Class names given as
+ * arguments are loaded as well, e.g. the Kotlin stdlib. This class must not depend on anything but
+ * the JDK, it runs outside the IDE, and must stay a single class file without nested classes.
+ */
+public final class CdsTrainer {
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> numbers = new ArrayList<>();
+        IntStream.range(0, 100).forEach(numbers::add);
+        List<Integer> linked = new LinkedList<>(numbers);
+        Deque<Integer> deque = new ArrayDeque<>(linked);
+        Set<Integer> set = new HashSet<>(deque);
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, Integer> ordered = new LinkedHashMap<>();
+        TreeMap<String, Integer> sorted = new TreeMap<>();
+        for (int number : set) {
+            counts.merge(number % 2 == 0 ? "even" : "odd", 1, Integer::sum);
+            ordered.put(String.valueOf(number), number);
+            sorted.put(Integer.toHexString(number), number);
+        }
+
+        String joined = numbers.stream()
+                .filter(n -> n % 3 == 0)
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        Map<Boolean, List<Integer>> partitioned = numbers.stream().collect(Collectors.partitioningBy(n -> n > 50));
+        int[] array = numbers.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(array);
+        numbers.sort(Comparator.reverseOrder());
+        Optional<Integer> max = numbers.stream().max(Integer::compare);
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%d %s %.2f%n", counts.size(), joined.length(), Math.sqrt(2)));
+        text.append(String.join(" ", sorted.keySet())).append(partitioned.get(true).size()).append(max.orElse(0));
+        Scanner scanner = new Scanner("1 2 three\n4.5");
+        while (scanner.hasNext()) {
+            text.append(scanner.hasNextInt() ? scanner.nextInt() : scanner.next());
+        }
+        text.append(new BigInteger("123456789").pow(3)).append(new BigDecimal("1.5").multiply(BigDecimal.TEN));
+        text.append(LocalDate.of(2024, 1, 1).plusDays(new Random(42).nextInt(10)));
+        text.append(Integer.parseInt("42")).append(Character.isDigit('4')).append(ordered.size());
+
+        try {
+            throw new IllegalStateException("Exceptions print their stack trace in many candidates");
+        } catch (IllegalStateException e) {
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            text.append(trace.toString().length());
+        }
+
+        for (String className : args) {
+            Class.forName(className);
+        }
+        System.out.println(text.length());
+    }
+}
@@ -0,0 +1,226 @@
+package daemon;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entry point of the reusable worker JVM that runs candidate programs. Every run gets its own
+ * throwaway class loader holding the compiled classes, and System.out/err are captured per run.
+ * <p>
+ * Protocol, one line per message on stdin/stdout:
+ * <pre>
+ * RUN &lt;timeoutMillis&gt; &lt;maxOutputBytes&gt; &lt;mainClass&gt; &lt;classCount&gt; &lt;classpathCount&gt;
+ * &lt;binaryName&gt; &lt;base64 class bytes&gt;        (classCount lines)
+ * &lt;classpath entry&gt;                          (classpathCount lines)
+ *   -> RESULT &lt;OK|FAILED|TIMEOUT|OOM|OUTPUT_LIMIT|EXITED&gt; &lt;base64 stdout&gt; &lt;base64 stderr&gt;
+ * </pre>
+ * stdout and stderr are each cut off at maxOutputBytes, and a program still writing past that is
+ * stopped like one that times out. After TIMEOUT, OOM, OUTPUT_LIMIT or EXITED the worker is gone
+ * and has to be replaced. This class must not
+ * depend on anything but the JDK, it runs outside the IDE.
+ */
+public final class ExecutionWorker {
+    private static final Base64.Encoder ENCODER = Base64.getEncoder();
+    private static final long LIMIT_CHECK_MILLIS = 50;
+
+    private static PrintStream protocol;
+    private static volatile ByteArrayOutputStream currentOut;
+    private static volatile ByteArrayOutputStream currentErr;
+
+    private ExecutionWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        protocol = new PrintStream(System.out, true, StandardCharsets.UTF_8);
+        // A candidate calling System.exit still gets its captured output reported.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (currentOut != null) {
+                respond("EXITED", currentOut, currentErr);
+            }
+        }));
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        // Candidates must never read the protocol stream.
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] header = line.split(" ");
+            if (header.length != 6 || !header[0].equals("RUN")) {
+                continue;
+            }
+
+            long timeoutMillis = Long.parseLong(header[1]);
+            int maxOutputBytes = Integer.parseInt(header[2]);
+            String mainClass = header[3];
+            int classCount = Integer.parseInt(header[4]);
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int i = 0; i < classCount; i++) {
+                String[] entry = in.readLine().split(" ", 2);
+                classes.put(entry[0], Base64.getDecoder().decode(entry[1]));
+            }
+            int classpathCount = Integer.parseInt(header[5]);
+            URL[] classpath = new URL[classpathCount];
+            for (int i = 0; i < classpathCount; i++) {
+                classpath[i] = new File(in.readLine()).toURI().toURL();
+            }
+
+            if (!run(mainClass, classes, classpath, timeoutMillis, maxOutputBytes)) {
+                Runtime.getRuntime().halt(0);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code false} when the worker is no longer in a reusable state.
+     */
+    private static boolean run(String mainClass, Map<String, byte[]> classes, URL[] classpath, long timeoutMillis,
+                               int maxOutputBytes) throws Exception {
+        CappedOutputStream out = new CappedOutputStream(maxOutputBytes);
+        CappedOutputStream err = new CappedOutputStream(maxOutputBytes);
+        PrintStream originalErr = System.err;
+        currentOut = out;
+        currentErr = err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        Throwable[] failure = new Throwable[1];
+        try {
+            ClassLoader loader = new CandidateClassLoader(classes, classpath);
+            Method main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+            Thread runner = new Thread(() -> {
+                try {
+                    main.invoke(null, (Object) new String[0]);
+                } catch (InvocationTargetException e) {
+                    failure[0] = e.getCause();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }, "main");
+            runner.setDaemon(true);
+            runner.setContextClassLoader(loader);
+            runner.start();
+            long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+            while (runner.isAlive() && !out.isExceeded() && !err.isExceeded() && System.nanoTime() < deadline) {
+                runner.join(LIMIT_CHECK_MILLIS);
+            }
+
+            boolean outputExceeded = out.isExceeded() || err.isExceeded();
+            if (runner.isAlive()) {
+                respond(outputExceeded ? "OUTPUT_LIMIT" : "TIMEOUT", out, err);
+                return false;
+            }
+            if (outputExceeded) {
+                respond("OUTPUT_LIMIT", out, err);
+                return true;
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            failure[0] = e;
+        } finally {
+            // Threads left behind by the candidate must not write into the protocol stream.
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            System.setErr(originalErr);
+        }
+
+        if (failure[0] instanceof OutOfMemoryError) {
+            respond("OOM", out, err);
+            return false;
+        }
+        if (failure[0] != null) {
+            PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+            errStream.print("Exception in thread \"main\" ");
+            failure[0].printStackTrace(errStream);
+            respond("FAILED", out, err);
+        } else {
+            respond("OK", out, err);
+        }
+        return true;
+    }
+
+    private static synchronized void respond(String status, ByteArrayOutputStream out, ByteArrayOutputStream err) {
+        currentOut = null;
+        currentErr = null;
+        protocol.println("RESULT " + status + " "
+                + ENCODER.encodeToString(out.toByteArray()) + " "
+                + ENCODER.encodeToString(err.toByteArray()));
+    }
+
+    /**
+     * Keeps the first {@code limit} bytes written and drops the rest.
+     */
+    private static class CappedOutputStream extends ByteArrayOutputStream {
+        private final int limit;
+        private volatile boolean exceeded;
+
+        CappedOutputStream(int limit) {
+            this.limit = limit;
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count < limit) {
+                super.write(b);
+            } else {
+                exceeded = true;
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int accepted = Math.min(len, limit - count);
+            if (accepted > 0) {
+                super.write(b, off, accepted);
+            }
+            if (accepted < len) {
+                exceeded = true;
+            }
+        }
+    }
+
+    /**
+     * Loads the candidate's classes first, so that they replace older copies of the same classes on
+     * the project classpath, and everything else from the project classpath.
+     */
+    private static class CandidateClassLoader extends URLClassLoader {
+        private final Map<String, byte[]> classes;
+
+        CandidateClassLoader(Map<String, byte[]> classes, URL[] classpath) {
+            super("candidate", classpath, ClassLoader.getSystemClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!classes.containsKey(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    byte[] bytes = classes.get(name);
+                    loaded = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+}
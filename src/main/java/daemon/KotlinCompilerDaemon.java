@@ -0,0 +1,73 @@
+package daemon;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Entry point of the warm Kotlin compiler process. It is started with kotlin-compiler.jar on its
+ * class path and keeps one K2JVMCompiler loaded, so every compile after the first skips the JVM and
+ * compiler cold start.
+ * <p>
+ * Protocol, one request per line on stdin and one response per line on stdout:
+ * <pre>
+ * PING                       -> PONG
+ * COMPILE\targ1\targ2...     -> DONE &lt;exitCode&gt; &lt;base64 compiler messages&gt;
+ * SHUTDOWN                   -> (process exits)
+ * </pre>
+ * This class must not depend on anything but the JDK, it runs outside the IDE.
+ */
+public final class KotlinCompilerDaemon {
+    private static final String COMPILER_CLASS = "org.jetbrains.kotlin.cli.jvm.K2JVMCompiler";
+
+    private KotlinCompilerDaemon() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        PrintStream protocol = new PrintStream(System.out, true, StandardCharsets.UTF_8);
+        // Anything the compiler prints on its own must not end up in the protocol stream.
+        System.setOut(System.err);
+
+        Class<?> compilerClass = Class.forName(COMPILER_CLASS);
+        Method exec = compilerClass.getMethod("exec", PrintStream.class, String[].class);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals("PING")) {
+                protocol.println("PONG");
+            } else if (line.equals("SHUTDOWN")) {
+                break;
+            } else if (line.startsWith("COMPILE\t")) {
+                String[] parts = line.split("\t");
+                protocol.println(compile(compilerClass, exec, Arrays.copyOfRange(parts, 1, parts.length)));
+            } else {
+                protocol.println("DONE 3 " + encode("Unknown daemon request: " + line));
+            }
+        }
+        System.exit(0);
+    }
+
+    private static String compile(Class<?> compilerClass, Method exec, String[] compilerArgs) {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        int exitCode;
+        try (PrintStream messageStream = new PrintStream(messages, true, StandardCharsets.UTF_8)) {
+            Object compiler = compilerClass.getDeclaredConstructor().newInstance();
+            Object result = exec.invoke(compiler, messageStream, compilerArgs);
+            exitCode = (Integer) result.getClass().getMethod("getCode").invoke(result);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            messages.writeBytes(("Kotlin compiler daemon failed: " + e).getBytes(StandardCharsets.UTF_8));
+            exitCode = 3;
+        }
+        return "DONE " + exitCode + " " + Base64.getEncoder().encodeToString(messages.toByteArray());
+    }
+
+    private static String encode(String text) {
+        return Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,31 @@
+package models;
+
+import java.util.List;
+import java.util.Map;
+
+public class CompilationResult {
+    private final boolean success;
+    private final List<Diagnostic> diagnostics;
+    private final Map<String, byte[]> classFiles;
+
+    public CompilationResult(boolean success, List<Diagnostic> diagnostics, Map<String, byte[]> classFiles) {
+        this.success = success;
+        this.diagnostics = diagnostics;
+        this.classFiles = classFiles;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Compiled classes keyed by their binary name, e.g. {@code Main} or {@code Main$Inner}.
+     */
+    public Map<String, byte[]> getClassFiles() {
+        return classFiles;
+    }
+}
@@ -0,0 +1,48 @@
+package models;
+
+import java.util.List;
+
+public class CompilationTarget {
+    private final String className;
+    private final List<String> classpath;
+    private final List<String> sourcepath;
+
+    public CompilationTarget(String className, List<String> classpath) {
+        this(className, classpath, List.of());
+    }
+
+    public CompilationTarget(String className, List<String> classpath, List<String> sourcepath) {
+        this.className = className;
+        this.classpath = classpath;
+        this.sourcepath = sourcepath;
+    }
+
+    /**
+     * A standalone snippet: a class called {@code Main} in the default package, without dependencies.
+     */
+    public static CompilationTarget standalone() {
+        return new CompilationTarget("Main", List.of());
+    }
+
+    /**
+     * The simple name of the file's top-level class, which is also the file name without extension.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Output directories and libraries the file is compiled and run against, in resolution order.
+     */
+    public List<String> getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * Source roots whose classes take precedence over the classpath, e.g. files a batch run has
+     * already fixed but the project has not been rebuilt with. Only used for Java.
+     */
+    public List<String> getSourcepath() {
+        return sourcepath;
+    }
+}
@@ -0,0 +1,102 @@
+package models;
+
+import java.util.List;
+
+public class Diagnostic {
+    public static final String ERROR = "error";
+    public static final String WARNING = "warning";
+    public static final String EXCEPTION = "exception";
+
+    private final String file;
+    private final long line;
+    private final long column;
+    private final String severity;
+    private final String code;
+    private final String message;
+    private final List<StackFrame> stackTrace;
+
+    public Diagnostic(String file, long line, long column, String severity, String code, String message) {
+        this(file, line, column, severity, code, message, List.of());
+    }
+
+    public Diagnostic(String file, long line, long column, String severity, String code, String message,
+                      List<StackFrame> stackTrace) {
+        this.file = file;
+        this.line = line;
+        this.column = column;
+        this.severity = severity;
+        this.code = code;
+        this.message = message;
+        this.stackTrace = stackTrace;
+    }
+
+    /**
+     * The source file name, or {@code null} if the diagnostic is not tied to a file.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * The 1-based line number, or 0 if unknown.
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * The 1-based column number, or 0 if unknown.
+     */
+    public long getColumn() {
+        return column;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    /**
+     * The compiler's diagnostic key, e.g. {@code compiler.err.cant.resolve}, or the exception class
+     * for runtime failures. {@code null} when the tool does not report one.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * The frames of a runtime exception, innermost first; empty for compiler diagnostics.
+     */
+    public List<StackFrame> getStackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (file != null) {
+            text.append(file).append(':');
+        }
+        if (line > 0) {
+            text.append(line).append(':');
+            if (column > 0) {
+                text.append(column).append(':');
+            }
+        }
+        if (text.length() > 0) {
+            text.append(' ');
+        }
+        text.append(severity);
+        if (code != null) {
+            text.append(" [").append(code).append(']');
+        }
+        text.append(": ").append(message);
+        for (StackFrame frame : stackTrace) {
+            text.append("\n\t").append(frame);
+        }
+        return text.toString();
+    }
+}
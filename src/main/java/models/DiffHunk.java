@@ -0,0 +1,91 @@
+package models;
+
+import java.util.List;
+
+/**
+ * One change between two versions of a text. Lines are 0-based with exclusive ends, so an insertion
+ * has an empty range in the original and a deletion an empty range in the improved text.
+ */
+public class DiffHunk {
+    public enum Kind {
+        INSERTED,
+        DELETED,
+        MODIFIED
+    }
+
+    private final int originalStartLine;
+    private final int originalEndLine;
+    private final int improvedStartLine;
+    private final int improvedEndLine;
+    private final List<WordChange> wordChanges;
+
+    public DiffHunk(int originalStartLine, int originalEndLine, int improvedStartLine, int improvedEndLine,
+                    List<WordChange> wordChanges) {
+        this.originalStartLine = originalStartLine;
+        this.originalEndLine = originalEndLine;
+        this.improvedStartLine = improvedStartLine;
+        this.improvedEndLine = improvedEndLine;
+        this.wordChanges = wordChanges;
+    }
+
+    public Kind getKind() {
+        if (originalStartLine == originalEndLine) {
+            return Kind.INSERTED;
+        }
+        if (improvedStartLine == improvedEndLine) {
+            return Kind.DELETED;
+        }
+        return Kind.MODIFIED;
+    }
+
+    public int getOriginalStartLine() {
+        return originalStartLine;
+    }
+
+    public int getOriginalEndLine() {
+        return originalEndLine;
+    }
+
+    public int getImprovedStartLine() {
+        return improvedStartLine;
+    }
+
+    public int getImprovedEndLine() {
+        return improvedEndLine;
+    }
+
+    /**
+     * The changed words inside a modified hunk, empty if the diff was computed by line only or the
+     * lines differ too much for a word diff to be useful.
+     */
+    public List<WordChange> getWordChanges() {
+        return wordChanges;
+    }
+
+    @Override
+    public String toString() {
+        return getKind() + " " + originalStartLine + "-" + originalEndLine + " -> " + improvedStartLine + "-" + improvedEndLine;
+    }
+
+    /**
+     * A changed range inside a line, as offsets into the improved text. The range is empty where
+     * words were only removed.
+     */
+    public static class WordChange {
+        private final int startOffset;
+        private final int endOffset;
+
+        public WordChange(int startOffset, int endOffset) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+        }
+
+        public int getStartOffset() {
+            return startOffset;
+        }
+
+        public int getEndOffset() {
+            return endOffset;
+        }
+    }
+}
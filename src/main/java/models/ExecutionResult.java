@@ -1,25 +1,92 @@
 package models;
 
+import java.util.List;
+
 public class ExecutionResult {
+    /**
+     * Why a compilation or run did not succeed.
+     */
+    public enum FailureKind {
+        NONE,
+        COMPILATION_ERROR,
+        RUNTIME_ERROR,
+        /**
+         * The wall-clock or CPU time limit was reached; the program probably never terminates.
+         */
+        TIMEOUT,
+        MEMORY_LIMIT,
+        OUTPUT_LIMIT,
+        CANCELLED
+    }
+
     private final boolean success;
-    // private final String output;
+    private final String output;
     private final String errors;
+    private final List<Diagnostic> diagnostics;
+    private final FailureKind failureKind;
 
     public ExecutionResult(boolean success, String output, String errors) {
+        this(success, output, errors, List.of());
+    }
+
+    public ExecutionResult(boolean success, String output, String errors, List<Diagnostic> diagnostics) {
+        this(success, output, errors, diagnostics, success ? FailureKind.NONE : FailureKind.RUNTIME_ERROR);
+    }
+
+    public ExecutionResult(boolean success, String output, String errors, List<Diagnostic> diagnostics,
+                           FailureKind failureKind) {
         this.success = success;
-        // this.output = output;
+        this.output = output;
         this.errors = errors;
+        this.diagnostics = diagnostics;
+        this.failureKind = failureKind;
+    }
+
+    /**
+     * A failed result of the given kind, with no output and no diagnostics.
+     */
+    public static ExecutionResult failure(FailureKind failureKind, String errors) {
+        return new ExecutionResult(false, "", errors, List.of(), failureKind);
     }
 
     public boolean isSuccess() {
         return success;
     }
 
-    /* public String getOutput() {
+    public FailureKind getFailureKind() {
+        // Results cached before failure kinds existed have none.
+        if (failureKind == null) {
+            return success ? FailureKind.NONE : FailureKind.RUNTIME_ERROR;
+        }
+        return failureKind;
+    }
+
+    /**
+     * Whether the program was stopped by one of the resource limits rather than failing by itself.
+     */
+    public boolean isLimitExceeded() {
+        FailureKind kind = getFailureKind();
+        return kind == FailureKind.TIMEOUT || kind == FailureKind.MEMORY_LIMIT || kind == FailureKind.OUTPUT_LIMIT;
+    }
+
+    /**
+     * Everything the program wrote to stdout.
+     */
+    public String getOutput() {
         return output;
-    } */
+    }
 
+    /**
+     * The complete compiler output or, once the program ran, everything it wrote to stderr.
+     */
     public String getErrors() {
         return errors;
     }
+
+    /**
+     * Compiler diagnostics or runtime exceptions parsed from {@link #getErrors()}.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
 }
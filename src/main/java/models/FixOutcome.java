@@ -0,0 +1,64 @@
+package models;
+
+public class FixOutcome {
+    /**
+     * The repair step that produced the passing code.
+     */
+    public enum Tier {
+        // Not fixed, or the code passed as it was
+        NONE,
+        QUICK_FIX,
+        MODEL
+    }
+
+    private final String originalCode;
+    private final String code;
+    private final ExecutionResult result;
+    private final int attempts;
+    private final boolean fixed;
+    private final Tier fixedBy;
+
+    public FixOutcome(String originalCode, String code, ExecutionResult result, int attempts, boolean fixed,
+                      Tier fixedBy) {
+        this.originalCode = originalCode;
+        this.code = code;
+        this.result = result;
+        this.attempts = attempts;
+        this.fixed = fixed;
+        this.fixedBy = fixedBy;
+    }
+
+    public String getOriginalCode() {
+        return originalCode;
+    }
+
+    /**
+     * The code of the last attempt, which is the fixed code if {@link #isFixed()}.
+     */
+    public String getCode() {
+        return code;
+    }
+
+    public ExecutionResult getResult() {
+        return result;
+    }
+
+    /**
+     * How many times the model was asked for a fix.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isFixed() {
+        return fixed;
+    }
+
+    public Tier getFixedBy() {
+        return fixedBy;
+    }
+
+    public boolean isChanged() {
+        return !originalCode.equals(code);
+    }
+}
@@ -0,0 +1,43 @@
+package models;
+
+public class StackFrame {
+    private final String className;
+    private final String methodName;
+    private final String file;
+    private final long line;
+
+    public StackFrame(String className, String methodName, String file, long line) {
+        this.className = className;
+        this.methodName = methodName;
+        this.file = file;
+        this.line = line;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * The source file name, or {@code null} for native methods and classes without debug information.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * The 1-based line number, or 0 if unknown.
+     */
+    public long getLine() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        String location = file == null ? "Unknown Source" : line > 0 ? file + ":" + line : file;
+        return "at " + className + "." + methodName + "(" + location + ")";
+    }
+}
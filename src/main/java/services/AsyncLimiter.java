@@ -0,0 +1,106 @@
+package services;
+
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many asynchronous operations run at the same time. Operations beyond the limit wait
+ * in a queue, in submission order, without holding a thread.
+ */
+public final class AsyncLimiter {
+    private final int permits;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int running;
+
+    public AsyncLimiter(int permits) {
+        this.permits = Math.max(permits, 1);
+    }
+
+    public static AsyncLimiter unlimited() {
+        return new AsyncLimiter(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Starts the operation once a permit is free. The permit is held until the operation's future
+     * completes.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            if (result.isDone()) {
+                release();
+                return;
+            }
+            CompletableFuture<T> started;
+            try {
+                started = operation.get();
+            } catch (Throwable e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            started.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        synchronized (this) {
+            if (running >= permits) {
+                waiting.add(start);
+                return result;
+            }
+            running++;
+        }
+        start.run();
+        return result;
+    }
+
+    /**
+     * Runs a blocking operation on the calling thread once a permit is free.
+     */
+    public <T> T call(@NotNull ThrowableComputable<T, ? extends Exception> operation) throws Exception {
+        CompletableFuture<Void> turn = new CompletableFuture<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        submit(() -> {
+            turn.complete(null);
+            return done;
+        });
+        try {
+            turn.get();
+            return operation.compute();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            done.complete(null);
+        }
+    }
+
+    public synchronized int getQueueLength() {
+        return waiting.size();
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        // The permit passes straight to the next operation. It is started on a pooled thread, so a
+        // long queue of operations that complete immediately does not pile up on this stack.
+        AppExecutorUtil.getAppExecutorService().execute(next);
+    }
+}
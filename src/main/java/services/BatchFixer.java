@@ -0,0 +1,252 @@
+package services;
+
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import models.CompilationTarget;
+import models.Diagnostic;
+import models.ExecutionResult;
+import models.FixOutcome;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the execute and improve loop for many files at once. Compile and run steps and model
+ * requests have separate limits, shared by all files, so the model is kept busy while other files
+ * compile. A file starts once the files it uses are done, and Java files see the fixed sources of
+ * those files instead of their stale compiled classes. Fixes are only collected, never applied.
+ */
+public class BatchFixer {
+    private static final Logger LOG = Logger.getInstance(BatchFixer.class);
+
+    public enum Status {
+        QUEUED("Queued"),
+        RUNNING("Running"),
+        FIXED("Fixed"),
+        PASSING("Already compiles"),
+        NOT_FIXED("Not fixed"),
+        FAILED("Error"),
+        CANCELLED("Cancelled");
+
+        private final String label;
+
+        Status(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * One file of the batch and how far it got.
+     */
+    public static final class Item {
+        private final VirtualFile file;
+        private volatile Status status = Status.QUEUED;
+        private volatile FixOutcome outcome;
+        private volatile String message;
+
+        Item(VirtualFile file) {
+            this.file = file;
+        }
+
+        public VirtualFile getFile() {
+            return file;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        @Nullable
+        public FixOutcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * Why the file could not be processed, for {@link Status#FAILED}.
+         */
+        @Nullable
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public interface Listener {
+        void batchStarted(@NotNull List<Item> items);
+
+        void itemChanged(@NotNull Item item);
+
+        void batchFinished();
+    }
+
+    private final Project project;
+    private final OpenAIService openAiService;
+
+    public BatchFixer(@NotNull Project project, @NotNull OpenAIService openAiService) {
+        this.project = project;
+        this.openAiService = openAiService;
+    }
+
+    /**
+     * Whether a batch needs to work on the result: it has compiler errors, uncaught exceptions or ran
+     * into a time, memory or output limit.
+     * Files without a main method fail to run, but there is nothing to fix about that.
+     */
+    public static boolean needsFix(@NotNull ExecutionResult result) {
+        if (result.isSuccess()) {
+            return false;
+        }
+        if (result.isLimitExceeded()) {
+            return true;
+        }
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            if (!Diagnostic.WARNING.equals(diagnostic.getSeverity())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void run(@NotNull List<VirtualFile> files, @NotNull ProgressIndicator indicator,
+                    @NotNull Listener listener) throws IOException {
+        List<Item> items = new ArrayList<>();
+        List<String> classNames = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        for (VirtualFile file : files) {
+            items.add(new Item(file));
+            classNames.add(file.getNameWithoutExtension());
+            sources.add(readText(file));
+        }
+        listener.batchStarted(items);
+
+        DependencyOrder order = DependencyOrder.of(classNames, sources);
+        PluginSettings settings = PluginSettings.getInstance();
+        AsyncLimiter llmCalls = new AsyncLimiter(settings.getBatchLlmConcurrency());
+        AsyncLimiter executions = new AsyncLimiter(settings.getBatchExecutionConcurrency());
+        // Each file's loop waits on the limiters, so it needs a thread of its own while it is active.
+        ExecutorService loops = AppExecutorUtil.createBoundedApplicationPoolExecutor("EEAgent Batch",
+                settings.getBatchLlmConcurrency() + settings.getBatchExecutionConcurrency());
+        File fixedSources = FileUtil.createTempDirectory("eeagent-batch", null, true);
+
+        long start = System.nanoTime();
+        AtomicInteger done = new AtomicInteger();
+        List<CompletableFuture<Void>> finished = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            finished.add(null);
+        }
+        for (int index : order.getOrder()) {
+            CompletableFuture<?>[] upstream = order.upstreamOf(index).stream()
+                    .map(finished::get)
+                    .toArray(CompletableFuture<?>[]::new);
+            // A file still runs when a file it depends on failed; it is then compiled against the module outputs.
+            finished.set(index, CompletableFuture.allOf(upstream).handle((ignored, error) -> null).thenRunAsync(() -> {
+                Item item = items.get(index);
+                try {
+                    process(item, sources.get(index), fixedSources, llmCalls, executions, indicator, listener);
+                } catch (RuntimeException e) {
+                    // process() reports its own failures, this is the listener or the indicator failing.
+                    LOG.warn("Batch fix failed for " + item.file.getPath(), e);
+                    if (item.status == Status.QUEUED || item.status == Status.RUNNING) {
+                        item.message = e.getMessage();
+                        item.status = Status.FAILED;
+                    }
+                }
+                indicator.setFraction((double) done.incrementAndGet() / items.size());
+                indicator.setText2(done.get() + " of " + items.size() + " files");
+            }, loops));
+        }
+
+        try {
+            CompletableFuture.allOf(finished.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            loops.shutdown();
+            FileUtil.delete(fixedSources);
+            listener.batchFinished();
+        }
+
+        long fixed = items.stream().filter(item -> item.status == Status.FIXED).count();
+        long quickFixed = items.stream().filter(item -> item.status == Status.FIXED
+                && item.outcome.getFixedBy() == FixOutcome.Tier.QUICK_FIX).count();
+        long failing = items.stream().filter(item -> item.status == Status.FIXED || item.status == Status.NOT_FIXED).count();
+        double minutes = (System.nanoTime() - start) / 60e9;
+        LOG.info(String.format("Batch fixed %d of %d failing files (%d checked, %d by quick fixes, %d by the model)"
+                        + " in %.1f min, %.1f files per minute",
+                fixed, failing, items.size(), quickFixed, fixed - quickFixed, minutes, minutes > 0 ? fixed / minutes : 0));
+    }
+
+    private void process(Item item, String source, File fixedSources, AsyncLimiter llmCalls, AsyncLimiter executions,
+                         ProgressIndicator indicator, Listener listener) {
+        if (indicator.isCanceled()) {
+            update(item, Status.CANCELLED, listener);
+            return;
+        }
+        update(item, Status.RUNNING, listener);
+
+        VirtualFile file = item.file;
+        boolean isKotlin = "kt".equalsIgnoreCase(file.getExtension());
+        CompilationTarget module = ProjectClasspath.targetFor(project, file);
+        // kotlinc has no sourcepath, so Kotlin files are compiled against the module outputs only.
+        CompilationTarget target = new CompilationTarget(module.getClassName(), module.getClasspath(),
+                isKotlin ? List.of() : List.of(fixedSources.getAbsolutePath()));
+        CodeExecutorImprover improver = new CodeExecutorImprover(new CodeExecutor(project, target), project,
+                openAiService, isKotlin, llmCalls, executions, result -> !needsFix(result));
+
+        try {
+            Document document = ReadAction.compute(() -> FileDocumentManager.getInstance().getCachedDocument(file));
+            FixOutcome outcome = improver.fix(source, document, new SensitiveProgressWrapper(indicator));
+            item.outcome = outcome;
+            if (indicator.isCanceled()) {
+                update(item, Status.CANCELLED, listener);
+            } else if (!outcome.isFixed()) {
+                update(item, Status.NOT_FIXED, listener);
+            } else if (outcome.isChanged()) {
+                if (!isKotlin) {
+                    String packagePath = ProjectClasspath.packageOf(outcome.getCode()).replace('.', '/');
+                    FileUtil.writeToFile(new File(new File(fixedSources, packagePath), file.getName()), outcome.getCode());
+                }
+                update(item, Status.FIXED, listener);
+            } else {
+                update(item, Status.PASSING, listener);
+            }
+        } catch (Exception e) {
+            if (indicator.isCanceled()) {
+                update(item, Status.CANCELLED, listener);
+                return;
+            }
+            LOG.warn("Batch fix failed for " + file.getPath(), e);
+            item.message = e.getMessage();
+            update(item, Status.FAILED, listener);
+        }
+    }
+
+    private static void update(Item item, Status status, Listener listener) {
+        item.status = status;
+        listener.itemChanged(item);
+    }
+
+    private static String readText(VirtualFile file) throws IOException {
+        Document document = ReadAction.compute(() -> FileDocumentManager.getInstance().getDocument(file));
+        return document != null ? ReadAction.compute(document::getText) : VfsUtilCore.loadText(file);
+    }
+}
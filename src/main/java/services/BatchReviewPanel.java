@@ -0,0 +1,243 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.IconLoader;
+import com.intellij.openapi.wm.RegisterToolWindowTask;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowAnchor;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.table.JBTable;
+import models.FixOutcome;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shows the files of a batch run as they are processed and lets the fixes be reviewed and applied
+ * together, once the run is over or while it is still going.
+ */
+public class BatchReviewPanel extends JPanel implements BatchFixer.Listener {
+    private static final String TOOL_WINDOW_ID = "RRAgent Batch";
+    private static final String[] COLUMNS = {"File", "Status", "Attempts"};
+
+    private final Project project;
+    private final List<BatchFixer.Item> items = new ArrayList<>();
+    private final Set<BatchFixer.Item> applied = new HashSet<>();
+    private final ItemTableModel tableModel = new ItemTableModel();
+    private final JBTable table = new JBTable(tableModel);
+    private final JTextArea changes = new JTextArea();
+    private final JLabel summary = new JLabel("Collecting files...");
+    private long startNanos;
+    private long endNanos;
+
+    private BatchReviewPanel(@NotNull Project project) {
+        super(new BorderLayout());
+        this.project = project;
+
+        changes.setEditable(false);
+        changes.setFont(new Font(Font.MONOSPACED, Font.PLAIN, changes.getFont().getSize()));
+        table.getSelectionModel().addListSelectionListener(e -> showChanges());
+
+        JBSplitter splitter = new JBSplitter(true, 0.4f);
+        splitter.setFirstComponent(new JBScrollPane(table));
+        splitter.setSecondComponent(new JBScrollPane(changes));
+
+        JButton applySelectedButton = new JButton("Apply Selected");
+        applySelectedButton.addActionListener(e -> apply(selectedItems()));
+        JButton applyAllButton = new JButton("Apply All Fixed");
+        applyAllButton.addActionListener(e -> apply(new ArrayList<>(items)));
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(applySelectedButton);
+        buttonPanel.add(applyAllButton);
+
+        summary.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        add(summary, BorderLayout.NORTH);
+        add(splitter, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Opens a new review panel in the batch tool window. Must be called on the EDT.
+     */
+    @NotNull
+    public static BatchReviewPanel show(@NotNull Project project) {
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow == null) {
+            toolWindow = ToolWindowManager.getInstance(project).registerToolWindow(
+                    RegisterToolWindowTask.closable(
+                            TOOL_WINDOW_ID,
+                            IconLoader.getIcon("/icons/debug.svg", BatchReviewPanel.class),
+                            ToolWindowAnchor.BOTTOM
+                    )
+            );
+        }
+
+        BatchReviewPanel panel = new BatchReviewPanel(project);
+        Content content = ContentFactory.getInstance().createContent(panel, "Batch Fix", false);
+        toolWindow.getContentManager().removeAllContents(true);
+        toolWindow.getContentManager().addContent(content);
+        toolWindow.show(null);
+        return panel;
+    }
+
+    @Override
+    public void batchStarted(@NotNull List<BatchFixer.Item> batchItems) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            startNanos = System.nanoTime();
+            items.addAll(batchItems);
+            tableModel.fireTableDataChanged();
+            updateSummary();
+        });
+    }
+
+    @Override
+    public void itemChanged(@NotNull BatchFixer.Item item) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            int row = items.indexOf(item);
+            if (row >= 0) {
+                tableModel.fireTableRowsUpdated(row, row);
+            }
+            if (table.getSelectedRow() == row) {
+                showChanges();
+            }
+            updateSummary();
+        });
+    }
+
+    @Override
+    public void batchFinished() {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            endNanos = System.nanoTime();
+            updateSummary();
+        });
+    }
+
+    private void updateSummary() {
+        int fixed = 0;
+        int notFixed = 0;
+        int passing = 0;
+        int finished = 0;
+        for (BatchFixer.Item item : items) {
+            switch (item.getStatus()) {
+                case FIXED -> fixed++;
+                case NOT_FIXED, FAILED -> notFixed++;
+                case PASSING -> passing++;
+                default -> {
+                }
+            }
+            if (item.getStatus() != BatchFixer.Status.QUEUED && item.getStatus() != BatchFixer.Status.RUNNING) {
+                finished++;
+            }
+        }
+        double minutes = ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 60e9;
+        summary.setText(String.format("%s%d of %d files done: %d fixed, %d not fixed, %d already compiled. %.1f files fixed per minute.",
+                endNanos != 0 ? "Finished. " : "", finished, items.size(), fixed, notFixed, passing,
+                minutes > 0 ? fixed / minutes : 0));
+    }
+
+    private void showChanges() {
+        int row = table.getSelectedRow();
+        if (row < 0) {
+            changes.setText("");
+            return;
+        }
+        BatchFixer.Item item = items.get(row);
+        FixOutcome outcome = item.getOutcome();
+        if (item.getStatus() == BatchFixer.Status.FAILED) {
+            changes.setText(item.getMessage());
+        } else if (outcome == null) {
+            changes.setText("");
+        } else if (outcome.isFixed()) {
+            changes.setText(LineDiff.describe(outcome.getOriginalCode(), outcome.getCode()));
+        } else {
+            changes.setText(outcome.getResult().getErrors());
+        }
+        changes.setCaretPosition(0);
+    }
+
+    private List<BatchFixer.Item> selectedItems() {
+        List<BatchFixer.Item> selected = new ArrayList<>();
+        for (int row : table.getSelectedRows()) {
+            selected.add(items.get(row));
+        }
+        return selected;
+    }
+
+    /**
+     * Writes the fixed code into the files. Files that were edited since the batch read them are
+     * left alone, the fix was made for the old content.
+     */
+    private void apply(List<BatchFixer.Item> candidates) {
+        List<String> skipped = new ArrayList<>();
+        int count = 0;
+        for (BatchFixer.Item item : candidates) {
+            FixOutcome outcome = item.getOutcome();
+            if (item.getStatus() != BatchFixer.Status.FIXED || outcome == null || applied.contains(item)) {
+                continue;
+            }
+            Document document = FileDocumentManager.getInstance().getDocument(item.getFile());
+            if (document == null || !document.getText().equals(outcome.getOriginalCode())) {
+                skipped.add(item.getFile().getName());
+                continue;
+            }
+            WriteCommandAction.runWriteCommandAction(project, "Apply Batch Fix", null, () -> {
+                document.setText(outcome.getCode());
+                PsiDocumentManager.getInstance(project).commitDocument(document);
+            });
+            applied.add(item);
+            count++;
+        }
+        tableModel.fireTableDataChanged();
+
+        String message = count + " fixes applied.";
+        if (!skipped.isEmpty()) {
+            message += "\nSkipped because the files changed since the batch read them: " + String.join(", ", skipped);
+        }
+        Messages.showInfoMessage(project, message, "Batch Fix");
+    }
+
+    private class ItemTableModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            return items.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            BatchFixer.Item item = items.get(row);
+            FixOutcome outcome = item.getOutcome();
+            return switch (column) {
+                case 0 -> item.getFile().getPresentableUrl();
+                case 1 -> applied.contains(item) ? "Applied" : item.getStatus().toString();
+                default -> outcome != null ? String.valueOf(outcome.getAttempts()) : "";
+            };
+        }
+    }
+}
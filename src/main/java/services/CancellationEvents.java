@@ -0,0 +1,121 @@
+package services;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.AbstractProgressIndicatorExBase;
+import com.intellij.openapi.wm.ex.ProgressIndicatorEx;
+import com.intellij.openapi.progress.WrappedProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Turns the cancellation of a {@link ProgressIndicator} into a callback, so that nobody has to
+ * hold a thread just to poll {@link ProgressIndicator#isCanceled()}.
+ */
+public final class CancellationEvents {
+    private static final long FALLBACK_CHECK_MILLIS = 50;
+    // One delegate per indicator; a delegate cannot be removed again, its callbacks can.
+    private static final Map<ProgressIndicatorEx, CancelListener> LISTENERS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private CancellationEvents() {
+    }
+
+    /**
+     * Runs {@code action} once when {@code indicator} (or any indicator it wraps) is cancelled.
+     * The returned handle detaches the action again and must be run once the guarded work is over.
+     */
+    @NotNull
+    public static Runnable onCancel(@NotNull ProgressIndicator indicator, @NotNull Runnable action) {
+        AtomicBoolean active = new AtomicBoolean(true);
+        Runnable fire = () -> {
+            if (active.compareAndSet(true, false)) {
+                action.run();
+            }
+        };
+
+        if (indicator.isCanceled()) {
+            fire.run();
+            return () -> active.set(false);
+        }
+
+        boolean listening = true;
+        List<CancelListener> listeners = new ArrayList<>();
+        for (ProgressIndicator current = indicator; current != null; current = original(current)) {
+            if (current instanceof ProgressIndicatorEx) {
+                CancelListener listener = listenerOf((ProgressIndicatorEx) current);
+                listener.callbacks.add(fire);
+                listeners.add(listener);
+            } else {
+                listening = false;
+            }
+        }
+        Runnable detach = () -> {
+            active.set(false);
+            for (CancelListener listener : listeners) {
+                listener.callbacks.remove(fire);
+            }
+        };
+        // The indicator may have been cancelled while the callbacks were being attached.
+        if (indicator.isCanceled()) {
+            fire.run();
+        }
+        if (listening) {
+            return detach;
+        }
+
+        // Indicators that cannot report their cancellation are checked by a shared scheduler
+        // instead of a dedicated waiting thread.
+        ScheduledFuture<?> check = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            if (indicator.isCanceled()) {
+                fire.run();
+            }
+        }, FALLBACK_CHECK_MILLIS, FALLBACK_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        return () -> {
+            detach.run();
+            check.cancel(false);
+        };
+    }
+
+    private static CancelListener listenerOf(ProgressIndicatorEx indicator) {
+        synchronized (LISTENERS) {
+            return LISTENERS.computeIfAbsent(indicator, i -> {
+                CancelListener listener = new CancelListener();
+                i.addStateDelegate(listener);
+                return listener;
+            });
+        }
+    }
+
+    private static ProgressIndicator original(ProgressIndicator indicator) {
+        return indicator instanceof WrappedProgressIndicator
+                ? ((WrappedProgressIndicator) indicator).getOriginalProgressIndicator()
+                : null;
+    }
+
+    /**
+     * The state delegate of one indicator, which runs the callbacks attached at the time it is
+     * cancelled.
+     */
+    private static final class CancelListener extends AbstractProgressIndicatorExBase {
+        final Set<Runnable> callbacks = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void cancel() {
+            super.cancel();
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+}
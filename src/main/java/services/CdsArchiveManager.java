@@ -0,0 +1,240 @@
+package services;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.execution.util.ExecUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.io.DigestUtil;
+import daemon.CdsTrainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Class-data-sharing archives for the JVMs that run candidates, one for Java and one for Kotlin
+ * runs per toolchain. An archive is dumped with {@code -XX:ArchiveClassesAtExit} from a run of
+ * {@link CdsTrainer}, which loads the JDK classes typical programs use and, for Kotlin, the stdlib.
+ * A run that maps the archive skips loading and verifying those classes.
+ * <p>
+ * The JVM only uses an archive if the classpath starts with the entries it was dumped with,
+ * unchanged, so runs put the trainer jar and the stdlib in front of their own classes. An archive
+ * is named after the java binary, the stdlib and the trainer it was made with; when any of them
+ * changes a new one is built and the old one deleted.
+ */
+public class CdsArchiveManager {
+    private static final Logger LOG = Logger.getInstance(CdsArchiveManager.class);
+    private static final String DIRECTORY = "eeagent-cds";
+    private static final int BUILD_TIMEOUT_MILLIS = 120_000;
+    // Dynamic archives need JDK 13
+    private static final int MIN_JAVA_VERSION = 13;
+    private static final String[] KOTLIN_CLASSES = {
+            "kotlin.jvm.internal.Intrinsics",
+            "kotlin.Unit",
+            "kotlin.collections.CollectionsKt",
+            "kotlin.collections.ArraysKt",
+            "kotlin.collections.MapsKt",
+            "kotlin.collections.SetsKt",
+            "kotlin.text.StringsKt",
+            "kotlin.ranges.RangesKt",
+            "kotlin.sequences.SequencesKt",
+            "kotlin.io.ConsoleKt",
+            "kotlin.jvm.functions.Function1",
+    };
+
+    private static String trainerHash;
+
+    private final Map<String, CompletableFuture<Archive>> archives = new ConcurrentHashMap<>();
+
+    public static CdsArchiveManager getInstance() {
+        return ApplicationManager.getApplication().getService(CdsArchiveManager.class);
+    }
+
+    /**
+     * The archive for runs with or without the Kotlin stdlib, or {@code null} while it is being
+     * built or if the JDK cannot make one. The first call starts building it in the background.
+     */
+    @Nullable
+    public Archive archiveFor(@Nullable File kotlinStdlib) {
+        CompletableFuture<Archive> archive = prepare(kotlinStdlib);
+        return archive.isDone() && !archive.isCompletedExceptionally() ? archive.join() : null;
+    }
+
+    /**
+     * Builds the archive on a pooled thread unless it exists already. The future completes with
+     * {@code null} if no archive can be made.
+     */
+    @NotNull
+    public CompletableFuture<Archive> prepare(@Nullable File kotlinStdlib) {
+        String identity = ToolchainInfo.binaryIdentity("java") + "|" + CdsTrainer.class.getName() + "@" + trainerHash()
+                + (kotlinStdlib != null ? "|" + kotlinStdlib.getAbsolutePath() + "@" + kotlinStdlib.lastModified() : "");
+        return archives.computeIfAbsent(identity, id -> CompletableFuture.supplyAsync(
+                () -> loadOrBuild(id, kotlinStdlib), AppExecutorUtil.getAppExecutorService()));
+    }
+
+    @Nullable
+    private Archive loadOrBuild(String identity, @Nullable File kotlinStdlib) {
+        File directory = new File(PathManager.getSystemPath(), DIRECTORY);
+        String kind = kotlinStdlib != null ? "kotlin" : "java";
+        File archiveFile = new File(directory, kind + "-" + DigestUtil.sha256Hex(identity.getBytes(StandardCharsets.UTF_8)).substring(0, 16) + ".jsa");
+        try {
+            File trainerJar = trainerJar(directory);
+            Archive archive = new Archive(archiveFile, trainerJar, kotlinStdlib);
+            if (archiveFile.isFile()) {
+                return archive;
+            }
+            if (ToolchainInfo.javaFeatureVersion() < MIN_JAVA_VERSION) {
+                LOG.info("No class-data archive, the runner JDK is older than " + MIN_JAVA_VERSION);
+                return null;
+            }
+            deleteStale(directory, kind, archiveFile);
+            return build(archive) ? archive : null;
+        } catch (IOException | ExecutionException e) {
+            LOG.info("Could not build the class-data archive " + archiveFile, e);
+            return null;
+        }
+    }
+
+    private static boolean build(Archive archive) throws IOException, ExecutionException {
+        long started = System.nanoTime();
+        File dumping = new File(archive.file.getPath() + ".tmp");
+        FileUtil.delete(dumping);
+
+        GeneralCommandLine commandLine = new GeneralCommandLine();
+        commandLine.setExePath("java");
+        commandLine.addParameter("-XX:ArchiveClassesAtExit=" + dumping.getAbsolutePath());
+        commandLine.addParameters(CodeExecutor.STARTUP_FLAGS);
+        commandLine.addParameter("-cp");
+        commandLine.addParameter(String.join(File.pathSeparator, archive.getClasspathPrefix()));
+        commandLine.addParameter(CdsTrainer.class.getName());
+        if (archive.kotlinStdlib != null) {
+            commandLine.addParameters(KOTLIN_CLASSES);
+        }
+
+        ProcessOutput output = ExecUtil.execAndGetOutput(commandLine, BUILD_TIMEOUT_MILLIS);
+        if (output.getExitCode() != 0 || !dumping.isFile()) {
+            LOG.info("Dumping the class-data archive failed with exit code " + output.getExitCode() + ": " + output.getStderr());
+            FileUtil.delete(dumping);
+            return false;
+        }
+        Files.move(dumping.toPath(), archive.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        MetricsRegistry.getInstance().recordSince("cds_archive_build_milliseconds", started);
+        LOG.info("Built class-data archive " + archive.file + " (" + archive.file.length() / 1024 + " KB)");
+        return true;
+    }
+
+    /**
+     * The trainer class in a jar of its own. The name contains its hash, because rewriting the jar
+     * would change its timestamp and the JVM would then refuse every archive dumped with it.
+     */
+    private static File trainerJar(File directory) throws IOException {
+        byte[] trainer = trainerBytes();
+        File jar = new File(directory, "trainer-" + DigestUtil.sha256Hex(trainer).substring(0, 16) + ".jar");
+        if (jar.isFile()) {
+            return jar;
+        }
+        FileUtil.createDirectory(directory);
+        File writing = new File(jar.getPath() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(writing.toPath());
+             JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry(trainerEntry()));
+            jarOut.write(trainer);
+            jarOut.closeEntry();
+        }
+        Files.move(writing.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return jar;
+    }
+
+    private static void deleteStale(File directory, String kind, File current) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(kind + "-") && name.endsWith(".jsa"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(current)) {
+                LOG.info("Deleting outdated class-data archive " + file);
+                FileUtil.delete(file);
+            }
+        }
+    }
+
+    private static String trainerEntry() {
+        return CdsTrainer.class.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] trainerBytes() throws IOException {
+        try (InputStream in = CdsTrainer.class.getClassLoader().getResourceAsStream(trainerEntry())) {
+            if (in == null) {
+                throw new IOException("Cannot find " + trainerEntry());
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    private static synchronized String trainerHash() {
+        if (trainerHash == null) {
+            try {
+                trainerHash = DigestUtil.sha256Hex(trainerBytes());
+            } catch (IOException e) {
+                trainerHash = "unknown";
+            }
+        }
+        return trainerHash;
+    }
+
+    /**
+     * A dumped archive and the classpath entries it was dumped with.
+     */
+    public static final class Archive {
+        private final File file;
+        private final File trainerJar;
+        private final File kotlinStdlib;
+
+        private Archive(File file, File trainerJar, @Nullable File kotlinStdlib) {
+            this.file = file;
+            this.trainerJar = trainerJar;
+            this.kotlinStdlib = kotlinStdlib;
+        }
+
+        /**
+         * The entries a run's classpath has to start with for the archive to be used.
+         */
+        @NotNull
+        public List<String> getClasspathPrefix() {
+            List<String> prefix = new ArrayList<>(2);
+            prefix.add(trainerJar.getAbsolutePath());
+            if (kotlinStdlib != null) {
+                prefix.add(kotlinStdlib.getAbsolutePath());
+            }
+            return prefix;
+        }
+
+        /**
+         * The options that map the archive. A mismatching archive is skipped silently instead of
+         * printing a warning into the program's output; only the CDS log tags are turned off, other
+         * JVM warnings still reach the output.
+         */
+        @NotNull
+        public List<String> getJvmOptions() {
+            return List.of("-XX:SharedArchiveFile=" + file.getAbsolutePath(), "-Xshare:auto", "-Xlog:cds*=off");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package services;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Where {@link OpenAIService} gets its models from: the hosted API, a local OpenAI-compatible
+ * server or a scripted stand-in.
+ */
+public interface ChatBackend {
+
+    /**
+     * The model name, used to pick the tokenizer for token estimates.
+     */
+    @NotNull
+    String getModelName();
+
+    /**
+     * Identifies the model and where it is served, so that cached answers of one server are not
+     * returned for another one.
+     */
+    @NotNull
+    String getId();
+
+    /**
+     * A model that samples with the given temperature, or with the server's default for {@code null}.
+     */
+    @NotNull
+    ChatLanguageModel createChatModel(@Nullable Double temperature);
+
+    @NotNull
+    StreamingChatLanguageModel createStreamingChatModel();
+
+    /**
+     * The same server with another model. Backends that serve a single model return themselves.
+     */
+    @NotNull
+    default ChatBackend withModel(@NotNull String modelName) {
+        return this;
+    }
+
+    /**
+     * Whether requests have to stay within the rate limits configured for the API.
+     */
+    default boolean isRateLimited() {
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package services;
+
+import com.intellij.openapi.compiler.CompilationStatusListener;
+import com.intellij.openapi.compiler.CompileContext;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells {@link ProjectClasspath} when classpath entries may have changed: on file system changes
+ * under them, and after every build of the IDE, whose outputs are not always refreshed in the VFS.
+ */
+public class ClasspathChangeListener implements BulkFileListener, CompilationStatusListener {
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        List<String> paths = new ArrayList<>(events.size());
+        for (VFileEvent event : events) {
+            paths.add(event.getPath());
+        }
+        ProjectClasspath.invalidate(paths);
+    }
+
+    @Override
+    public void compilationFinished(boolean aborted, int errors, int warnings, @NotNull CompileContext compileContext) {
+        ProjectClasspath.invalidateAll();
+    }
+}
@@ -0,0 +1,66 @@
+package services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Pulls the code out of a model answer that wraps it in a Markdown code fence.
+ */
+public final class CodeBlockExtractor {
+    private static final String FENCE = "```";
+
+    private CodeBlockExtractor() {
+    }
+
+    /**
+     * Returns the content of the first fenced code block once its closing fence has arrived, or
+     * {@code null} while the block is still open or no block has started yet.
+     */
+    @Nullable
+    public static String findClosedBlock(@NotNull CharSequence text) {
+        String answer = text.toString();
+        int contentStart = findContentStart(answer);
+        if (contentStart < 0) {
+            return null;
+        }
+
+        int searchFrom = contentStart;
+        while (true) {
+            int fence = answer.indexOf(FENCE, searchFrom);
+            if (fence < 0) {
+                return null;
+            }
+            if (fence == contentStart || answer.charAt(fence - 1) == '\n') {
+                return answer.substring(contentStart, fence);
+            }
+            searchFrom = fence + FENCE.length();
+        }
+    }
+
+    /**
+     * Returns the code of a complete answer: the first fenced block if there is one, otherwise the
+     * answer unchanged.
+     */
+    @NotNull
+    public static String extract(@NotNull String answer) {
+        String block = findClosedBlock(answer);
+        if (block != null) {
+            return block;
+        }
+        int contentStart = findContentStart(answer);
+        return contentStart >= 0 ? answer.substring(contentStart) : answer;
+    }
+
+    private static int findContentStart(String answer) {
+        int fence = answer.indexOf(FENCE);
+        while (fence > 0 && answer.charAt(fence - 1) != '\n') {
+            fence = answer.indexOf(FENCE, fence + FENCE.length());
+        }
+        if (fence < 0) {
+            return -1;
+        }
+        // Skip the language tag after the opening fence.
+        int lineEnd = answer.indexOf('\n', fence);
+        return lineEnd < 0 ? -1 : lineEnd + 1;
+    }
+}
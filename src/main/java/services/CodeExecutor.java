@@ -1,5 +1,7 @@
 package services;
 
+import models.CompilationResult;
+import models.CompilationTarget;
 import models.ExecutionResult;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
@@ -7,168 +9,659 @@ import com.intellij.execution.process.OSProcessHandler;
 import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.ThrowableComputable;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
 
 public class CodeExecutor {
+    private static final String KOTLIN_JAR = "output.jar";
+    private static final Pattern CLASS_FILE_PATTERN = Pattern.compile(".*\\.class");
+    private static final String WORKSPACE_METRIC = "executor_workspace_milliseconds";
+    private static final String WRITE_METRIC = "executor_write_milliseconds";
+    private static final String COMPILE_METRIC = "executor_compile_milliseconds";
+    private static final String RUN_METRIC = "executor_run_milliseconds";
+    // The forked JVM alone, split by whether it mapped a class-data archive
+    private static final String PROCESS_METRIC = "executor_process_milliseconds";
+    private static final String PROCESS_CDS_METRIC = "executor_process_cds_milliseconds";
+    /**
+     * Flags for JVMs that live for a fraction of a second: C1 only, the simplest collector and no
+     * perf data file.
+     */
+    static final List<String> STARTUP_FLAGS = List.of("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-XX:-UsePerfData");
+
+    private final InMemoryJavaCompiler inMemoryCompiler = new InMemoryJavaCompiler();
+    private final Project project;
+    private final CompilationTarget target;
+
+    public CodeExecutor(@Nullable Project project) {
+        this(project, CompilationTarget.standalone());
+    }
+
+    public CodeExecutor(@Nullable Project project, @NotNull CompilationTarget target) {
+        this.project = project;
+        this.target = target;
+    }
 
     public ExecutionResult execute(String sourceCode, ProgressIndicator indicator, boolean isKotlin)
             throws IOException, ExecutionException {
-        File tempDir = createTempDirectory(indicator);
-
         try {
-            File sourceFile = createSourceFile(tempDir, sourceCode, indicator, isKotlin);
+            return executeAsync(sourceCode, indicator, isKotlin).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ExecutionException) {
+                throw (ExecutionException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ExecutionException(cause);
+        }
+    }
+
+    /**
+     * Compiles and runs the code without holding a thread while the compiler or the program runs.
+     * The future completes when the last process terminates; cancelling the indicator destroys it.
+     */
+    public CompletableFuture<ExecutionResult> executeAsync(String sourceCode, ProgressIndicator indicator,
+                                                           boolean isKotlin) {
+        ExecutionCache cache = ExecutionCache.getInstance();
+        if (!cache.isEnabled()) {
+            return executeUncached(null, sourceCode, indicator, isKotlin);
+        }
 
-            if (!compileCode(sourceFile, tempDir, indicator, isKotlin)) {
-                String error = "Compilation failed with no specific error message.";
-                return new ExecutionResult(false, "", error);
+        String cacheKey = cache.keyFor(sourceCode, isKotlin, target);
+        ExecutionResult cached = cache.getResult(cacheKey);
+        if (cached != null) {
+            MetricsRegistry.getInstance().increment("executor_cache_hits_total");
+            indicator.setText("Reusing cached execution result...");
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        MetricsRegistry.getInstance().increment("executor_cache_misses_total");
+        return executeUncached(cacheKey, sourceCode, indicator, isKotlin).thenApply(result -> {
+            // Whether a run finishes in time depends on the machine's load, so timeouts are not cached.
+            ExecutionResult.FailureKind kind = result.getFailureKind();
+            if (!indicator.isCanceled() && kind != ExecutionResult.FailureKind.TIMEOUT
+                    && kind != ExecutionResult.FailureKind.CANCELLED) {
+                cache.putResult(cacheKey, result);
             }
+            return result;
+        });
+    }
 
-            return runCode(tempDir, indicator, isKotlin);
-        } finally {
-            FileUtil.delete(tempDir);
+    private CompletableFuture<ExecutionResult> executeUncached(@Nullable String cacheKey, String sourceCode,
+                                                               ProgressIndicator indicator, boolean isKotlin) {
+        WorkspacePool.Workspace workspace;
+        try {
+            long started = System.nanoTime();
+            workspace = acquireWorkspace(indicator);
+            MetricsRegistry.getInstance().recordSince(WORKSPACE_METRIC, started);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
+
+        return compile(cacheKey, workspace, sourceCode, indicator, isKotlin)
+                .thenCompose(compiled -> compiled.failure != null
+                        ? CompletableFuture.completedFuture(compiled.failure)
+                        : run(workspace, compiled.outputs, sourceCode, indicator, isKotlin))
+                // After an exception it is unclear what the workspace holds, so it is not reused.
+                .whenComplete((result, error) -> WorkspacePool.getInstance().release(workspace, error == null));
+    }
+
+    private CompletableFuture<CompileOutcome> compile(@Nullable String cacheKey, WorkspacePool.Workspace workspace,
+                                                      String sourceCode,
+                                                      ProgressIndicator indicator, boolean isKotlin) {
+        Map<String, byte[]> cachedOutputs = cacheKey != null ? ExecutionCache.getInstance().getArtifacts(cacheKey) : null;
+        if (cachedOutputs != null) {
+            indicator.setText("Reusing cached compilation...");
+            return CompletableFuture.completedFuture(new CompileOutcome(cachedOutputs, null));
+        }
+
+        CompletableFuture<CompileOutcome> compiled;
+        if (!isKotlin && useInProcessCompiler()) {
+            compiled = onPooledThread(() -> {
+                long started = System.nanoTime();
+                CompilationResult compilation = compileInProcess(sourceCode, indicator);
+                MetricsRegistry.getInstance().recordSince(COMPILE_METRIC, started);
+                if (!compilation.isSuccess()) {
+                    return new CompileOutcome(null, new ExecutionResult(false, "", formatDiagnostics(compilation),
+                            compilation.getDiagnostics(), ExecutionResult.FailureKind.COMPILATION_ERROR));
+                }
+                return new CompileOutcome(toOutputFiles(compilation.getClassFiles()), null);
+            });
+        } else {
+            File workDir = workspace.getDirectory();
+            compiled = completed(() -> timed(WRITE_METRIC, () -> createSourceFile(workspace, sourceCode, indicator, isKotlin)))
+                    .thenCompose(sourceFile -> timed(COMPILE_METRIC, System.nanoTime(),
+                            compileCode(sourceFile, workDir, indicator, isKotlin)))
+                    .thenApply(compilation -> unchecked(() -> {
+                        if (indicator.isCanceled()) {
+                            return new CompileOutcome(null, cancelled());
+                        }
+                        if (compilation.limitExceeded != null) {
+                            return new CompileOutcome(null, ExecutionResult.failure(compilation.limitExceeded,
+                                    limitMessage(compilation, "Compilation", PluginSettings.getInstance().getCompileTimeoutSeconds())));
+                        }
+                        if (compilation.exitCode != 0) {
+                            return new CompileOutcome(null, compilationFailure(compilation));
+                        }
+                        Map<String, byte[]> outputs = readOutputFiles(workDir, isKotlin);
+                        workspace.rememberOutputs(outputs);
+                        return new CompileOutcome(outputs, null);
+                    }));
+        }
+
+        return compiled.thenApply(outcome -> {
+            if (outcome.outputs != null && cacheKey != null) {
+                ExecutionCache.getInstance().putArtifacts(cacheKey, outcome.outputs);
+            }
+            return outcome;
+        });
     }
 
-    private boolean compileCode(File sourceFile, File tempDir, ProgressIndicator indicator, boolean isKotlin)
-            throws ExecutionException {
+    private CompletableFuture<ProcessOutcome> compileCode(File sourceFile, File workDir, ProgressIndicator indicator,
+                                                          boolean isKotlin) {
         indicator.setFraction(0.4);
 
-        AtomicReference<StringBuilder> compilationError = new AtomicReference<>(new StringBuilder());
-        AtomicBoolean compilationComplete = new AtomicBoolean(false);
+        CompletableFuture<ProcessOutcome> viaDaemon = CompletableFuture.completedFuture(null);
+        if (isKotlin && useKotlinDaemon()) {
+            viaDaemon = onPooledThread(() -> {
+                KotlinCompileDaemon daemon = KotlinCompileDaemon.getInstance(project);
+                indicator.setText("Compiling with Kotlin daemon (" + daemon.getHealth() + ", "
+                        + daemon.getRestartCount() + " restarts)...");
+                List<String> args = new ArrayList<>(List.of(
+                        sourceFile.getAbsolutePath(), "-d", new File(workDir, KOTLIN_JAR).getAbsolutePath()));
+                if (!target.getClasspath().isEmpty()) {
+                    args.addAll(List.of("-cp", joinClasspath(target.getClasspath())));
+                }
+                KotlinCompileDaemon.Result result = daemon.compile(args, indicator);
+                // Without a result the daemon is unavailable or keeps crashing, so a forked kotlinc takes over.
+                return result != null ? new ProcessOutcome(result.getExitCode(), "", result.getMessages()) : null;
+            });
+        }
+
+        return viaDaemon.thenCompose(daemonOutcome -> {
+            if (daemonOutcome != null || indicator.isCanceled()) {
+                return CompletableFuture.completedFuture(daemonOutcome);
+            }
 
-        GeneralCommandLine compileCmd = new GeneralCommandLine();
-        compileCmd.setExePath(isKotlin ? "kotlinc" : "javac");
-        compileCmd.addParameter(sourceFile.getAbsolutePath());
-        compileCmd.setWorkDirectory(tempDir);
+            PluginSettings settings = PluginSettings.getInstance();
+            GeneralCommandLine compileCmd = new GeneralCommandLine();
+            compileCmd.setExePath(isKotlin ? "kotlinc" : "javac");
+            compileCmd.addParameter("-J-Xmx" + settings.getCompileHeapMb() + "m");
+            compileCmd.addParameter(sourceFile.getAbsolutePath());
+            compileCmd.setWorkDirectory(workDir);
 
-        if (isKotlin) {
             compileCmd.addParameter("-d");
-            compileCmd.addParameter("output.jar");
+            compileCmd.addParameter(isKotlin ? KOTLIN_JAR : workDir.getAbsolutePath());
+            // Project classes are taken from the module outputs, so only this file is compiled.
+            if (!target.getClasspath().isEmpty()) {
+                compileCmd.addParameter("-cp");
+                compileCmd.addParameter(joinClasspath(target.getClasspath()));
+            }
+            if (!isKotlin && !target.getSourcepath().isEmpty()) {
+                compileCmd.addParameter("-sourcepath");
+                compileCmd.addParameter(joinClasspath(target.getSourcepath()));
+            }
+
+            return startProcess(withCpuLimit(compileCmd), indicator, settings.getCompileTimeoutSeconds());
+        });
+    }
+
+    /**
+     * Keeps the complete compiler output and parses it into diagnostics.
+     */
+    private static ExecutionResult compilationFailure(ProcessOutcome compilation) {
+        String output = (compilation.stderr + compilation.stdout).strip();
+        if (output.isEmpty()) {
+            return ExecutionResult.failure(ExecutionResult.FailureKind.COMPILATION_ERROR,
+                    "Compilation failed with no specific error message.");
         }
+        return new ExecutionResult(false, "", output, DiagnosticParser.parseCompilerOutput(output),
+                ExecutionResult.FailureKind.COMPILATION_ERROR);
+    }
 
-        OSProcessHandler compileHandler = new OSProcessHandler(compileCmd);
-        compileHandler.addProcessListener(createCompileListener(compilationError, compilationComplete));
-        compileHandler.startNotify();
+    /**
+     * Adds the exceptions found in a failed run's stderr as diagnostics.
+     */
+    private static ExecutionResult withRuntimeDiagnostics(ExecutionResult result) {
+        if (result.isSuccess() || !result.getDiagnostics().isEmpty() || result.getErrors() == null) {
+            return result;
+        }
+        return new ExecutionResult(false, result.getOutput(), result.getErrors(),
+                DiagnosticParser.parseStackTraces(result.getErrors()), result.getFailureKind());
+    }
 
-        waitForCompletion(compilationComplete, indicator);
+    private CompletableFuture<ExecutionResult> run(WorkspacePool.Workspace workspace, Map<String, byte[]> outputs,
+                                                   String sourceCode,
+                                                   ProgressIndicator indicator, boolean isKotlin) {
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        String mainClass;
+        try {
+            mainClass = isKotlin
+                    ? readKotlinJar(outputs.get(KOTLIN_JAR), classFiles)
+                    : ProjectClasspath.qualifiedName(target, sourceCode);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (mainClass == null) {
+            return CompletableFuture.completedFuture(
+                    new ExecutionResult(false, "", "No main function found in the compiled Kotlin code."));
+        }
 
-        if (indicator.isCanceled()) {
-            return false;
+        long started = System.nanoTime();
+        CompletableFuture<ExecutionResult> result;
+        if (useExecutionWorker()) {
+            result = onPooledThread(() -> runInWorker(mainClass, isKotlin ? classFiles : toClassFiles(outputs), indicator));
+        } else {
+            result = completed(() -> {
+                // The run step forks a JVM, so outputs that are only held in memory are written out first.
+                workspace.syncOutputs(outputs);
+                return workspace.getDirectory();
+            }).thenCompose(outputDir -> runCode(outputDir, mainClass, indicator, isKotlin));
         }
+        // The run includes writing the outputs a forked JVM needs, but not the compilation before it.
+        return timed(RUN_METRIC, started, result).thenApply(CodeExecutor::withRuntimeDiagnostics);
+    }
+
+    private boolean useExecutionWorker() {
+        return PluginSettings.EXECUTION_WORKER.equals(PluginSettings.getInstance().getExecutionMode());
+    }
 
-        int exitCode = compileHandler.getProcess().exitValue();
-        return exitCode == 0;
+    private ExecutionResult runInWorker(String mainClass, Map<String, byte[]> classFiles, ProgressIndicator indicator)
+            throws IOException {
+        indicator.setText("Running code in worker JVM...");
+        indicator.setFraction(0.6);
+        return ExecutionWorkerPool.getInstance().run(mainClass, classFiles, target.getClasspath(), indicator);
     }
 
-    private File createTempDirectory(ProgressIndicator indicator) throws IOException {
-        indicator.setText("Creating temporary files...");
+    /**
+     * Collects the classes of the jar kotlinc produced and returns the main class from its manifest,
+     * or {@code null} if the file declares no main function.
+     */
+    @Nullable
+    private static String readKotlinJar(byte[] jar, Map<String, byte[]> classFiles) throws IOException {
+        try (JarInputStream in = new JarInputStream(new ByteArrayInputStream(jar))) {
+            for (JarEntry entry = in.getNextJarEntry(); entry != null; entry = in.getNextJarEntry()) {
+                String name = entry.getName();
+                if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
+                    classFiles.put(toBinaryName(name), in.readAllBytes());
+                }
+            }
+            Manifest manifest = in.getManifest();
+            return manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS) : null;
+        }
+    }
+
+    private static String joinClasspath(List<String> classpath) {
+        return String.join(File.pathSeparator, classpath);
+    }
+
+    /**
+     * Collects the compiler outputs in the temp directory, keyed by their relative path.
+     */
+    private Map<String, byte[]> readOutputFiles(File outputDir, boolean isKotlin) throws IOException {
+        Map<String, byte[]> outputs = new LinkedHashMap<>();
+        if (isKotlin) {
+            outputs.put(KOTLIN_JAR, FileUtil.loadFileBytes(new File(outputDir, KOTLIN_JAR)));
+            return outputs;
+        }
+        for (File classFile : FileUtil.findFilesByMask(CLASS_FILE_PATTERN, outputDir)) {
+            String relativePath = FileUtil.getRelativePath(outputDir, classFile);
+            outputs.put(FileUtil.toSystemIndependentName(relativePath), FileUtil.loadFileBytes(classFile));
+        }
+        return outputs;
+    }
+
+    private static Map<String, byte[]> toOutputFiles(Map<String, byte[]> classFiles) {
+        Map<String, byte[]> outputs = new LinkedHashMap<>();
+        classFiles.forEach((binaryName, bytes) -> outputs.put(binaryName.replace('.', '/') + ".class", bytes));
+        return outputs;
+    }
+
+    private static Map<String, byte[]> toClassFiles(Map<String, byte[]> outputs) {
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        outputs.forEach((path, bytes) -> classFiles.put(toBinaryName(path), bytes));
+        return classFiles;
+    }
+
+    private static String toBinaryName(String classFilePath) {
+        return StringUtil.trimEnd(classFilePath, ".class").replace('/', '.');
+    }
+
+    private boolean useKotlinDaemon() {
+        return project != null && PluginSettings.getInstance().isUseKotlinDaemon();
+    }
+
+    private boolean useInProcessCompiler() {
+        // Otherwise the forked javac, which belongs to the runner's JDK, compiles for it.
+        return PluginSettings.COMPILER_IN_PROCESS.equals(PluginSettings.getInstance().getCompilerMode())
+                && inMemoryCompiler.canTarget(ToolchainInfo.javaFeatureVersion());
+    }
+
+    private CompilationResult compileInProcess(String sourceCode, ProgressIndicator indicator) {
+        indicator.setText("Compiling code in-process...");
+        indicator.setFraction(0.4);
+        return inMemoryCompiler.compile(ProjectClasspath.qualifiedName(target, sourceCode), sourceCode,
+                target.getClasspath(), target.getSourcepath(), ToolchainInfo.javaFeatureVersion());
+    }
+
+    private String formatDiagnostics(CompilationResult compilation) {
+        String errors = DiagnosticParser.describe(compilation.getDiagnostics());
+        return errors.isEmpty() ? "Compilation failed with no specific error message." : errors;
+    }
+
+    WorkspacePool.Workspace acquireWorkspace(ProgressIndicator indicator) throws IOException {
+        indicator.setText("Preparing workspace...");
         indicator.setFraction(0.2);
-        return FileUtil.createTempDirectory("codeexecution", "temp", true);
+        return WorkspacePool.getInstance().acquire();
     }
 
-    private File createSourceFile(File tempDir, String sourceCode, ProgressIndicator indicator, boolean isKotlin)
-            throws IOException {
-        String fileName = isKotlin ? "Main.kt" : "Main.java";
-        File sourceFile = new File(tempDir, fileName);
-        FileUtil.writeToFile(sourceFile, sourceCode);
-        return sourceFile;
+    /**
+     * Writes the source into the workspace, unless it is already there from the previous use. Other
+     * sources and the previous compilation's outputs are removed, so that javac cannot pick them up
+     * and only the new outputs are found afterwards.
+     */
+    File createSourceFile(WorkspacePool.Workspace workspace, String sourceCode, ProgressIndicator indicator,
+                          boolean isKotlin) throws IOException {
+        String fileName = sourceFileName(isKotlin);
+        workspace.retainOnly(fileName);
+        return workspace.writeFile(fileName, sourceCode.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The name the source is compiled under, which is also the file name in its diagnostics.
+     */
+    public String sourceFileName(boolean isKotlin) {
+        return target.getClassName() + (isKotlin ? ".kt" : ".java");
     }
 
-    private ExecutionResult runCode(File tempDir, ProgressIndicator indicator, boolean isKotlin)
-            throws ExecutionException {
+    private CompletableFuture<ExecutionResult> runCode(File workDir, String mainClass, ProgressIndicator indicator,
+                                                       boolean isKotlin) {
         indicator.setText("Running code...");
         indicator.setFraction(0.6);
 
-        StringBuilder errors = new StringBuilder();
-        StringBuilder output = new StringBuilder();
-        AtomicBoolean executionComplete = new AtomicBoolean(false);
+        int timeoutSeconds = PluginSettings.getInstance().getRunTimeoutSeconds();
+        File kotlinHome = isKotlin ? KotlinCompileDaemon.findKotlinHome() : null;
+        File kotlinStdlib = kotlinHome != null ? new File(kotlinHome, "lib/kotlin-stdlib.jar") : null;
+        CdsArchiveManager.Archive archive = PluginSettings.getInstance().isStartupTunedRuns()
+                ? CdsArchiveManager.getInstance().archiveFor(kotlinStdlib)
+                : null;
+        GeneralCommandLine runCmd = createRunCommand(workDir, mainClass, isKotlin, kotlinStdlib, archive);
+        long started = System.nanoTime();
+        return startProcess(withCpuLimit(runCmd), indicator, timeoutSeconds).thenApply(outcome -> {
+            MetricsRegistry.getInstance().recordSince(archive != null ? PROCESS_CDS_METRIC : PROCESS_METRIC, started);
+            if (indicator.isCanceled()) {
+                return cancelled();
+            }
+            if (outcome.limitExceeded != null) {
+                return new ExecutionResult(false, outcome.stdout,
+                        outcome.stderr + limitMessage(outcome, "Execution", timeoutSeconds), List.of(), outcome.limitExceeded);
+            }
 
-        GeneralCommandLine runCmd = createRunCommand(tempDir, isKotlin);
-        OSProcessHandler runHandler = new OSProcessHandler(runCmd);
-        runHandler.addProcessListener(createRunListener(errors, output, executionComplete));
-        runHandler.startNotify();
+            boolean success = outcome.exitCode == 0;
+            String errorMsg = outcome.stderr.isEmpty() ? "Execution failed with no errors." : outcome.stderr;
+            if (!success && outcome.stderr.contains("java.lang.OutOfMemoryError")) {
+                return new ExecutionResult(false, outcome.stdout, errorMsg + "\n(heap limit "
+                        + PluginSettings.getInstance().getRunHeapMb() + " MB)", List.of(),
+                        ExecutionResult.FailureKind.MEMORY_LIMIT);
+            }
 
-        waitForCompletion(executionComplete, indicator);
+            if (!success && isKilledExit(outcome.exitCode)) {
+                errorMsg += "\nThe process was killed (exit code 137), e.g. by the system running out of memory.";
+            }
+            return new ExecutionResult(success, outcome.stdout, errorMsg);
+        });
+    }
+
+    private static ExecutionResult cancelled() {
+        return ExecutionResult.failure(ExecutionResult.FailureKind.CANCELLED, "Operation cancelled by user");
+    }
+
+    static String outputLimitMessage(PluginSettings settings) {
+        return "Output exceeded the limit of " + settings.getMaxOutputKb() + " KB, the program was stopped.";
+    }
 
-        if (indicator.isCanceled()) {
-            runHandler.destroyProcess();
-            return new ExecutionResult(false, "", "Operation cancelled by user");
+    private static String limitMessage(ProcessOutcome outcome, String step, int timeoutSeconds) {
+        PluginSettings settings = PluginSettings.getInstance();
+        if (outcome.limitExceeded == ExecutionResult.FailureKind.OUTPUT_LIMIT) {
+            return outputLimitMessage(settings);
+        }
+        if (outcome.limitExceeded == ExecutionResult.FailureKind.TIMEOUT && isCpuLimitExit(outcome.exitCode)) {
+            return step + " exceeded the CPU time limit of " + settings.getProcessCpuSeconds() + " seconds.";
         }
+        return step + " timed out after " + timeoutSeconds + " seconds.";
+    }
+
+    /**
+     * The kernel sends SIGXCPU at the CPU time limit set by {@code ulimit -t}, which ends the JVM with
+     * 128 + 24. A SIGKILL (128 + 9) can have any sender, e.g. the out-of-memory killer, and is not
+     * taken for the CPU limit.
+     */
+    private static boolean isCpuLimitExit(int exitCode) {
+        return SystemInfo.isUnix && exitCode == 128 + 24;
+    }
 
-        int exitCode = runHandler.getProcess().exitValue();
-        boolean success = exitCode == 0;
-        String errorMsg = errors.toString().isEmpty() ? "Execution failed with no errors." : errors.toString();
+    private static boolean isKilledExit(int exitCode) {
+        return SystemInfo.isUnix && exitCode == 128 + 9;
+    }
 
-        return new ExecutionResult(success, output.toString(), errorMsg);
+    /**
+     * Limits the CPU time of the process with {@code ulimit -t} on Unix; elsewhere only the
+     * wall-clock timeout applies.
+     */
+    private static GeneralCommandLine withCpuLimit(GeneralCommandLine commandLine) {
+        if (!SystemInfo.isUnix) {
+            return commandLine;
+        }
+        GeneralCommandLine limited = new GeneralCommandLine("/bin/sh", "-c",
+                "ulimit -t " + PluginSettings.getInstance().getProcessCpuSeconds() + " && exec \"$@\"",
+                "sh", commandLine.getExePath());
+        limited.addParameters(commandLine.getParametersList().getList());
+        limited.setWorkDirectory(commandLine.getWorkDirectory());
+        return limited;
     }
 
-    private GeneralCommandLine createRunCommand(File tempDir, boolean isKotlin) {
+    /**
+     * @param archive the class-data archive to start with, whose entries then lead the classpath, or
+     *                {@code null} to start without one
+     */
+    private GeneralCommandLine createRunCommand(File workDir, String mainClass, boolean isKotlin,
+                                                @Nullable File kotlinStdlib,
+                                                @Nullable CdsArchiveManager.Archive archive) {
+        List<String> classpath = new ArrayList<>();
+        if (archive != null) {
+            classpath.addAll(archive.getClasspathPrefix());
+        }
+        // The freshly compiled classes come next, so they shadow the stale copies in the module outputs.
+        classpath.add(isKotlin ? new File(workDir, KOTLIN_JAR).getAbsolutePath() : workDir.getAbsolutePath());
+        classpath.addAll(target.getClasspath());
+        if (kotlinStdlib != null && archive == null) {
+            classpath.add(kotlinStdlib.getAbsolutePath());
+        }
+
+        PluginSettings settings = PluginSettings.getInstance();
         GeneralCommandLine runCmd = new GeneralCommandLine();
-        if (isKotlin) {
-            runCmd.setExePath("java");
-            runCmd.addParameter("-jar");
-            runCmd.addParameter("output.jar");
-        } else {
-            runCmd.setExePath("java");
-            runCmd.addParameter("-cp");
-            runCmd.addParameter(tempDir.getAbsolutePath());
-            runCmd.addParameter("Main");
+        runCmd.setExePath("java");
+        runCmd.addParameter("-Xmx" + settings.getRunHeapMb() + "m");
+        if (settings.isStartupTunedRuns()) {
+            // A small initial heap is quicker to set up and enough for most candidates.
+            runCmd.addParameter("-Xms" + Math.min(16, settings.getRunHeapMb()) + "m");
+            runCmd.addParameters(STARTUP_FLAGS);
         }
-        runCmd.setWorkDirectory(tempDir);
+        if (archive != null) {
+            runCmd.addParameters(archive.getJvmOptions());
+        }
+        runCmd.addParameter("-cp");
+        runCmd.addParameter(joinClasspath(classpath));
+        runCmd.addParameter(mainClass);
+        runCmd.setWorkDirectory(workDir);
         return runCmd;
     }
 
-    private ProcessAdapter createCompileListener(AtomicReference<StringBuilder> compilationError,
-                                                 AtomicBoolean compilationComplete) {
-        return new ProcessAdapter() {
+    /**
+     * Starts the process and completes the returned future from {@code processTerminated}, once all of
+     * its output has been read. Cancelling the indicator destroys the process, and so do reaching the
+     * timeout and writing more than the output limit, which the outcome then reports.
+     */
+    private static CompletableFuture<ProcessOutcome> startProcess(GeneralCommandLine commandLine,
+                                                                  ProgressIndicator indicator, int timeoutSeconds) {
+        OSProcessHandler handler;
+        try {
+            handler = new OSProcessHandler(commandLine);
+        } catch (ExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<ProcessOutcome> outcome = new CompletableFuture<>();
+        StringBuffer output = new StringBuffer();
+        StringBuffer errors = new StringBuffer();
+        int maxOutputChars = PluginSettings.getInstance().getMaxOutputKb() * 1024;
+        AtomicReference<ExecutionResult.FailureKind> limitExceeded = new AtomicReference<>();
+        handler.addProcessListener(new ProcessAdapter() {
             @Override
             public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
-                if (outputType == ProcessOutputTypes.STDERR) {
-                    compilationError.get().append(event.getText());
+                StringBuffer buffer = outputType == ProcessOutputTypes.STDERR ? errors
+                        : outputType == ProcessOutputTypes.STDOUT ? output
+                        : null;
+                if (buffer == null || limitExceeded.get() != null) {
+                    return;
+                }
+                buffer.append(event.getText());
+                if (buffer.length() > maxOutputChars) {
+                    buffer.setLength(maxOutputChars);
+                    if (limitExceeded.compareAndSet(null, ExecutionResult.FailureKind.OUTPUT_LIMIT)) {
+                        handler.destroyProcess();
+                    }
                 }
             }
 
             @Override
             public void processTerminated(@NotNull ProcessEvent event) {
-                compilationComplete.set(true);
+                ExecutionResult.FailureKind limit = limitExceeded.get() == null && isCpuLimitExit(event.getExitCode())
+                        ? ExecutionResult.FailureKind.TIMEOUT
+                        : limitExceeded.get();
+                outcome.complete(new ProcessOutcome(event.getExitCode(), output.toString(), errors.toString(), limit));
             }
-        };
-    }
+        });
 
-    private ProcessAdapter createRunListener(StringBuilder errors, StringBuilder output, AtomicBoolean executionComplete) {
-        return new ProcessAdapter() {
-            @Override
-            public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
-                if (outputType == ProcessOutputTypes.STDERR) {
-                    errors.append(event.getText());
-                } else if (outputType == ProcessOutputTypes.STDOUT) {
-                    output.append(event.getText());
-                }
+        Runnable stopListening = CancellationEvents.onCancel(indicator, handler::destroyProcess);
+        ScheduledFuture<?> deadline = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+            if (limitExceeded.compareAndSet(null, ExecutionResult.FailureKind.TIMEOUT)) {
+                handler.destroyProcess();
             }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        outcome.whenComplete((result, error) -> {
+            stopListening.run();
+            deadline.cancel(false);
+        });
+        handler.startNotify();
+        return outcome;
+    }
 
-            @Override
-            public void processTerminated(@NotNull ProcessEvent event) {
-                executionComplete.set(true);
-            }
-        };
+    private static <T> T timed(String histogram, ThrowableComputable<T, ? extends Exception> step) throws Exception {
+        long started = System.nanoTime();
+        T result = step.compute();
+        MetricsRegistry.getInstance().recordSince(histogram, started);
+        return result;
     }
 
-    private void waitForCompletion(AtomicBoolean complete, ProgressIndicator indicator) {
-        while (!complete.get() && !indicator.isCanceled()) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+    /**
+     * Records how long the stage took once it completes normally; failures and cancellations are not measured.
+     */
+    private static <T> CompletableFuture<T> timed(String histogram, long startNanos, CompletableFuture<T> stage) {
+        return stage.whenComplete((result, error) -> {
+            if (error == null) {
+                MetricsRegistry.getInstance().recordSince(histogram, startNanos);
             }
+        });
+    }
+
+    private static <T> CompletableFuture<T> onPooledThread(ThrowableComputable<T, ? extends Exception> task) {
+        return CompletableFuture.supplyAsync(() -> unchecked(task), AppExecutorUtil.getAppExecutorService());
+    }
+
+    private static <T> CompletableFuture<T> completed(ThrowableComputable<T, ? extends Exception> task) {
+        try {
+            return CompletableFuture.completedFuture(task.compute());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T unchecked(ThrowableComputable<T, ? extends Exception> task) {
+        try {
+            return task.compute();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static class ProcessOutcome {
+        final int exitCode;
+        final String stdout;
+        final String stderr;
+        // The limit that stopped the process, or null if it ended by itself
+        final ExecutionResult.FailureKind limitExceeded;
+
+        ProcessOutcome(int exitCode, String stdout, String stderr) {
+            this(exitCode, stdout, stderr, null);
+        }
+
+        ProcessOutcome(int exitCode, String stdout, String stderr, @Nullable ExecutionResult.FailureKind limitExceeded) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.limitExceeded = limitExceeded;
+        }
+    }
+
+    /**
+     * Either the compiled outputs or the result to report when compilation did not succeed.
+     */
+    private static class CompileOutcome {
+        final Map<String, byte[]> outputs;
+        final ExecutionResult failure;
+
+        CompileOutcome(@Nullable Map<String, byte[]> outputs, @Nullable ExecutionResult failure) {
+            this.outputs = outputs;
+            this.failure = failure;
         }
     }
 }
@@ -1,64 +1,478 @@
 package services;
 
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.util.AbstractProgressIndicatorExBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import models.Diagnostic;
 import models.ExecutionResult;
+import models.FixOutcome;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import settings.PluginSettings;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
 public class CodeExecutorImprover {
+    private static final Logger LOG = Logger.getInstance(CodeExecutorImprover.class);
+    private static final double MIN_FAN_OUT_TEMPERATURE = 0.2;
+    private static final double MAX_FAN_OUT_TEMPERATURE = 1.0;
+
+    // Shared by all fixes; replaced when the parallelism setting changes
+    private static ExecutorService candidateExecutor;
+    private static int candidateParallelism;
+
     private final CodeExecutor codeExecutor;
     private final CodeWriterService codeWriterService;
     private final OpenAIService openAiService;
     private final boolean isKotlin;
+    private final AsyncLimiter llmCalls;
+    private final AsyncLimiter executions;
+    private final Predicate<ExecutionResult> isFixed;
+    private final PsiPreCheck preCheck;
+    private final QuickFixer quickFixer;
+    private final ModelLadder models;
 
     public CodeExecutorImprover(CodeExecutor codeExecutor,
                                 Project project,
                                 OpenAIService openAiService,
                                 boolean isKotlin) {
+        this(codeExecutor, project, openAiService, isKotlin,
+                AsyncLimiter.unlimited(), AsyncLimiter.unlimited(), ExecutionResult::isSuccess);
+    }
+
+    /**
+     * @param llmCalls   limits the model requests, shared with the other files of a batch
+     * @param executions limits the compile and run steps, shared with the other files of a batch
+     * @param isFixed    decides whether a result needs no further attempts
+     */
+    public CodeExecutorImprover(CodeExecutor codeExecutor,
+                                Project project,
+                                OpenAIService openAiService,
+                                boolean isKotlin,
+                                AsyncLimiter llmCalls,
+                                AsyncLimiter executions,
+                                Predicate<ExecutionResult> isFixed) {
         this.codeExecutor = codeExecutor;
         this.codeWriterService = new CodeWriterService(project);
         this.openAiService = openAiService;
         this.isKotlin = isKotlin;
+        this.llmCalls = llmCalls;
+        this.executions = executions;
+        this.isFixed = isFixed;
+        this.preCheck = new PsiPreCheck(project, codeExecutor.sourceFileName(isKotlin), isKotlin);
+        this.quickFixer = new QuickFixer(project, isKotlin);
+        this.models = ModelLadder.fromSettings(openAiService);
     }
 
     public ExecutionResult executeAndImproveCode(@NotNull String sourceCode,
                                                  @NotNull ProgressIndicator indicator) throws Exception {
+        return executeAndImproveCode(sourceCode, null, indicator);
+    }
+
+    /**
+     * @param document the open document {@code sourceCode} was taken from, whose highlighted errors
+     *                 can replace the first compilation
+     */
+    public ExecutionResult executeAndImproveCode(@NotNull String sourceCode,
+                                                 @Nullable Document document,
+                                                 @NotNull ProgressIndicator indicator) throws Exception {
+        FixOutcome outcome = fix(sourceCode, document, indicator);
+        if (outcome.isFixed()) {
+            codeWriterService.updateCodeWithImprovement(outcome.getCode());
+        }
+        return outcome.getResult();
+    }
+
+    /**
+     * Runs the execute and improve loop without touching the editor.
+     */
+    public FixOutcome fix(@NotNull String sourceCode, @NotNull ProgressIndicator indicator) throws Exception {
+        return fix(sourceCode, null, indicator);
+    }
+
+    /**
+     * Runs the execute and improve loop without touching the editor. If the IDE already shows errors
+     * in {@code document}, they are sent to the model right away and only the candidates are compiled.
+     * Before each request the errors with an obvious fix are repaired without the model, and the
+     * model is only asked if that does not make the code pass. Requests go to the cheapest model of
+     * the ladder that has been doing well, and move up when it gets stuck.
+     */
+    public FixOutcome fix(@NotNull String sourceCode, @Nullable Document document,
+                         @NotNull ProgressIndicator indicator) throws Exception {
+        long started = System.nanoTime();
         int attempts = 0;
         int maxAttempts = PluginSettings.getInstance().getMaxIterations();
-        ExecutionResult result;
+        int fanOut = PluginSettings.getInstance().getFanOutCandidates();
         String currentCode = sourceCode;
-        String lastWorkingCode = null;
 
-        do {
-            indicator.setText("Attempt " + (attempts + 1) + " of " + maxAttempts);
+        FixSession session = new FixSession(models, models.startRung(), PluginSettings.getInstance().isIncrementalPrompts());
 
-            result = codeExecutor.execute(currentCode, indicator, isKotlin);
+        indicator.setText("Attempt 1 of " + maxAttempts);
+        ExecutionResult result = document != null ? knownErrors(document, currentCode) : null;
+        if (result == null) {
+            result = await(verifyAsync(currentCode, indicator)).result;
+        }
 
-            if (result.isSuccess()) {
-                lastWorkingCode = currentCode;
+        FixOutcome.Tier fixedBy = FixOutcome.Tier.NONE;
+        while (!isFixed.test(result)) {
+            Candidate repaired = quickFix(currentCode, result, indicator);
+            if (repaired != null) {
+                currentCode = repaired.code;
+                result = repaired.result;
+                if (isFixed.test(result)) {
+                    fixedBy = FixOutcome.Tier.QUICK_FIX;
+                    break;
+                }
+            }
+            if (attempts >= maxAttempts) {
+                break;
             }
 
-            if (!result.isSuccess() && attempts < maxAttempts) {
-                currentCode = improveCode(currentCode, result.getErrors());
+            indicator.setText("Attempt " + (attempts + 2) + " of " + maxAttempts);
+            ExecutionResult before = result;
 
-                attempts++;
-                indicator.setFraction((double) attempts / maxAttempts);
+            Candidate candidate = fanOut > 1
+                    ? raceCandidates(currentCode, result, fanOut, session, indicator)
+                    : improveCode(currentCode, result, session, indicator);
+            currentCode = candidate.code;
+            result = candidate.result;
+
+            attempts++;
+            indicator.setFraction((double) attempts / maxAttempts);
+            ModelStatistics.getInstance().recordAttempt(session.model.getModelName(), isFixed.test(result));
+            if (isFixed.test(result)) {
+                fixedBy = FixOutcome.Tier.MODEL;
             } else {
-                break;
+                escalateIfStuck(session, before, result);
             }
-        } while (true);
+        }
 
-        if (lastWorkingCode != null) {
-            codeWriterService.updateCodeWithImprovement(lastWorkingCode);
+        if (session.fixes > 0) {
+            LOG.info("Sent " + session.tokensSent + " prompt tokens for " + session.fixes
+                    + " fix requests; whole-file prompts would have taken " + session.wholeFileTokens);
         }
 
-        return result;
+        FixOutcome outcome = new FixOutcome(sourceCode, currentCode, result, attempts, isFixed.test(result), fixedBy);
+        recordMetrics(outcome, started);
+        return outcome;
+    }
+
+    private static void recordMetrics(FixOutcome outcome, long startNanos) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.increment("improve_runs_total");
+        metrics.recordSince("improve_run_milliseconds", startNanos);
+        if (outcome.isFixed()) {
+            metrics.increment("improve_fixed_total");
+            // Zero iterations means the code already passed the first run.
+            metrics.record("improve_iterations_to_success", outcome.getAttempts());
+        }
+        switch (outcome.getFixedBy()) {
+            case QUICK_FIX -> metrics.increment("improve_fixed_by_quickfix_total");
+            case MODEL -> metrics.increment("improve_fixed_by_model_total");
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Repairs the compiler errors that have an obvious fix and verifies the result. Returns the
+     * repaired candidate if it passes or got further than the code it was made from, otherwise
+     * {@code null}, and the model gets the unrepaired code.
+     */
+    @Nullable
+    private Candidate quickFix(String code, ExecutionResult result, ProgressIndicator indicator) throws Exception {
+        if (!PluginSettings.getInstance().isQuickFixes()
+                || result.getFailureKind() != ExecutionResult.FailureKind.COMPILATION_ERROR) {
+            return null;
+        }
+        long started = System.nanoTime();
+        String repaired = quickFixer.repair(code, result.getDiagnostics());
+        MetricsRegistry.getInstance().recordSince("quickfix_milliseconds", started);
+        if (repaired == null || repaired.equals(code)) {
+            return null;
+        }
+
+        MetricsRegistry.getInstance().increment("quickfix_attempts_total");
+        indicator.setText("Applying quick fixes");
+        Candidate candidate = verify(repaired, indicator);
+        ExecutionResult.FailureKind kind = candidate.result.getFailureKind();
+        boolean progressed = isFixed.test(candidate.result)
+                || kind == ExecutionResult.FailureKind.RUNTIME_ERROR
+                || kind == ExecutionResult.FailureKind.COMPILATION_ERROR && errorCount(candidate.result) < errorCount(result);
+        if (!progressed) {
+            return null;
+        }
+        MetricsRegistry.getInstance().increment("quickfix_accepted_total");
+        return candidate;
     }
 
-    private String improveCode(String sourceCode, String errors) {
+    /**
+     * Moves the session to the next model if the answer made things worse, or if an error has
+     * survived the configured number of attempts in a row.
+     */
+    private void escalateIfStuck(FixSession session, ExecutionResult before, ExecutionResult after) {
+        if (session.rung >= models.size() - 1) {
+            return;
+        }
+        boolean regressed = after.getFailureKind() == ExecutionResult.FailureKind.COMPILATION_ERROR
+                && (before.getFailureKind() != ExecutionResult.FailureKind.COMPILATION_ERROR
+                || errorCount(after) > errorCount(before));
+        boolean survived = !Collections.disjoint(errorKeys(before), errorKeys(after));
+        session.stuckAttempts = survived ? session.stuckAttempts + 1 : 0;
+        if (!regressed && session.stuckAttempts < PluginSettings.getInstance().getEscalateAfterAttempts()) {
+            return;
+        }
+
+        String from = ModelStatistics.getInstance().describe(session.model.getModelName());
+        session.escalate(models);
+        LOG.info((regressed ? "Answer regressed" : "Same error after " + PluginSettings.getInstance().getEscalateAfterAttempts()
+                + " attempts") + ", escalating from " + from + " to " + session.model.getModelName());
+        MetricsRegistry.getInstance().increment("improve_escalations_total");
+    }
+
+    /**
+     * What identifies an error across attempts: its code and the first line of its message, but not
+     * its position, which moves when lines are added or removed.
+     */
+    private static Set<String> errorKeys(ExecutionResult result) {
+        Set<String> keys = new HashSet<>();
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            if (!Diagnostic.WARNING.equals(diagnostic.getSeverity())) {
+                keys.add(diagnostic.getCode() + ":" + diagnostic.getMessage().lines().findFirst().orElse(""));
+            }
+        }
+        return keys;
+    }
+
+    private static int errorCount(ExecutionResult result) {
+        int errors = 0;
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            if (Diagnostic.ERROR.equals(diagnostic.getSeverity())) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Asks the model for several fixes at once, with temperatures spread across the candidates, and
+     * verifies them in parallel. The first candidate that compiles and runs wins and the others are
+     * cancelled. If none passes, the first failed candidate is returned to continue the loop with.
+     */
+    private Candidate raceCandidates(String sourceCode, ExecutionResult failure, int candidates, FixSession session,
+                                     ProgressIndicator indicator) throws Exception {
+        String errors = describeErrors(failure);
+        // Candidates are independent requests, so in incremental mode they get the excerpt without a conversation.
+        SourceScope.Region region = session.conversation != null ? scopeOf(sourceCode, failure) : null;
+        String prompt = region != null
+                ? createScopedPrompt(sourceCode, region, errors)
+                : createPrompt(sourceCode, errors);
+        int tokens = estimateTokens(prompt);
+        int wholeFileTokens = region != null ? estimateTokens(createPrompt(sourceCode, errors)) : tokens;
+        session.record(candidates * tokens, candidates * wholeFileTokens);
+        CompletionService<Candidate> completionService = new ExecutorCompletionService<>(candidateExecutor());
+        List<Future<Candidate>> futures = new ArrayList<>();
+        List<ProgressIndicator> candidateIndicators = new ArrayList<>();
+
+        List<Double> temperatures = candidateTemperatures(candidates);
+        for (int i = 0; i < candidates; i++) {
+            double temperature = temperatures.get(i);
+            // Candidates run side by side, so their progress stays on their own indicator and only
+            // this loop reports to the parent; cancelling the parent still cancels them.
+            ProgressIndicator candidateIndicator = new AbstractProgressIndicatorExBase();
+            candidateIndicators.add(candidateIndicator);
+            futures.add(completionService.submit(() -> {
+                // Waiting on the indicator lets a losing candidate give up its queue slot and its thread.
+                String answer = ProgressIndicatorUtils.awaitWithCheckCanceled(llmCalls.submit(
+                        () -> session.model.sendMessageToOpenAIAsync(prompt, temperature, candidateIndicator)),
+                        candidateIndicator);
+                String code = region != null ? SourceScope.splice(sourceCode, region, answer).getSource() : answer;
+                Candidate candidate = verify(code, candidateIndicator);
+                if (!isFixed.test(candidate.result) && !candidateIndicator.isCanceled()) {
+                    session.model.forgetResponse(prompt, temperature);
+                }
+                return candidate;
+            }));
+        }
+
+        Runnable stopListening = CancellationEvents.onCancel(indicator,
+                () -> candidateIndicators.forEach(ProgressIndicator::cancel));
+        Candidate firstFailure = null;
+        ExecutionException lastError = null;
+        try {
+            for (int i = 0; i < candidates; i++) {
+                indicator.setText2("Checked " + i + " of " + candidates + " candidates");
+                try {
+                    Candidate candidate = completionService.take().get();
+                    if (isFixed.test(candidate.result)) {
+                        return candidate;
+                    }
+                    if (firstFailure == null) {
+                        firstFailure = candidate;
+                    }
+                } catch (ExecutionException e) {
+                    lastError = e;
+                }
+            }
+        } finally {
+            stopListening.run();
+            indicator.setText2("");
+            candidateIndicators.forEach(ProgressIndicator::cancel);
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        if (firstFailure == null) {
+            throw new RuntimeException("All candidates failed: " + lastError.getCause().getMessage(), lastError.getCause());
+        }
+        return firstFailure;
+    }
+
+    /**
+     * The sampling temperatures of a fan-out with the given number of candidates, spread evenly.
+     */
+    static List<Double> candidateTemperatures(int candidates) {
+        List<Double> temperatures = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            temperatures.add(candidates == 1 ? MIN_FAN_OUT_TEMPERATURE : MIN_FAN_OUT_TEMPERATURE
+                    + (MAX_FAN_OUT_TEMPERATURE - MIN_FAN_OUT_TEMPERATURE) * i / (candidates - 1));
+        }
+        return temperatures;
+    }
+
+    private static synchronized ExecutorService candidateExecutor() {
+        int parallelism = PluginSettings.getInstance().getFanOutParallelism();
+        if (candidateExecutor == null || candidateParallelism != parallelism) {
+            if (candidateExecutor != null) {
+                // Running candidates finish on the old executor.
+                candidateExecutor.shutdown();
+            }
+            candidateExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("EEAgent Candidates", parallelism);
+            candidateParallelism = parallelism;
+        }
+        return candidateExecutor;
+    }
+
+    /**
+     * Chains the model call and the verification of its answer, so that only this thread waits,
+     * once, for the whole attempt.
+     */
+    private Candidate improveCode(String sourceCode, ExecutionResult failure, FixSession session,
+                                  ProgressIndicator indicator) throws Exception {
+        String errors = describeErrors(failure);
+        if (session.conversation != null) {
+            return improveIncrementally(sourceCode, failure, errors, session, indicator);
+        }
+
         String prompt = createPrompt(sourceCode, errors);
-        return openAiService.sendMessageToOpenAI(prompt);
+        int tokens = estimateTokens(prompt);
+        session.record(tokens, tokens);
+        CompletableFuture<String> improvedCode = llmCalls.submit(() -> PluginSettings.getInstance().isStreamResponses()
+                ? session.model.streamMessageToOpenAIAsync(prompt, indicator)
+                : session.model.sendMessageToOpenAIAsync(prompt));
+        return await(improvedCode
+                .thenCompose(code -> verifyAsync(code, indicator))
+                .thenApply(verified -> {
+                    if (!isFixed.test(verified.result) && !indicator.isCanceled()) {
+                        // A cached answer that failed once must not be served again for the same prompt.
+                        session.model.forgetResponse(prompt, null);
+                    }
+                    return verified;
+                }));
+    }
+
+    /**
+     * Sends only the declarations the diagnostics point at, and splices the answer back into the
+     * file. Once the model has answered, follow-up requests in the same conversation only carry the
+     * new errors and the lines the model has not seen yet.
+     */
+    private Candidate improveIncrementally(String sourceCode, ExecutionResult failure, String errors,
+                                           FixSession session, ProgressIndicator indicator) throws Exception {
+        SourceScope.Region region = scopeOf(sourceCode, failure);
+        String prompt;
+        if (region != null && session.known != null && session.known.overlaps(region)) {
+            region = union(sourceCode, session.known, region);
+            prompt = createFollowUpPrompt(session.known, region, errors);
+        } else if (region != null) {
+            prompt = createScopedPrompt(sourceCode, region, errors);
+        } else {
+            prompt = createPrompt(sourceCode, errors);
+        }
+
+        session.record(session.model.estimateTokenCount(session.conversation.messagesFor(prompt)),
+                region != null ? estimateTokens(createPrompt(sourceCode, errors)) : estimateTokens(prompt));
+
+        SourceScope.Region scope = region;
+        return await(llmCalls.submit(() -> session.conversation.sendAsync(prompt, indicator))
+                .thenApply(answer -> {
+                    if (scope == null) {
+                        session.known = SourceScope.whole(answer);
+                        return answer;
+                    }
+                    SourceScope.Spliced spliced = SourceScope.splice(sourceCode, scope, answer);
+                    session.known = spliced.getRegion();
+                    return spliced.getSource();
+                })
+                .thenCompose(code -> verifyAsync(code, indicator))
+                .thenApply(verified -> {
+                    if (!isFixed.test(verified.result) && !indicator.isCanceled()) {
+                        session.conversation.forgetLastResponse();
+                    }
+                    return verified;
+                }));
+    }
+
+    /**
+     * The declarations of the edited file that the failure's diagnostics point at.
+     */
+    private SourceScope.Region scopeOf(String sourceCode, ExecutionResult failure) {
+        return SourceScope.find(sourceCode, failure.getDiagnostics(), codeExecutor.sourceFileName(isKotlin));
+    }
+
+    private static SourceScope.Region union(String sourceCode, SourceScope.Region known, SourceScope.Region region) {
+        return SourceScope.range(sourceCode,
+                Math.min(known.getStartLine(), region.getStartLine()),
+                Math.max(known.getEndLine(), region.getEndLine()));
+    }
+
+    private int estimateTokens(String prompt) {
+        return openAiService.estimateTokenCount(List.of(
+                SystemMessage.from(OpenAIService.SYSTEM_PROMPT),
+                UserMessage.from(prompt)));
+    }
+
+    /**
+     * The parsed errors and exceptions of a failed run, or its raw error output when nothing could be
+     * parsed. Warnings are left out, they only distract from the errors the fix is about.
+     */
+    private static String describeErrors(ExecutionResult result) {
+        List<Diagnostic> problems = new ArrayList<>();
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            if (!Diagnostic.WARNING.equals(diagnostic.getSeverity())) {
+                problems.add(diagnostic);
+            }
+        }
+        if (result.getFailureKind() == ExecutionResult.FailureKind.TIMEOUT) {
+            return "The program did not finish within the time limit. It probably loops forever or waits for input.\n"
+                    + result.getErrors();
+        }
+        return problems.isEmpty() ? result.getErrors() : DiagnosticParser.describe(problems);
     }
 
     private String createPrompt(String sourceCode, String errors) {
@@ -81,4 +495,158 @@ public class CodeExecutorImprover {
             Please provide the corrected code:
             """, sourceCode, errors);
     }
+
+    private String createScopedPrompt(String sourceCode, SourceScope.Region region, String errors) {
+        return String.format("""
+            You will receive an excerpt of a larger source file and an error message.
+
+            Your task is to:
+            1. Identify and resolve the error in the excerpt.
+            2. Return only the corrected excerpt in the same style and formatting as the input, with no additional explanation or details.
+            
+            ### Additional Instructions:
+            - Maintain the original formatting and indentation of the input code.
+            - If the fix needs new imports, put the import lines before the corrected excerpt.
+            - Line numbers in the errors refer to the whole file. The excerpt starts at line %d.
+            
+            Imports of the file:
+            %s
+            
+            Excerpt:
+            %s
+            
+            Compilation/Runtime Errors:
+            %s
+            
+            Please provide the corrected excerpt:
+            """, region.getStartLine() + 1, SourceScope.header(sourceCode), region.getText(), errors);
+    }
+
+    private String createFollowUpPrompt(SourceScope.Region known, SourceScope.Region region, String errors) {
+        String changes = LineDiff.describe(known.getText(), region.getText());
+        return String.format("""
+            Your corrected code still fails.
+            
+            Changes to the excerpt since your last answer:
+            %s
+            
+            Compilation/Runtime Errors:
+            %s
+            
+            Line numbers in the errors refer to the whole file. The excerpt now starts at line %d.
+            Please provide the complete corrected excerpt, with any new import lines before it:
+            """, changes.isEmpty() ? "None, the excerpt is your last answer." : changes, errors, region.getStartLine() + 1);
+    }
+
+    private Candidate verify(String code, ProgressIndicator indicator) throws Exception {
+        return await(verifyAsync(code, indicator));
+    }
+
+    /**
+     * The errors the IDE already shows for the unchanged document, as a failed result, or
+     * {@code null} if the code has to be compiled to find out.
+     */
+    @Nullable
+    private ExecutionResult knownErrors(Document document, String code) {
+        if (!PluginSettings.getInstance().isPsiPreCheck()) {
+            return null;
+        }
+        long started = System.nanoTime();
+        List<Diagnostic> errors = preCheck.knownErrors(document, code);
+        MetricsRegistry.getInstance().recordSince("precheck_milliseconds", started);
+        if (errors.isEmpty()) {
+            return null;
+        }
+        MetricsRegistry.getInstance().increment("precheck_compiles_skipped_total");
+        return PsiPreCheck.toResult(errors);
+    }
+
+    /**
+     * Compiles and runs the code, unless it does not even parse; then the syntax errors are the
+     * result and no compiler is launched.
+     */
+    private CompletableFuture<Candidate> verifyAsync(String code, ProgressIndicator indicator) {
+        if (!PluginSettings.getInstance().isPsiPreCheck()) {
+            return execute(code, indicator);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+                    long started = System.nanoTime();
+                    List<Diagnostic> errors = preCheck.parseErrors(code);
+                    MetricsRegistry.getInstance().recordSince("precheck_milliseconds", started);
+                    return errors;
+                }, AppExecutorUtil.getAppExecutorService())
+                .thenCompose(errors -> {
+                    if (errors.isEmpty()) {
+                        return execute(code, indicator);
+                    }
+                    MetricsRegistry.getInstance().increment("precheck_compiles_skipped_total");
+                    return CompletableFuture.completedFuture(new Candidate(code, PsiPreCheck.toResult(errors)));
+                });
+    }
+
+    private CompletableFuture<Candidate> execute(String code, ProgressIndicator indicator) {
+        return executions.submit(() -> codeExecutor.executeAsync(code, indicator, isKotlin))
+                .thenApply(result -> new Candidate(code, result));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * State of one improve run: the conversation in incremental mode, the part of the code the
+     * model has last answered with, and how many prompt tokens were sent compared to resending the
+     * whole file every time.
+     */
+    private static class FixSession {
+        final boolean incremental;
+        int rung;
+        OpenAIService model;
+        OpenAIService.Conversation conversation;
+        SourceScope.Region known;
+        // Consecutive attempts in which an error of the previous attempt came back
+        int stuckAttempts;
+        int fixes;
+        int tokensSent;
+        int wholeFileTokens;
+
+        FixSession(ModelLadder models, int rung, boolean incremental) {
+            this.incremental = incremental;
+            use(models, rung);
+        }
+
+        void escalate(ModelLadder models) {
+            use(models, rung + 1);
+        }
+
+        private void use(ModelLadder models, int rung) {
+            this.rung = rung;
+            model = models.get(rung);
+            // A new model has not seen the conversation, so it starts over with the whole excerpt.
+            conversation = incremental ? model.startConversation() : null;
+            known = null;
+            stuckAttempts = 0;
+        }
+
+        void record(int sent, int wholeFile) {
+            fixes++;
+            tokensSent += sent;
+            wholeFileTokens += wholeFile;
+            LOG.info("Fix request " + fixes + ": " + sent + " prompt tokens sent, " + wholeFile + " with the whole file");
+        }
+    }
+
+    private static class Candidate {
+        final String code;
+        final ExecutionResult result;
+
+        Candidate(String code, ExecutionResult result) {
+            this.code = code;
+            this.result = result;
+        }
+    }
 }
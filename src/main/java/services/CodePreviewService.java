@@ -0,0 +1,207 @@
+package services;
+
+import com.intellij.diff.util.DiffDrawUtil;
+import com.intellij.diff.util.TextDiffType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.EditorSettings;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.IconLoader;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.RegisterToolWindowTask;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowAnchor;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.DocumentUtil;
+import models.DiffHunk;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * The preview of an improvement in the "RRAgent" tool window. One editor is created on first use and
+ * every later preview swaps its text and highlighting, so showing a preview allocates nothing that
+ * has to be released. The editor is released when the tool window content or the project goes away.
+ */
+public class CodePreviewService implements Disposable {
+    private static final String TOOL_WINDOW_ID = "RRAgent";
+
+    private final Project project;
+    private Editor editor;
+    private Content content;
+    // The document the previewed code is meant for
+    private Document target;
+
+    public CodePreviewService(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static CodePreviewService getInstance(@NotNull Project project) {
+        return project.getService(CodePreviewService.class);
+    }
+
+    /**
+     * Shows {@code improvedCode} with its changes against {@code target} marked. Must be called on the EDT.
+     */
+    public void show(@NotNull Document target, @NotNull String improvedCode, @NotNull List<DiffHunk> hunks) {
+        ApplicationManager.getApplication().assertIsDispatchThread();
+        this.target = target;
+        ToolWindow toolWindow = getToolWindow();
+        if (editor == null) {
+            createContent(toolWindow);
+        }
+
+        VirtualFile file = FileDocumentManager.getInstance().getFile(target);
+        FileType fileType = file != null ? file.getFileType() : FileTypeManager.getInstance().getFileTypeByExtension("java");
+        ((EditorEx) editor).setHighlighter(EditorHighlighterFactory.getInstance().createEditorHighlighter(project, fileType));
+
+        editor.getMarkupModel().removeAllHighlighters();
+        DocumentUtil.writeInRunUndoTransparentAction(() -> editor.getDocument().setText(improvedCode));
+        highlightDifferences(hunks);
+        editor.getScrollingModel().scrollVertically(0);
+
+        toolWindow.show(null);
+    }
+
+    private ToolWindow getToolWindow() {
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow == null) {
+            toolWindow = ToolWindowManager.getInstance(project).registerToolWindow(
+                    RegisterToolWindowTask.closable(
+                            TOOL_WINDOW_ID,
+                            IconLoader.getIcon("/icons/debug.svg", getClass()),
+                            ToolWindowAnchor.LEFT
+                    )
+            );
+        }
+        return toolWindow;
+    }
+
+    private void createContent(ToolWindow toolWindow) {
+        Document previewDocument = EditorFactory.getInstance().createDocument("");
+        editor = EditorFactory.getInstance().createEditor(previewDocument, project,
+                FileTypeManager.getInstance().getFileTypeByExtension("java"), false);
+
+        EditorSettings editorSettings = editor.getSettings();
+        editorSettings.setLineNumbersShown(true);
+        editorSettings.setFoldingOutlineShown(true);
+        editorSettings.setLineMarkerAreaShown(true);
+        editorSettings.setIndentGuidesShown(true);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(editor.getComponent(), BorderLayout.CENTER);
+
+        JButton discardButton = new JButton("Discard Changes");
+        discardButton.setBorderPainted(false);
+        discardButton.setOpaque(false);
+        discardButton.setBackground(Color.white);
+        discardButton.addActionListener(e -> {
+            hide();
+            showSuccess("Changes discarded!");
+        });
+
+        JButton applyButton = new JButton("Apply Changes");
+        applyButton.setBorderPainted(false);
+        applyButton.setOpaque(false);
+        applyButton.addActionListener(e -> apply());
+
+        JPanel buttonPanel = new JPanel(new BorderLayout());
+        buttonPanel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+
+        JPanel leftButtonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        leftButtonPanel.add(discardButton);
+        JPanel rightButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        rightButtonPanel.add(applyButton);
+
+        buttonPanel.add(leftButtonPanel, BorderLayout.WEST);
+        buttonPanel.add(rightButtonPanel, BorderLayout.EAST);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        content = ContentFactory.getInstance().createContent(panel, "", false);
+        // Removing the content, by closing it or with the tool window, releases the editor.
+        content.setDisposer(this::releaseEditor);
+        toolWindow.getContentManager().removeAllContents(true);
+        toolWindow.getContentManager().addContent(content);
+    }
+
+    private void highlightDifferences(List<DiffHunk> hunks) {
+        for (DiffHunk hunk : hunks) {
+            TextDiffType type = switch (hunk.getKind()) {
+                case INSERTED -> TextDiffType.INSERTED;
+                case DELETED -> TextDiffType.DELETED;
+                case MODIFIED -> TextDiffType.MODIFIED;
+            };
+            DiffDrawUtil.createHighlighter(editor, hunk.getImprovedStartLine(), hunk.getImprovedEndLine(), type, false);
+            for (DiffHunk.WordChange word : hunk.getWordChanges()) {
+                DiffDrawUtil.createInlineHighlighter(editor, word.getStartOffset(), word.getEndOffset(), type);
+            }
+        }
+    }
+
+    private void apply() {
+        Document document = target;
+        String updatedCode = editor.getDocument().getText();
+        hide();
+        if (document == null || !document.isWritable()) {
+            Messages.showErrorDialog(project, "The file of the preview can no longer be changed.", "Error");
+            return;
+        }
+        WriteCommandAction.runWriteCommandAction(project, () -> {
+            document.setText(updatedCode);
+            PsiDocumentManager.getInstance(project).commitDocument(document);
+        });
+        showSuccess("Code successfully updated!");
+    }
+
+    /**
+     * Hides the tool window and clears the preview; the editor is kept for the next one.
+     */
+    private void hide() {
+        target = null;
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow != null) {
+            toolWindow.hide(null);
+        }
+        if (editor != null) {
+            editor.getMarkupModel().removeAllHighlighters();
+            DocumentUtil.writeInRunUndoTransparentAction(() -> editor.getDocument().setText(""));
+        }
+    }
+
+    private void showSuccess(String message) {
+        Messages.showInfoMessage(project, message, "Success");
+    }
+
+    private void releaseEditor() {
+        if (editor != null && !editor.isDisposed()) {
+            EditorFactory.getInstance().releaseEditor(editor);
+        }
+        editor = null;
+        content = null;
+        target = null;
+    }
+
+    @Override
+    public void dispose() {
+        // Project tool windows usually go first; if not, removing the content releases the editor.
+        if (content != null && content.getManager() != null && !content.getManager().isDisposed()) {
+            content.getManager().removeContent(content, true);
+        }
+        releaseEditor();
+    }
+}
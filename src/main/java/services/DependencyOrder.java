@@ -0,0 +1,177 @@
+package services;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Orders source files so that every file comes after the files it uses. A file uses another one
+ * if it mentions its class and can see it, through the same package, an import or the qualified
+ * name. Like {@link SourceScope} this works on the text and needs no index, so it also works on
+ * files that do not compile. Cycles are broken in the order the files were given.
+ */
+public final class DependencyOrder {
+    // Word characters as in \b, so a name matches where a word-boundary search for it would
+    private static final Pattern IDENTIFIER = Pattern.compile("\\w+");
+    private static final Pattern DOTTED_NAME = Pattern.compile("\\w+(?:\\.\\w+)+");
+    private static final Pattern WILDCARD_IMPORT = Pattern.compile("\\bimport\\s+([\\w.]+)\\.\\*");
+
+    private final List<Integer> order;
+    private final List<List<Integer>> upstream;
+
+    private DependencyOrder(List<Integer> order, List<List<Integer>> upstream) {
+        this.order = order;
+        this.upstream = upstream;
+    }
+
+    /**
+     * @param classNames the simple name of each file's top-level class
+     * @param sources    the text of each file, in the same order
+     */
+    @NotNull
+    public static DependencyOrder of(@NotNull List<String> classNames, @NotNull List<String> sources) {
+        int count = classNames.size();
+        Map<String, List<Integer>> filesByClass = new HashMap<>();
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            filesByClass.computeIfAbsent(classNames.get(i), name -> new ArrayList<>()).add(i);
+            packages.add(ProjectClasspath.packageOf(sources.get(i)));
+        }
+
+        // Each source is scanned once; which files it uses is then looked up by the names it mentions.
+        List<List<Integer>> uses = new ArrayList<>();
+        List<List<Integer>> usedBy = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            usedBy.add(new ArrayList<>());
+        }
+        int[] pending = new int[count];
+        for (int i = 0; i < count; i++) {
+            Names names = Names.of(sources.get(i));
+            Set<Integer> used = new TreeSet<>();
+            for (String identifier : names.identifiers) {
+                for (int j : filesByClass.getOrDefault(identifier, List.of())) {
+                    if (i != j && canSee(names, packages.get(i), classNames.get(j), packages.get(j))) {
+                        used.add(j);
+                    }
+                }
+            }
+            uses.add(new ArrayList<>(used));
+            for (int j : used) {
+                usedBy.get(j).add(i);
+            }
+            pending[i] = used.size();
+        }
+
+        // Kahn's algorithm, taking the first ready file each time so unrelated files keep their order.
+        List<Integer> order = new ArrayList<>();
+        boolean[] placed = new boolean[count];
+        TreeSet<Integer> ready = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            if (pending[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int firstUnplaced = 0;
+        while (order.size() < count) {
+            Integer next = ready.pollFirst();
+            if (next == null) {
+                // Only cycles are left. The first file of them goes ahead of the files it uses.
+                while (placed[firstUnplaced]) {
+                    firstUnplaced++;
+                }
+                next = firstUnplaced;
+            }
+            placed[next] = true;
+            order.add(next);
+            for (int user : usedBy.get(next)) {
+                if (!placed[user] && --pending[user] == 0) {
+                    ready.add(user);
+                }
+            }
+        }
+
+        // Only edges that point backwards in the order are kept, so waiting on them cannot deadlock.
+        int[] position = new int[count];
+        for (int i = 0; i < count; i++) {
+            position[order.get(i)] = i;
+        }
+        List<List<Integer>> upstream = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<Integer> before = new ArrayList<>();
+            for (int used : uses.get(i)) {
+                if (position[used] < position[i]) {
+                    before.add(used);
+                }
+            }
+            upstream.add(before);
+        }
+        return new DependencyOrder(order, upstream);
+    }
+
+    /**
+     * The indices of the files, upstream files first.
+     */
+    @NotNull
+    public List<Integer> getOrder() {
+        return order;
+    }
+
+    /**
+     * The files the given file uses that come before it in {@link #getOrder()}.
+     */
+    @NotNull
+    public List<Integer> upstreamOf(int index) {
+        return upstream.get(index);
+    }
+
+    private static boolean canSee(Names names, String packageName, String otherClass, String otherPackage) {
+        if (otherPackage.equals(packageName)) {
+            return true;
+        }
+        if (otherPackage.isEmpty()) {
+            // Classes in the default package cannot be used from a named package.
+            return false;
+        }
+        return names.qualifiedNames.contains(otherPackage + "." + otherClass)
+                || names.wildcardImports.contains(otherPackage);
+    }
+
+    /**
+     * The names a source mentions: every identifier, every dotted name and its prefixes, and the
+     * packages it imports with {@code .*}.
+     */
+    private static final class Names {
+        final Set<String> identifiers = new HashSet<>();
+        final Set<String> qualifiedNames = new HashSet<>();
+        final Set<String> wildcardImports = new HashSet<>();
+
+        static Names of(String source) {
+            Names names = new Names();
+            Matcher identifier = IDENTIFIER.matcher(source);
+            while (identifier.find()) {
+                names.identifiers.add(identifier.group());
+            }
+            Matcher dotted = DOTTED_NAME.matcher(source);
+            while (dotted.find()) {
+                String name = dotted.group();
+                for (int dot = name.indexOf('.', name.indexOf('.') + 1); dot > 0; dot = name.indexOf('.', dot + 1)) {
+                    names.qualifiedNames.add(name.substring(0, dot));
+                }
+                names.qualifiedNames.add(name);
+            }
+            Matcher wildcard = WILDCARD_IMPORT.matcher(source);
+            while (wildcard.find()) {
+                names.wildcardImports.add(wildcard.group(1));
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package services;
+
+import models.Diagnostic;
+import models.StackFrame;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the text output of javac, kotlinc and the JVM into {@link Diagnostic}s, so that the model
+ * gets exact locations, diagnostic codes and stack traces instead of raw console output.
+ */
+public final class DiagnosticParser {
+    // javac: "/tmp/x/Main.java:12: error: cannot find symbol", followed by the source line, a caret and details
+    private static final Pattern JAVAC_HEADER = Pattern.compile("^(.+?\\.java):(\\d+): (error|warning): (.*)$");
+    // kotlinc: "/tmp/x/Main.kt:12:5: error: unresolved reference: foo", or without a location
+    private static final Pattern KOTLINC_HEADER = Pattern.compile("^(?:(.+?\\.kts?):(\\d+):(\\d+): )?(error|warning): (.*)$");
+    private static final Pattern CARET = Pattern.compile("^(\\s*)\\^\\s*$");
+    private static final Pattern SUMMARY = Pattern.compile("^\\d+ (?:errors?|warnings?)$");
+
+    private static final Pattern EXCEPTION_HEADER = Pattern.compile(
+            "^(?:Exception in thread \"[^\"]*\" |Caused by: )?([a-zA-Z_$][\\w$]*(?:\\.[a-zA-Z_$][\\w$]*)+)(?:: (.*))?$");
+    private static final Pattern FRAME = Pattern.compile(
+            "^\\s+at (?:[\\w.$@-]+/)*([\\w$.]+)\\.([\\w$<>]+)\\((?:([^:)]+)(?::(\\d+))?)?\\)$");
+    private static final String[] PLATFORM_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "kotlin.", "daemon."};
+
+    private DiagnosticParser() {
+    }
+
+    /**
+     * Parses javac or kotlinc console output. Lines that are not part of a diagnostic are ignored.
+     */
+    @NotNull
+    public static List<Diagnostic> parseCompilerOutput(@NotNull String output) {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        String[] lines = output.split("\\R");
+        int i = 0;
+        while (i < lines.length) {
+            Matcher javac = JAVAC_HEADER.matcher(lines[i]);
+            Matcher kotlinc = KOTLINC_HEADER.matcher(lines[i]);
+            if (javac.matches()) {
+                i++;
+                long column = 0;
+                StringBuilder message = new StringBuilder(javac.group(4));
+                // The echoed source line and the caret under the error column come first, details after them.
+                if (i + 1 < lines.length && CARET.matcher(lines[i + 1]).matches()) {
+                    column = CARET.matcher(lines[i + 1]).replaceFirst("$1").length() + 1;
+                    i += 2;
+                }
+                while (i < lines.length && !isCompilerHeader(lines[i]) && !SUMMARY.matcher(lines[i]).matches()
+                        && !lines[i].startsWith("Note: ")) {
+                    message.append("\n  ").append(lines[i].strip());
+                    i++;
+                }
+                diagnostics.add(new Diagnostic(fileName(javac.group(1)), Long.parseLong(javac.group(2)), column,
+                        javac.group(3), null, message.toString()));
+            } else if (kotlinc.matches()) {
+                i++;
+                // kotlinc echoes the source line and a caret, which the line and column already cover.
+                if (i + 1 < lines.length && CARET.matcher(lines[i + 1]).matches()) {
+                    i += 2;
+                }
+                boolean located = kotlinc.group(1) != null;
+                diagnostics.add(new Diagnostic(
+                        located ? fileName(kotlinc.group(1)) : null,
+                        located ? Long.parseLong(kotlinc.group(2)) : 0,
+                        located ? Long.parseLong(kotlinc.group(3)) : 0,
+                        kotlinc.group(4), null, kotlinc.group(5)));
+            } else {
+                i++;
+            }
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Parses the stack traces in a program's stderr. Every exception, including each "Caused by",
+     * becomes a diagnostic located at its innermost frame in the program's own code.
+     */
+    @NotNull
+    public static List<Diagnostic> parseStackTraces(@NotNull String stderr) {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        String[] lines = stderr.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            Matcher header = EXCEPTION_HEADER.matcher(lines[i]);
+            if (!header.matches() || i + 1 >= lines.length || !FRAME.matcher(lines[i + 1]).matches()) {
+                continue;
+            }
+
+            List<StackFrame> frames = new ArrayList<>();
+            while (i + 1 < lines.length) {
+                Matcher frame = FRAME.matcher(lines[i + 1]);
+                if (!frame.matches()) {
+                    break;
+                }
+                frames.add(new StackFrame(frame.group(1), frame.group(2), frame.group(3),
+                        frame.group(4) != null ? Long.parseLong(frame.group(4)) : 0));
+                i++;
+            }
+
+            StackFrame location = frames.get(0);
+            for (StackFrame frame : frames) {
+                if (!isPlatformClass(frame.getClassName()) && frame.getLine() > 0) {
+                    location = frame;
+                    break;
+                }
+            }
+            diagnostics.add(new Diagnostic(location.getFile(), location.getLine(), 0, Diagnostic.EXCEPTION,
+                    header.group(1), header.group(2) != null ? header.group(2) : "(no message)", frames));
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Renders diagnostics one per line, with stack frames indented below their exception.
+     */
+    @NotNull
+    public static String describe(@NotNull List<Diagnostic> diagnostics) {
+        StringBuilder text = new StringBuilder();
+        for (Diagnostic diagnostic : diagnostics) {
+            text.append(diagnostic).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static boolean isCompilerHeader(String line) {
+        return JAVAC_HEADER.matcher(line).matches() || KOTLINC_HEADER.matcher(line).matches();
+    }
+
+    private static boolean isPlatformClass(String className) {
+        for (String prefix : PLATFORM_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fileName(String path) {
+        return new File(path).getName();
+    }
+}
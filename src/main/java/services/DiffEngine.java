@@ -0,0 +1,88 @@
+package services;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.comparison.DiffTooBigException;
+import com.intellij.diff.fragments.DiffFragment;
+import com.intellij.diff.fragments.LineFragment;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import models.DiffHunk;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Computes the changes between the original and the improved code with the platform's diff
+ * algorithm, which matches lines by content, so an inserted line only marks itself as changed.
+ * Optionally the changed words inside modified lines are computed as well.
+ */
+public final class DiffEngine {
+    private DiffEngine() {
+    }
+
+    /**
+     * Computes the hunks on a pooled thread. Cancelling the returned future stops the comparison.
+     */
+    @NotNull
+    public static CompletableFuture<List<DiffHunk>> computeAsync(@NotNull String original, @NotNull String improved,
+                                                                 boolean wordLevel) {
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        CompletableFuture<List<DiffHunk>> hunks = CompletableFuture.supplyAsync(
+                () -> compute(original, improved, wordLevel, indicator), AppExecutorUtil.getAppExecutorService());
+        hunks.whenComplete((result, error) -> {
+            if (hunks.isCancelled()) {
+                indicator.cancel();
+            }
+        });
+        return hunks;
+    }
+
+    /**
+     * Computes the hunks that turn {@code original} into {@code improved}. Texts too large to
+     * compare are reported as one modified hunk.
+     */
+    @NotNull
+    public static List<DiffHunk> compute(@NotNull String original, @NotNull String improved, boolean wordLevel,
+                                         @NotNull ProgressIndicator indicator) {
+        ComparisonManager comparison = ComparisonManager.getInstance();
+        List<LineFragment> fragments;
+        try {
+            fragments = wordLevel
+                    ? comparison.compareLinesInner(original, improved, ComparisonPolicy.DEFAULT, indicator)
+                    : comparison.compareLines(original, improved, ComparisonPolicy.DEFAULT, indicator);
+        } catch (DiffTooBigException e) {
+            return List.of(new DiffHunk(0, lineCount(original), 0, lineCount(improved), List.of()));
+        }
+
+        List<DiffHunk> hunks = new ArrayList<>(fragments.size());
+        for (LineFragment fragment : fragments) {
+            hunks.add(new DiffHunk(fragment.getStartLine1(), fragment.getEndLine1(),
+                    fragment.getStartLine2(), fragment.getEndLine2(), wordChanges(fragment)));
+        }
+        return hunks;
+    }
+
+    private static List<DiffHunk.WordChange> wordChanges(LineFragment fragment) {
+        List<DiffFragment> inner = fragment.getInnerFragments();
+        if (inner == null || fragment.getStartLine1() == fragment.getEndLine1()
+                || fragment.getStartLine2() == fragment.getEndLine2()) {
+            return List.of();
+        }
+        // Inner fragments are relative to the start of the line fragment.
+        int base = fragment.getStartOffset2();
+        List<DiffHunk.WordChange> changes = new ArrayList<>(inner.size());
+        for (DiffFragment word : inner) {
+            changes.add(new DiffHunk.WordChange(base + word.getStartOffset2(), base + word.getEndOffset2()));
+        }
+        return changes;
+    }
+
+    private static int lineCount(String text) {
+        return text.isEmpty() ? 0 : StringUtil.countNewLines(text) + 1;
+    }
+}
@@ -0,0 +1,262 @@
+package services;
+
+import com.google.gson.Gson;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DigestUtil;
+import models.CompilationTarget;
+import models.ExecutionResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache of compiled outputs and execution results. Entries are keyed by a hash of
+ * the source, the language, the toolchain versions and the settings that influence the outcome.
+ * A small in-memory tier sits in front of an on-disk tier that is evicted least-recently-used
+ * once it grows beyond the configured size.
+ */
+public class ExecutionCache {
+    private static final Logger LOG = Logger.getInstance(ExecutionCache.class);
+    private static final int MEMORY_ENTRIES = 64;
+    private static final String RESULT_FILE = "result.json";
+    private static final String ARTIFACTS_DIR = "artifacts";
+    private static final Pattern ANY_FILE = Pattern.compile(".*");
+
+    private final File root = new File(PathManager.getSystemPath(), "eeagent/execution-cache");
+    private final Gson gson = new Gson();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+    private final Map<String, ExecutionResult> memoryResults = createMemoryTier();
+    private final Map<String, Map<String, byte[]>> memoryArtifacts = createMemoryTier();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong compileHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static ExecutionCache getInstance() {
+        return ApplicationManager.getApplication().getService(ExecutionCache.class);
+    }
+
+    private static <V> Map<String, V> createMemoryTier() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MEMORY_ENTRIES;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return PluginSettings.getInstance().isExecutionCacheEnabled();
+    }
+
+    public String keyFor(@NotNull String sourceCode, boolean isKotlin, @NotNull CompilationTarget target) {
+        PluginSettings settings = PluginSettings.getInstance();
+        String compiler = isKotlin
+                ? ToolchainInfo.kotlincVersion()
+                : PluginSettings.COMPILER_IN_PROCESS.equals(settings.getCompilerMode())
+                        ? "in-process " + System.getProperty("java.runtime.version") + " --release " + ToolchainInfo.javaFeatureVersion()
+                        : ToolchainInfo.javacVersion();
+        String identity = String.join("\n",
+                isKotlin ? "kotlin" : "java",
+                compiler,
+                ToolchainInfo.javaVersion(),
+                settings.getExecutionMode(),
+                String.valueOf(settings.getRunTimeoutSeconds()),
+                String.valueOf(settings.getRunHeapMb()),
+                String.valueOf(settings.getCompileTimeoutSeconds()),
+                String.valueOf(settings.getCompileHeapMb()),
+                String.valueOf(settings.getProcessCpuSeconds()),
+                String.valueOf(settings.getMaxOutputKb()),
+                target.getClassName(),
+                ProjectClasspath.fingerprint(target.getClasspath()),
+                ProjectClasspath.fingerprint(target.getSourcepath()),
+                sourceCode);
+        return DigestUtil.sha256Hex(identity.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nullable
+    public ExecutionResult getResult(@NotNull String key) {
+        synchronized (memoryResults) {
+            ExecutionResult result = memoryResults.get(key);
+            if (result != null) {
+                memoryHits.incrementAndGet();
+                return result;
+            }
+        }
+
+        File entry = new File(root, key);
+        File resultFile = new File(entry, RESULT_FILE);
+        if (resultFile.isFile()) {
+            try {
+                ExecutionResult result = gson.fromJson(FileUtil.loadFile(resultFile, StandardCharsets.UTF_8), ExecutionResult.class);
+                touch(entry);
+                synchronized (memoryResults) {
+                    memoryResults.put(key, result);
+                }
+                diskHits.incrementAndGet();
+                return result;
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Dropping unreadable execution cache entry " + key, e);
+                FileUtil.delete(entry);
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void putResult(@NotNull String key, @NotNull ExecutionResult result) {
+        synchronized (memoryResults) {
+            memoryResults.put(key, result);
+        }
+        try {
+            File entry = new File(root, key);
+            FileUtil.writeToFile(new File(entry, RESULT_FILE), gson.toJson(result));
+            touch(entry);
+        } catch (IOException e) {
+            LOG.warn("Failed to store execution result " + key, e);
+        }
+        scheduleEviction();
+    }
+
+    /**
+     * Compiled outputs keyed by their path relative to the output directory, or {@code null} when
+     * the source was not compiled before.
+     */
+    @Nullable
+    public Map<String, byte[]> getArtifacts(@NotNull String key) {
+        synchronized (memoryArtifacts) {
+            Map<String, byte[]> artifacts = memoryArtifacts.get(key);
+            if (artifacts != null) {
+                compileHits.incrementAndGet();
+                return artifacts;
+            }
+        }
+
+        File entry = new File(root, key);
+        File artifactsDir = new File(entry, ARTIFACTS_DIR);
+        if (!artifactsDir.isDirectory()) {
+            return null;
+        }
+
+        try {
+            Map<String, byte[]> artifacts = new LinkedHashMap<>();
+            for (File file : FileUtil.findFilesByMask(ANY_FILE, artifactsDir)) {
+                String relativePath = FileUtil.toSystemIndependentName(FileUtil.getRelativePath(artifactsDir, file));
+                artifacts.put(relativePath, FileUtil.loadFileBytes(file));
+            }
+            touch(entry);
+            synchronized (memoryArtifacts) {
+                memoryArtifacts.put(key, artifacts);
+            }
+            compileHits.incrementAndGet();
+            return artifacts;
+        } catch (IOException e) {
+            LOG.warn("Dropping unreadable compiled outputs " + key, e);
+            FileUtil.delete(artifactsDir);
+            return null;
+        }
+    }
+
+    public void putArtifacts(@NotNull String key, @NotNull Map<String, byte[]> artifacts) {
+        synchronized (memoryArtifacts) {
+            memoryArtifacts.put(key, artifacts);
+        }
+        try {
+            File entry = new File(root, key);
+            File artifactsDir = new File(entry, ARTIFACTS_DIR);
+            for (Map.Entry<String, byte[]> artifact : artifacts.entrySet()) {
+                FileUtil.writeToFile(new File(artifactsDir, artifact.getKey()), artifact.getValue());
+            }
+            touch(entry);
+        } catch (IOException e) {
+            LOG.warn("Failed to store compiled outputs " + key, e);
+        }
+        scheduleEviction();
+    }
+
+    public String getStatistics() {
+        long hits = memoryHits.get() + diskHits.get();
+        return hits + " hits (" + memoryHits.get() + " memory, " + diskHits.get() + " disk), "
+                + misses.get() + " misses, " + compileHits.get() + " reused compilations";
+    }
+
+    public void clear() {
+        synchronized (memoryResults) {
+            memoryResults.clear();
+        }
+        synchronized (memoryArtifacts) {
+            memoryArtifacts.clear();
+        }
+        FileUtil.delete(root);
+    }
+
+    private static void touch(File entry) {
+        //noinspection ResultOfMethodCallIgnored
+        entry.setLastModified(System.currentTimeMillis());
+    }
+
+    private static long sizeOf(File entry) {
+        long size = 0;
+        for (File file : FileUtil.findFilesByMask(ANY_FILE, entry)) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private void scheduleEviction() {
+        if (evictionScheduled.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+                try {
+                    evict();
+                } finally {
+                    evictionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private void evict() {
+        File[] entries = root.listFiles(File::isDirectory);
+        if (entries == null) {
+            return;
+        }
+
+        long limit = PluginSettings.getInstance().getExecutionCacheSizeMb() * 1024L * 1024L;
+        List<File> byLastUse = new ArrayList<>(List.of(entries));
+        byLastUse.sort(Comparator.comparingLong(File::lastModified));
+
+        Map<File, Long> sizes = new LinkedHashMap<>();
+        long total = 0;
+        for (File entry : byLastUse) {
+            long size = sizeOf(entry);
+            sizes.put(entry, size);
+            total += size;
+        }
+
+        for (Map.Entry<File, Long> entry : sizes.entrySet()) {
+            if (total <= limit) {
+                break;
+            }
+            FileUtil.delete(entry.getKey());
+            total -= entry.getValue();
+        }
+    }
+}
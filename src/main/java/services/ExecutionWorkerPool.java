@@ -0,0 +1,231 @@
+package services;
+
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.PathUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import daemon.ExecutionWorker;
+import models.ExecutionResult;
+import org.jetbrains.annotations.NotNull;
+import settings.PluginSettings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs compiled candidates inside reusable worker JVMs (see {@link ExecutionWorker}) instead of
+ * booting a fresh JVM per run. Workers are recycled after a configurable number of runs, and are
+ * replaced whenever a run crashes, times out or runs out of memory.
+ */
+public class ExecutionWorkerPool implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ExecutionWorkerPool.class);
+    private static final int MAX_IDLE_WORKERS = 2;
+    private static final long RESPONSE_GRACE_MILLIS = 2000;
+
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+    private boolean disposed;
+
+    public static ExecutionWorkerPool getInstance() {
+        return ApplicationManager.getApplication().getService(ExecutionWorkerPool.class);
+    }
+
+    /**
+     * Runs {@code mainClass} from the given classes, which take precedence over the same classes on
+     * {@code classpath}.
+     */
+    public ExecutionResult run(@NotNull String mainClass,
+                               @NotNull Map<String, byte[]> classFiles,
+                               @NotNull List<String> classpath,
+                               @NotNull ProgressIndicator indicator) throws IOException {
+        PluginSettings settings = PluginSettings.getInstance();
+        long timeoutMillis = settings.getRunTimeoutSeconds() * 1000L;
+        int heapMb = settings.getRunHeapMb();
+        int maxOutputBytes = settings.getMaxOutputKb() * 1024;
+
+        Worker worker = acquire(heapMb);
+        boolean reusable = false;
+        try {
+            worker.send(mainClass, classFiles, classpath, timeoutMillis, maxOutputBytes);
+
+            // Cancellation and the deadline both kill the worker, which ends the blocking read below.
+            AtomicReference<ExecutionResult> abortReason = new AtomicReference<>();
+            Runnable stopListening = CancellationEvents.onCancel(indicator, () -> abort(worker, abortReason,
+                    ExecutionResult.failure(ExecutionResult.FailureKind.CANCELLED, "Operation cancelled by user")));
+            ScheduledFuture<?> deadline = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                    () -> abort(worker, abortReason,
+                            ExecutionResult.failure(ExecutionResult.FailureKind.TIMEOUT, timeoutMessage(settings))),
+                    timeoutMillis + RESPONSE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            String line;
+            try {
+                line = worker.responses.readLine();
+            } catch (IOException e) {
+                if (abortReason.get() == null) {
+                    throw new IOException("Execution worker failed", e);
+                }
+                line = null;
+            } finally {
+                stopListening.run();
+                deadline.cancel(false);
+            }
+
+            if (abortReason.get() != null) {
+                return abortReason.get();
+            }
+            if (line == null) {
+                return new ExecutionResult(false, "", "The program terminated the JVM unexpectedly.");
+            }
+            if (!line.startsWith("RESULT ")) {
+                throw new IOException("Unexpected execution worker response: " + line);
+            }
+
+            String[] parts = line.split(" ", -1);
+            String status = parts[1];
+            String output = decode(parts[2]);
+            String errors = decode(parts[3]);
+            reusable = status.equals("OK") || status.equals("FAILED");
+
+            switch (status) {
+                case "OK":
+                    return new ExecutionResult(true, output, errors.isEmpty() ? "Execution failed with no errors." : errors);
+                case "TIMEOUT":
+                    return new ExecutionResult(false, output, errors + timeoutMessage(settings), List.of(),
+                            ExecutionResult.FailureKind.TIMEOUT);
+                case "OOM":
+                    return new ExecutionResult(false, output, errors
+                            + "java.lang.OutOfMemoryError: Java heap space (limit " + heapMb + " MB)", List.of(),
+                            ExecutionResult.FailureKind.MEMORY_LIMIT);
+                case "OUTPUT_LIMIT":
+                    return new ExecutionResult(false, output, errors + CodeExecutor.outputLimitMessage(settings),
+                            List.of(), ExecutionResult.FailureKind.OUTPUT_LIMIT);
+                case "EXITED":
+                    boolean exitedCleanly = worker.process.waitFor(1, TimeUnit.SECONDS) && worker.process.exitValue() == 0;
+                    return new ExecutionResult(exitedCleanly, output, errors.isEmpty() ? "Execution failed with no errors." : errors);
+                default:
+                    return new ExecutionResult(false, output, errors.isEmpty() ? "Execution failed with no errors." : errors);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.failure(ExecutionResult.FailureKind.CANCELLED, "Operation cancelled by user");
+        } finally {
+            release(worker, reusable);
+        }
+    }
+
+    private static void abort(Worker worker, AtomicReference<ExecutionResult> abortReason, ExecutionResult reason) {
+        if (abortReason.compareAndSet(null, reason)) {
+            worker.process.destroyForcibly();
+        }
+    }
+
+    private String timeoutMessage(PluginSettings settings) {
+        return "Execution timed out after " + settings.getRunTimeoutSeconds() + " seconds.";
+    }
+
+    private static String decode(String base64) {
+        return new String(Base64.getDecoder().decode(base64), StandardCharsets.UTF_8);
+    }
+
+    private synchronized Worker acquire(int heapMb) throws IOException {
+        if (disposed) {
+            throw new IOException("Execution worker pool is disposed");
+        }
+        while (!idleWorkers.isEmpty()) {
+            Worker worker = idleWorkers.poll();
+            if (worker.process.isAlive() && worker.heapMb == heapMb) {
+                return worker;
+            }
+            worker.destroy();
+        }
+        return Worker.start(heapMb);
+    }
+
+    private synchronized void release(Worker worker, boolean reusable) {
+        worker.runs++;
+        int recycleAfter = PluginSettings.getInstance().getWorkerRecycleRuns();
+        if (disposed || !reusable || worker.runs >= recycleAfter
+                || !worker.process.isAlive() || idleWorkers.size() >= MAX_IDLE_WORKERS) {
+            worker.destroy();
+            return;
+        }
+        idleWorkers.push(worker);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        idleWorkers.forEach(Worker::destroy);
+        idleWorkers.clear();
+    }
+
+    private static class Worker {
+        final Process process;
+        final BufferedWriter requests;
+        final BufferedReader responses;
+        final int heapMb;
+        int runs;
+
+        private Worker(Process process, int heapMb) {
+            this.process = process;
+            this.heapMb = heapMb;
+            this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            this.responses = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        static Worker start(int heapMb) throws IOException {
+            String classPath = PathUtil.getJarPathForClass(ExecutionWorker.class);
+            File kotlinHome = KotlinCompileDaemon.findKotlinHome();
+            if (kotlinHome != null) {
+                classPath += File.pathSeparator + new File(kotlinHome, "lib/kotlin-stdlib.jar").getAbsolutePath();
+            }
+
+            GeneralCommandLine commandLine = new GeneralCommandLine();
+            commandLine.setExePath("java");
+            commandLine.addParameters(
+                    "-Xmx" + heapMb + "m",
+                    "-XX:+UseSerialGC",
+                    "-cp",
+                    classPath,
+                    ExecutionWorker.class.getName());
+
+            Process process = commandLine.toProcessBuilder()
+                    .redirectError(ProcessBuilder.Redirect.appendTo(
+                            new File(PathManager.getLogPath(), "eeagent-execution-worker.log")))
+                    .start();
+            LOG.info("Started execution worker with " + heapMb + " MB heap");
+            return new Worker(process, heapMb);
+        }
+
+        void send(String mainClass, Map<String, byte[]> classFiles, List<String> classpath, long timeoutMillis,
+                  int maxOutputBytes) throws IOException {
+            requests.write("RUN " + timeoutMillis + " " + maxOutputBytes + " " + mainClass + " " + classFiles.size() + " " + classpath.size() + "\n");
+            for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+                requests.write(classFile.getKey() + " " + Base64.getEncoder().encodeToString(classFile.getValue()) + "\n");
+            }
+            for (String entry : classpath) {
+                requests.write(entry + "\n");
+            }
+            requests.flush();
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package services;
+
+import models.CompilationResult;
+import models.Diagnostic;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles Java sources with the {@link JavaCompiler} of the running JVM. Sources and class files
+ * are kept in memory, so no javac process is forked and nothing is written to disk.
+ * <p>
+ * The classes are run by the {@code java} on the PATH, which may be older than the IDE's runtime,
+ * so they are compiled with {@code --release} for the runner's version.
+ */
+public class InMemoryJavaCompiler {
+    private static final int RUNTIME_FEATURE_VERSION = Runtime.version().feature();
+    // The oldest release the javac of JDK 17 and 21 can both target
+    private static final int MIN_RELEASE = 8;
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    public boolean isAvailable() {
+        return compiler != null;
+    }
+
+    /**
+     * Whether classes for a JVM of the given feature version can be compiled here.
+     */
+    public boolean canTarget(int featureVersion) {
+        return isAvailable() && featureVersion >= MIN_RELEASE;
+    }
+
+    /**
+     * Compiles one source file against the given classpath. Classes found on the sourcepath are
+     * compiled along with it and returned with its class files.
+     *
+     * @param className binary name of the file's top-level class, e.g. {@code com.example.Foo}
+     * @param release   feature version of the JVM that will run the classes
+     */
+    public CompilationResult compile(String className, String sourceCode, List<String> classpath,
+                                     List<String> sourcepath, int release) {
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler available in this runtime");
+        }
+
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager =
+                compiler.getStandardFileManager(collector, Locale.ROOT, StandardCharsets.UTF_8);
+
+        // An explicit classpath keeps the IDE's own classes out of the compilation.
+        List<String> options = new ArrayList<>(List.of(
+                "-g", "-proc:none", "-classpath", String.join(File.pathSeparator, classpath)));
+        if (!sourcepath.isEmpty()) {
+            options.addAll(List.of("-sourcepath", String.join(File.pathSeparator, sourcepath)));
+        }
+        // A newer runner can load what this runtime compiles as it is.
+        if (release < RUNTIME_FEATURE_VERSION) {
+            options.addAll(List.of("--release", String.valueOf(release)));
+        }
+
+        try (InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(
+                    null,
+                    fileManager,
+                    collector,
+                    options,
+                    null,
+                    List.of(new SourceFileObject(className, sourceCode)));
+
+            boolean success = Boolean.TRUE.equals(task.call());
+            return new CompilationResult(success, toDiagnostics(collector), fileManager.getClassFiles());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close in-memory file manager: " + e.getMessage(), e);
+        }
+    }
+
+    private List<Diagnostic> toDiagnostics(DiagnosticCollector<JavaFileObject> collector) {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        for (javax.tools.Diagnostic<? extends JavaFileObject> d : collector.getDiagnostics()) {
+            diagnostics.add(new Diagnostic(
+                    d.getSource() != null ? new File(d.getSource().toUri().getPath()).getName() : null,
+                    Math.max(d.getLineNumber(), 0),
+                    Math.max(d.getColumnNumber(), 0),
+                    d.getKind() == javax.tools.Diagnostic.Kind.ERROR ? Diagnostic.ERROR : Diagnostic.WARNING,
+                    d.getCode(),
+                    d.getMessage(Locale.ROOT)));
+        }
+        return diagnostics;
+    }
+
+    private static class SourceFileObject extends SimpleJavaFileObject {
+        private final String sourceCode;
+
+        SourceFileObject(String className, String sourceCode) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.sourceCode = sourceCode;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return sourceCode;
+        }
+    }
+
+    private static class ClassFileObject extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFileObject(String className, Kind kind) {
+            super(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+        byte[] getBytes() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, ClassFileObject> outputs = new LinkedHashMap<>();
+
+        InMemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            ClassFileObject output = new ClassFileObject(className, kind);
+            outputs.put(className, output);
+            return output;
+        }
+
+        Map<String, byte[]> getClassFiles() {
+            Map<String, byte[]> classFiles = new LinkedHashMap<>();
+            outputs.forEach((name, output) -> classFiles.put(name, output.getBytes()));
+            return classFiles;
+        }
+    }
+}
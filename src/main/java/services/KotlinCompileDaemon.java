@@ -0,0 +1,322 @@
+package services;
+
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.util.PathUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import daemon.KotlinCompilerDaemon;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Project-level owner of a long-lived Kotlin compiler process (see {@link KotlinCompilerDaemon}).
+ * The process is started on the first compile request, restarted when it crashes and shut down
+ * together with the project.
+ */
+public class KotlinCompileDaemon implements Disposable {
+    private static final Logger LOG = Logger.getInstance(KotlinCompileDaemon.class);
+    private static final int MAX_CONSECUTIVE_CRASHES = 3;
+    private static final int HANDSHAKE_TIMEOUT_SECONDS = 30;
+
+    public enum Health { STOPPED, STARTING, READY, BUSY, CRASHED, UNAVAILABLE }
+
+    public static class Result {
+        private final int exitCode;
+        private final String messages;
+
+        Result(int exitCode, String messages) {
+            this.exitCode = exitCode;
+            this.messages = messages;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getMessages() {
+            return messages;
+        }
+    }
+
+    private Process process;
+    private BufferedWriter requests;
+    private BufferedReader responses;
+    private boolean disposed;
+
+    private volatile Health health = Health.STOPPED;
+    private volatile int restartCount;
+    private volatile int consecutiveCrashes;
+    private volatile long lastCompileMillis = -1;
+
+    public static KotlinCompileDaemon getInstance(@NotNull Project project) {
+        return project.getService(KotlinCompileDaemon.class);
+    }
+
+    public Health getHealth() {
+        return health;
+    }
+
+    public int getRestartCount() {
+        return restartCount;
+    }
+
+    public long getLastCompileMillis() {
+        return lastCompileMillis;
+    }
+
+    /**
+     * Compiles with the warm daemon. Returns {@code null} when the daemon cannot be used or the
+     * indicator was cancelled, in which case the caller should fall back to a forked kotlinc.
+     */
+    @Nullable
+    public synchronized Result compile(@NotNull List<String> args, @NotNull ProgressIndicator indicator) {
+        if (disposed) {
+            return null;
+        }
+
+        while (consecutiveCrashes < MAX_CONSECUTIVE_CRASHES) {
+            try {
+                if (!ensureStarted()) {
+                    return null;
+                }
+
+                health = Health.BUSY;
+                long start = System.currentTimeMillis();
+                String response = request("COMPILE\t" + String.join("\t", args), indicator);
+                if (response == null) {
+                    return null;
+                }
+
+                lastCompileMillis = System.currentTimeMillis() - start;
+                health = Health.READY;
+                consecutiveCrashes = 0;
+                return parseResult(response);
+            } catch (DaemonTimeoutException e) {
+                // Waiting for a restarted daemon could take as long again, so a forked kotlinc takes over.
+                LOG.warn("Kotlin compiler daemon did not answer in time, stopping it", e);
+                consecutiveCrashes++;
+                restartCount++;
+                health = Health.CRASHED;
+                stopProcess();
+                return null;
+            } catch (IOException e) {
+                LOG.warn("Kotlin compiler daemon failed, restarting it", e);
+                consecutiveCrashes++;
+                restartCount++;
+                health = Health.CRASHED;
+                stopProcess();
+            }
+        }
+        return null;
+    }
+
+    private boolean ensureStarted() throws IOException {
+        if (process != null && process.isAlive()) {
+            return true;
+        }
+
+        File kotlinHome = findKotlinHome();
+        if (kotlinHome == null) {
+            health = Health.UNAVAILABLE;
+            return false;
+        }
+
+        health = Health.STARTING;
+        GeneralCommandLine commandLine = new GeneralCommandLine();
+        commandLine.setExePath("java");
+        commandLine.addParameters(
+                "-Xmx1g",
+                "-Xss4m",
+                "-Dkotlin.home=" + kotlinHome.getAbsolutePath(),
+                "-cp",
+                new File(kotlinHome, "lib/kotlin-compiler.jar").getAbsolutePath()
+                        + File.pathSeparator + PathUtil.getJarPathForClass(KotlinCompilerDaemon.class),
+                KotlinCompilerDaemon.class.getName());
+
+        Process started = commandLine.toProcessBuilder()
+                .redirectError(new File(PathManager.getLogPath(), "eeagent-kotlin-daemon.log"))
+                .start();
+        process = started;
+        requests = new BufferedWriter(new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8));
+        responses = new BufferedReader(new InputStreamReader(started.getInputStream(), StandardCharsets.UTF_8));
+        started.onExit().thenRun(() -> onProcessExit(started));
+
+        requests.write("PING\n");
+        requests.flush();
+        if (!"PONG".equals(readLine(started, HANDSHAKE_TIMEOUT_SECONDS))) {
+            throw new IOException("Kotlin compiler daemon did not answer the health check");
+        }
+
+        health = Health.READY;
+        LOG.info("Kotlin compiler daemon started from " + kotlinHome);
+        return true;
+    }
+
+    @Nullable
+    private String request(String line, ProgressIndicator indicator) throws IOException {
+        requests.write(line);
+        requests.write('\n');
+        requests.flush();
+
+        // The daemon cannot abort a compile, so cancelling kills it and the next request starts it again.
+        Process running = process;
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Runnable stopListening = CancellationEvents.onCancel(indicator, () -> {
+            cancelled.set(true);
+            running.destroyForcibly();
+        });
+        String answer;
+        try {
+            answer = readLine(running, PluginSettings.getInstance().getCompileTimeoutSeconds());
+        } catch (IOException e) {
+            if (!cancelled.get() || e instanceof DaemonTimeoutException) {
+                throw e;
+            }
+            answer = null;
+        } finally {
+            stopListening.run();
+        }
+
+        if (cancelled.get()) {
+            stopProcess();
+            health = Health.STOPPED;
+            return null;
+        }
+        if (answer == null) {
+            throw new IOException("Kotlin compiler daemon closed its output");
+        }
+        return answer;
+    }
+
+    /**
+     * The next line of the daemon's output. A hung daemon would otherwise block every later compile
+     * of the project, so the line is read on a pooled thread and the process killed after the deadline,
+     * which also ends the read.
+     */
+    @Nullable
+    private String readLine(Process running, int timeoutSeconds) throws IOException {
+        BufferedReader reader = responses;
+        CompletableFuture<String> line = CompletableFuture.supplyAsync(() -> {
+            try {
+                return reader.readLine();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, AppExecutorUtil.getAppExecutorService());
+        try {
+            return line.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            running.destroyForcibly();
+            throw new DaemonTimeoutException("Kotlin compiler daemon did not answer within " + timeoutSeconds + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running.destroyForcibly();
+            throw new IOException("Interrupted while waiting for the Kotlin compiler daemon", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private Result parseResult(String response) throws IOException {
+        String[] parts = response.split(" ", 3);
+        if (parts.length < 2 || !parts[0].equals("DONE")) {
+            throw new IOException("Unexpected Kotlin compiler daemon response: " + response);
+        }
+        String messages = parts.length == 3
+                ? new String(Base64.getDecoder().decode(parts[2]), StandardCharsets.UTF_8)
+                : "";
+        return new Result(Integer.parseInt(parts[1]), messages);
+    }
+
+    private synchronized void onProcessExit(Process exited) {
+        if (exited != process || disposed) {
+            return;
+        }
+
+        LOG.warn("Kotlin compiler daemon exited unexpectedly with code " + exited.exitValue());
+        process = null;
+        health = Health.CRASHED;
+        restartCount++;
+        if (++consecutiveCrashes < MAX_CONSECUTIVE_CRASHES) {
+            ApplicationManager.getApplication().executeOnPooledThread(this::restart);
+        }
+    }
+
+    private synchronized void restart() {
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            LOG.warn("Failed to restart Kotlin compiler daemon", e);
+            health = Health.CRASHED;
+            stopProcess();
+        }
+    }
+
+    private void stopProcess() {
+        Process current = process;
+        process = null;
+        if (current != null) {
+            current.destroy();
+        }
+    }
+
+    @Nullable
+    static File findKotlinHome() {
+        File kotlinc = PathEnvironmentVariableUtil.findInPath(SystemInfo.isWindows ? "kotlinc.bat" : "kotlinc");
+        if (kotlinc == null) {
+            return null;
+        }
+        try {
+            File home = kotlinc.toPath().toRealPath().getParent().getParent().toFile();
+            return new File(home, "lib/kotlin-compiler.jar").isFile() ? home : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        Process current = process;
+        process = null;
+        if (current != null) {
+            try {
+                requests.write("SHUTDOWN\n");
+                requests.flush();
+            } catch (IOException ignored) {
+            }
+            current.destroy();
+        }
+        health = Health.STOPPED;
+    }
+
+    private static final class DaemonTimeoutException extends IOException {
+        DaemonTimeoutException(String message) {
+            super(message);
+        }
+    }
+}
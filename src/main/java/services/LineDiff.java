@@ -0,0 +1,44 @@
+package services;
+
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Describes the changes between two versions of some code as unified-diff hunks, for prompts
+ * that only need to tell the model what changed.
+ */
+public final class LineDiff {
+    private LineDiff() {
+    }
+
+    /**
+     * Returns the hunks that turn {@code before} into {@code after}, or an empty string when both
+     * are the same. Inputs too large for a line diff are described as a complete replacement.
+     */
+    @NotNull
+    public static String describe(@NotNull String before, @NotNull String after) {
+        String[] beforeLines = before.split("\n", -1);
+        String[] afterLines = after.split("\n", -1);
+
+        Diff.Change change;
+        try {
+            change = Diff.buildChanges(beforeLines, afterLines);
+        } catch (FilesTooBigForDiffException e) {
+            change = new Diff.Change(0, 0, beforeLines.length, afterLines.length, null);
+        }
+
+        StringBuilder hunks = new StringBuilder();
+        for (; change != null; change = change.link) {
+            hunks.append("@@ -").append(change.line0 + 1).append(',').append(change.deleted)
+                    .append(" +").append(change.line1 + 1).append(',').append(change.inserted).append(" @@\n");
+            for (int i = change.line0; i < change.line0 + change.deleted; i++) {
+                hunks.append('-').append(beforeLines[i]).append('\n');
+            }
+            for (int i = change.line1; i < change.line1 + change.inserted; i++) {
+                hunks.append('+').append(afterLines[i]).append('\n');
+            }
+        }
+        return hunks.toString();
+    }
+}
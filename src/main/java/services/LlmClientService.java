@@ -0,0 +1,144 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import settings.PluginSettings;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The model clients of the application, one per request priority. Building a client creates its
+ * HTTP client and the AiServices proxy, and its first request pays for DNS, TCP and TLS; keeping the
+ * clients means later fixes reuse their pooled keep-alive connections. The clients are rebuilt when
+ * the API key, the model or the server changes.
+ */
+public class LlmClientService {
+    private static final Logger LOG = Logger.getInstance(LlmClientService.class);
+
+    private final Map<LlmRequestScheduler.Priority, OpenAIService> clients = new EnumMap<>(LlmRequestScheduler.Priority.class);
+    private Config config;
+    // The settings the connections were last warmed up for
+    private List<Object> warmedUp;
+
+    public static LlmClientService getInstance() {
+        return ApplicationManager.getApplication().getService(LlmClientService.class);
+    }
+
+    /**
+     * The client for requests of the given priority, built on first use.
+     */
+    @NotNull
+    public synchronized OpenAIService get(@NotNull LlmRequestScheduler.Priority priority) {
+        Config current = Config.fromSettings();
+        if (!current.equals(config)) {
+            clients.clear();
+            config = current;
+        }
+        return clients.computeIfAbsent(priority, p -> {
+            long started = System.nanoTime();
+            OpenAIService client = new OpenAIService(current.apiKey, p);
+            MetricsRegistry.getInstance().recordSince("llm_client_build_milliseconds", started);
+            LOG.info("Built " + p + " client for " + current.model);
+            return client;
+        });
+    }
+
+    /**
+     * Drops the clients if the settings they were built from have changed, and warms up the
+     * connection if that is enabled, including when only the warm-up itself was just turned on.
+     * Called when the settings are applied.
+     */
+    public void settingsChanged() {
+        synchronized (this) {
+            if (!Config.fromSettings().equals(config)) {
+                clients.clear();
+                config = null;
+            }
+        }
+        // Does nothing if the connection for these settings is warm already.
+        if (PluginSettings.getInstance().isWarmUpLlm()) {
+            warmUpAsync();
+        }
+    }
+
+    /**
+     * Sends minimal requests on a pooled thread, so that the connections the next interactive fix
+     * will use are open before it needs them: those of the model it starts on, for the streaming
+     * and fan-out settings in effect. Does nothing if they are already warm or no key is set.
+     * Its duration is recorded as {@code llm_connection_setup_milliseconds}; the client does not
+     * report connection events, so this includes the few tokens of the answers.
+     */
+    @NotNull
+    public CompletableFuture<Void> warmUpAsync() {
+        Config current = Config.fromSettings();
+        PluginSettings settings = PluginSettings.getInstance();
+        List<Object> target = List.of(current, settings.isStreamResponses(), settings.getFanOutCandidates(),
+                settings.getModelLadder());
+        synchronized (this) {
+            if (target.equals(warmedUp) || !current.isUsable()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            warmedUp = target;
+        }
+        return CompletableFuture.runAsync(() -> {
+            long started = System.nanoTime();
+            try {
+                ModelLadder ladder = ModelLadder.fromSettings(get(LlmRequestScheduler.Priority.INTERACTIVE));
+                ladder.get(ladder.preferredRung()).warmUp();
+                MetricsRegistry.getInstance().recordSince("llm_connection_setup_milliseconds", started);
+            } catch (RuntimeException e) {
+                LOG.info("Warming up the model connection failed", e);
+                synchronized (this) {
+                    warmedUp = null;
+                }
+            }
+        }, AppExecutorUtil.getAppExecutorService());
+    }
+
+    /**
+     * The settings a client is built from.
+     */
+    private static final class Config {
+        final String apiKey;
+        final String model;
+        final String baseUrl;
+
+        private Config(String apiKey, String model, String baseUrl) {
+            this.apiKey = apiKey;
+            this.model = model;
+            this.baseUrl = baseUrl;
+        }
+
+        static Config fromSettings() {
+            PluginSettings settings = PluginSettings.getInstance();
+            return new Config(Objects.requireNonNullElse(settings.getApiKey(), ""), settings.getLLM(),
+                    settings.getLlmBaseUrl().trim());
+        }
+
+        /**
+         * Whether a request can succeed: the OpenAI API needs a key, a local server usually not.
+         */
+        boolean isUsable() {
+            return !apiKey.isEmpty() || !baseUrl.isEmpty();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Config other)) {
+                return false;
+            }
+            return apiKey.equals(other.apiKey) && Objects.equals(model, other.model) && baseUrl.equals(other.baseUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(apiKey, model, baseUrl);
+        }
+    }
+}
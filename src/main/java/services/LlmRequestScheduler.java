@@ -0,0 +1,244 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Admits model requests within the configured requests-per-minute and tokens-per-minute budgets,
+ * so that concurrent fix loops do not run into the API's rate limits. Requests that are rejected
+ * with 429 or a server error anyway are retried with jittered exponential backoff. Waiting
+ * requests are served by priority, so an interactive fix overtakes queued batch work.
+ */
+public class LlmRequestScheduler {
+    private static final Logger LOG = Logger.getInstance(LlmRequestScheduler.class);
+    private static final long BASE_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    private final PriorityQueue<Request<?>> queue = new PriorityQueue<>(
+            Comparator.<Request<?>, Priority>comparing(request -> request.priority).thenComparingLong(request -> request.sequence));
+    private final AtomicLong sequence = new AtomicLong();
+    private final TokenBucket requestBudget = new TokenBucket();
+    private final TokenBucket tokenBudget = new TokenBucket();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private ScheduledFuture<?> wakeUp;
+
+    public static LlmRequestScheduler getInstance() {
+        return ApplicationManager.getApplication().getService(LlmRequestScheduler.class);
+    }
+
+    /**
+     * Starts {@code call} once the budgets allow it.
+     *
+     * @param estimatedTokens the tokens the request is expected to use, prompt and answer
+     * @param indicator       cancelling it removes the request from the queue, may be {@code null}
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Priority priority, int estimatedTokens,
+                                           @Nullable ProgressIndicator indicator,
+                                           @NotNull Supplier<CompletableFuture<T>> call) {
+        Request<T> request = new Request<>(priority, estimatedTokens, call, sequence.incrementAndGet());
+        if (indicator != null) {
+            Runnable stopListening = CancellationEvents.onCancel(indicator,
+                    () -> request.result.completeExceptionally(new ProcessCanceledException()));
+            request.result.whenComplete((result, error) -> stopListening.run());
+        }
+        enqueue(request);
+        return request.result;
+    }
+
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    public String getStatistics() {
+        return getQueueLength() + " queued, " + retries.get() + " retries, "
+                + TimeUnit.NANOSECONDS.toSeconds(throttledNanos.get()) + " s spent waiting for the rate limits";
+    }
+
+    private void enqueue(Request<?> request) {
+        synchronized (this) {
+            request.queuedAt = System.nanoTime();
+            queue.add(request);
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts queued requests in priority order for as long as both budgets cover them. The first
+     * request that does not fit blocks the ones behind it, so lower priorities cannot starve it, and
+     * a wake-up is scheduled for when the budgets will have refilled enough.
+     */
+    private void dispatch() {
+        List<Request<?>> admitted = new ArrayList<>();
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        synchronized (this) {
+            PluginSettings settings = PluginSettings.getInstance();
+            long now = System.nanoTime();
+            requestBudget.configure(settings.getLlmRequestsPerMinute(), now);
+            tokenBudget.configure(settings.getLlmTokensPerMinute(), now);
+
+            while (!queue.isEmpty()) {
+                Request<?> head = queue.peek();
+                if (head.result.isDone()) {
+                    queue.poll();
+                    continue;
+                }
+                // A request larger than the whole budget would never fit, it goes through once the bucket is full.
+                double tokens = Math.min(head.estimatedTokens, tokenBudget.capacity);
+                long wait = Math.max(requestBudget.nanosUntil(1), tokenBudget.nanosUntil(tokens));
+                if (wait > 0) {
+                    scheduleWakeUp(wait);
+                    break;
+                }
+                requestBudget.take(1);
+                tokenBudget.take(tokens);
+                queue.poll();
+                throttledNanos.addAndGet(now - head.queuedAt);
+                metrics.record("llm_queue_wait_milliseconds", (now - head.queuedAt) / 1e6);
+                admitted.add(head);
+            }
+        }
+        admitted.forEach(Request::start);
+    }
+
+    private void scheduleWakeUp(long nanos) {
+        if (wakeUp != null && !wakeUp.isDone()) {
+            return;
+        }
+        wakeUp = AppExecutorUtil.getAppScheduledExecutorService().schedule(this::dispatch, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void retryLater(Request<?> request, Throwable error) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(request.attempts, 16));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        retries.incrementAndGet();
+        MetricsRegistry.getInstance().increment("llm_retries_total");
+        LOG.info("Model request failed with " + error.getMessage() + ", retry " + request.attempts + " in " + delay + " ms");
+        if (isRateLimited(error)) {
+            // The server's view of the budget is stricter than ours, so nobody else should start right now.
+            synchronized (this) {
+                requestBudget.drain();
+            }
+        }
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> enqueue(request), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        OpenAiHttpException httpError = findHttpError(error);
+        return httpError != null && (httpError.code() == 429 || httpError.code() >= 500);
+    }
+
+    private static boolean isRateLimited(Throwable error) {
+        OpenAiHttpException httpError = findHttpError(error);
+        return httpError != null && httpError.code() == 429;
+    }
+
+    @Nullable
+    private static OpenAiHttpException findHttpError(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof OpenAiHttpException) {
+                return (OpenAiHttpException) current;
+            }
+        }
+        return null;
+    }
+
+    private final class Request<T> {
+        final Priority priority;
+        final int estimatedTokens;
+        final Supplier<CompletableFuture<T>> call;
+        final long sequence;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt;
+        int attempts;
+
+        Request(Priority priority, int estimatedTokens, Supplier<CompletableFuture<T>> call, long sequence) {
+            this.priority = priority;
+            this.estimatedTokens = estimatedTokens;
+            this.call = call;
+            this.sequence = sequence;
+        }
+
+        void start() {
+            attempts++;
+            CompletableFuture<T> attempt;
+            try {
+                attempt = call.get();
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                    return;
+                }
+                Throwable cause = error instanceof CompletionException || error instanceof ExecutionException
+                        ? error.getCause()
+                        : error;
+                if (!result.isDone() && isRetryable(cause)
+                        && attempts <= PluginSettings.getInstance().getLlmMaxRetries()) {
+                    retryLater(this, cause);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        }
+    }
+
+    /**
+     * A budget that refills continuously at its per-minute rate, up to one minute's worth.
+     */
+    static final class TokenBucket {
+        double capacity;
+        double available;
+        long updated;
+
+        void configure(int perMinute, long now) {
+            if (capacity == 0) {
+                available = perMinute;
+            } else {
+                available = Math.min(perMinute, available + (now - updated) * capacity / 60e9);
+            }
+            capacity = perMinute;
+            updated = now;
+        }
+
+        long nanosUntil(double amount) {
+            return available >= amount ? 0 : (long) Math.ceil((amount - available) * 60e9 / capacity);
+        }
+
+        void take(double amount) {
+            available -= amount;
+        }
+
+        void drain() {
+            available = Math.min(available, 0);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches model answers by normalized prompt, model name and temperature. Identical requests that
+ * are in flight at the same time share a single call. Answers live in a bounded in-memory tier and,
+ * when enabled, in an on-disk tier; both expire after the configured TTL.
+ */
+public class LlmResponseCache {
+    private static final Logger LOG = Logger.getInstance(LlmResponseCache.class);
+    private static final int MEMORY_ENTRIES = 256;
+
+    private final File root = new File(PathManager.getSystemPath(), "eeagent/llm-cache");
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong sharedCalls = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class Entry {
+        final String response;
+        final long createdAt;
+
+        Entry(String response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public static LlmResponseCache getInstance() {
+        return ApplicationManager.getApplication().getService(LlmResponseCache.class);
+    }
+
+    public String getOrCompute(@NotNull String prompt, @NotNull String modelName, @Nullable Double temperature,
+                               @NotNull Supplier<String> call) {
+        try {
+            return getOrComputeAsync(prompt, modelName, temperature,
+                    () -> CompletableFuture.completedFuture(call.get())).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Like {@link #getOrCompute} for calls that answer with a future. Identical calls in flight are
+     * shared: the first caller's call is made, under that caller's progress indicator, and the others
+     * wait for its answer. Every caller gets its own copy of the shared future, so cancelling that
+     * future does not affect the others. If the first caller is cancelled, its call fails with the
+     * cancellation, and the callers still waiting start the call again with their own supplier.
+     */
+    public CompletableFuture<String> getOrComputeAsync(@NotNull String prompt, @NotNull String modelName,
+                                                       @Nullable Double temperature,
+                                                       @NotNull Supplier<CompletableFuture<String>> call) {
+        if (!PluginSettings.getInstance().isLlmCacheEnabled()) {
+            return start(call);
+        }
+
+        String key = keyFor(prompt, modelName, temperature);
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            MetricsRegistry.getInstance().increment("llm_cache_hits_total");
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<String> ownCall = new CompletableFuture<>();
+        CompletableFuture<String> sharedCall = inFlight.putIfAbsent(key, ownCall);
+        if (sharedCall != null) {
+            sharedCalls.incrementAndGet();
+            MetricsRegistry.getInstance().increment("llm_cache_shared_calls_total");
+            return sharedCall.copy().exceptionallyCompose(error -> isCancellation(error)
+                    ? getOrComputeAsync(prompt, modelName, temperature, call)
+                    : CompletableFuture.failedFuture(error));
+        }
+
+        misses.incrementAndGet();
+        MetricsRegistry.getInstance().increment("llm_cache_misses_total");
+        start(call).whenComplete((response, error) -> {
+            if (error == null) {
+                store(key, response);
+            }
+            inFlight.remove(key, ownCall);
+            if (error == null) {
+                ownCall.complete(response);
+            } else {
+                ownCall.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+        return ownCall.copy();
+    }
+
+    /**
+     * Drops an answer, e.g. after it failed verification, so that asking again reaches the model.
+     */
+    public void invalidate(@NotNull String prompt, @NotNull String modelName, @Nullable Double temperature) {
+        String key = keyFor(prompt, modelName, temperature);
+        synchronized (memory) {
+            memory.remove(key);
+        }
+        FileUtil.delete(new File(root, key));
+    }
+
+    private static CompletableFuture<String> start(Supplier<CompletableFuture<String>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof ProcessCanceledException || cause instanceof CancellationException;
+    }
+
+    public String getStatistics() {
+        return hits.get() + " hits, " + sharedCalls.get() + " shared in-flight calls, " + misses.get() + " misses";
+    }
+
+    @Nullable
+    private String lookup(String key) {
+        long oldestValid = System.currentTimeMillis() - PluginSettings.getInstance().getLlmCacheTtlMinutes() * 60_000L;
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (entry.createdAt >= oldestValid) {
+                    return entry.response;
+                }
+                memory.remove(key);
+            }
+        }
+
+        if (!PluginSettings.getInstance().isLlmCacheOnDisk()) {
+            return null;
+        }
+        File file = new File(root, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        if (file.lastModified() < oldestValid) {
+            FileUtil.delete(file);
+            return null;
+        }
+        try {
+            String response = FileUtil.loadFile(file, StandardCharsets.UTF_8);
+            synchronized (memory) {
+                memory.put(key, new Entry(response, file.lastModified()));
+            }
+            return response;
+        } catch (IOException e) {
+            LOG.warn("Dropping unreadable LLM cache entry " + key, e);
+            FileUtil.delete(file);
+            return null;
+        }
+    }
+
+    private void store(String key, String response) {
+        synchronized (memory) {
+            memory.put(key, new Entry(response, System.currentTimeMillis()));
+        }
+        if (PluginSettings.getInstance().isLlmCacheOnDisk()) {
+            try {
+                FileUtil.writeToFile(new File(root, key), response);
+            } catch (IOException e) {
+                LOG.warn("Failed to store LLM response " + key, e);
+            }
+        }
+    }
+
+    private static String keyFor(String prompt, String modelName, @Nullable Double temperature) {
+        String identity = modelName + "\n" + temperature + "\n" + normalize(prompt);
+        return DigestUtil.sha256Hex(identity.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Ignores differences that do not change what the model is asked: line separators, trailing
+     * whitespace and runs of blank lines.
+     */
+    static String normalize(String prompt) {
+        StringBuilder normalized = new StringBuilder();
+        boolean previousBlank = false;
+        for (String line : prompt.replace("\r\n", "\n").split("\n", -1)) {
+            String trimmed = line.stripTrailing();
+            boolean blank = trimmed.isEmpty();
+            if (!(blank && previousBlank)) {
+                normalized.append(trimmed).append('\n');
+            }
+            previousBlank = blank;
+        }
+        return normalized.toString().strip();
+    }
+}
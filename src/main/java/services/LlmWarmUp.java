@@ -0,0 +1,20 @@
+package services;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+import settings.PluginSettings;
+
+/**
+ * Opens the model connection in the background when a project opens, if enabled, so that the
+ * first fix does not wait for it.
+ */
+public class LlmWarmUp implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        if (PluginSettings.getInstance().isWarmUpLlm()) {
+            LlmClientService.getInstance().warmUpAsync();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Shows the histograms and counters of the {@link MetricsRegistry} and exports them for
+ * collection outside the IDE. The tables refresh themselves while the panel exists.
+ */
+public class MetricsPanel extends JPanel implements Disposable {
+    private static final String[] HISTOGRAM_COLUMNS = {"Metric", "Count", "Mean", "p50", "p90", "p99", "Max"};
+    private static final String[] COUNTER_COLUMNS = {"Counter", "Value"};
+    private static final int REFRESH_MILLIS = 2_000;
+
+    private final Project project;
+    private final DefaultTableModel histogramModel = new ReadOnlyTableModel(HISTOGRAM_COLUMNS);
+    private final DefaultTableModel counterModel = new ReadOnlyTableModel(COUNTER_COLUMNS);
+    private final Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+
+    public MetricsPanel(@NotNull Project project) {
+        super(new BorderLayout());
+        this.project = project;
+
+        JBSplitter splitter = new JBSplitter(true, 0.7f);
+        splitter.setFirstComponent(new JBScrollPane(new JBTable(histogramModel)));
+        splitter.setSecondComponent(new JBScrollPane(new JBTable(counterModel)));
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> refresh());
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            MetricsRegistry.getInstance().reset();
+            refresh();
+        });
+        JButton jsonButton = new JButton("Export JSON...");
+        jsonButton.addActionListener(e -> export("json", MetricsRegistry.getInstance()::toJson));
+        JButton prometheusButton = new JButton("Export Prometheus...");
+        prometheusButton.addActionListener(e -> export("prom", MetricsRegistry.getInstance()::toPrometheus));
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(resetButton);
+        buttonPanel.add(jsonButton);
+        buttonPanel.add(prometheusButton);
+
+        JLabel hint = new JLabel("Times in milliseconds, percentiles estimated from histogram buckets.");
+        hint.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        add(hint, BorderLayout.NORTH);
+        add(splitter, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        refresh();
+        refreshTimer.start();
+    }
+
+    private void refresh() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        histogramModel.setRowCount(0);
+        for (MetricsRegistry.Snapshot snapshot : metrics.histogramSnapshots()) {
+            histogramModel.addRow(new Object[]{
+                    snapshot.getName(),
+                    snapshot.getCount(),
+                    format(snapshot.getMean()),
+                    format(snapshot.percentile(0.5)),
+                    format(snapshot.percentile(0.9)),
+                    format(snapshot.percentile(0.99)),
+                    format(snapshot.getMax())});
+        }
+        counterModel.setRowCount(0);
+        for (Map.Entry<String, Long> counter : metrics.counterValues().entrySet()) {
+            counterModel.addRow(new Object[]{counter.getKey(), counter.getValue()});
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private void export(String extension, Supplier<String> content) {
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Metrics", "Save the plugin metrics", extension);
+        VirtualFileWrapper target = FileChooserFactory.getInstance()
+                .createSaveFileDialog(descriptor, project)
+                .save("eeagent-metrics." + extension);
+        if (target == null) {
+            return;
+        }
+        try {
+            Files.writeString(target.getFile().toPath(), content.get(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Messages.showErrorDialog(project, "Could not export the metrics: " + e.getMessage(), "Export Metrics");
+        }
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    private static class ReadOnlyTableModel extends DefaultTableModel {
+        ReadOnlyTableModel(String[] columns) {
+            super(columns, 0);
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package services;
+
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.application.ApplicationManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory histograms and counters for the stages of a fix: executor steps, model requests and
+ * the improve loop. Histograms have fixed, roughly logarithmic buckets, so recording is cheap and
+ * snapshots can be exported in the Prometheus text format as they are.
+ */
+public class MetricsRegistry {
+    private static final String PREFIX = "eeagent_";
+    // Covers milliseconds from 1 ms to about 8 minutes as well as token counts and iteration counts.
+    static final double[] BUCKET_BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000,
+            100_000, 200_000, 500_000};
+
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return ApplicationManager.getApplication().getService(MetricsRegistry.class);
+    }
+
+    public void record(@NotNull String histogram, double value) {
+        histograms.computeIfAbsent(histogram, name -> new Histogram()).record(value);
+    }
+
+    /**
+     * Records the milliseconds since {@code startNanos}, a value of {@link System#nanoTime()}.
+     */
+    public void recordSince(@NotNull String histogram, long startNanos) {
+        record(histogram, (System.nanoTime() - startNanos) / 1e6);
+    }
+
+    public void increment(@NotNull String counter) {
+        counters.computeIfAbsent(counter, name -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    @NotNull
+    public List<Snapshot> histogramSnapshots() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        histograms.forEach((name, histogram) -> snapshots.add(histogram.snapshot(name)));
+        return snapshots;
+    }
+
+    @NotNull
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        counters.forEach((name, value) -> values.put(name, value.get()));
+        return values;
+    }
+
+    /**
+     * All metrics with their percentiles, for collecting them across machines.
+     */
+    @NotNull
+    public String toJson() {
+        Map<String, Object> histogramValues = new LinkedHashMap<>();
+        for (Snapshot snapshot : histogramSnapshots()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", snapshot.getCount());
+            values.put("sum", snapshot.getSum());
+            values.put("min", snapshot.getMin());
+            values.put("max", snapshot.getMax());
+            values.put("mean", snapshot.getMean());
+            values.put("p50", snapshot.percentile(0.5));
+            values.put("p90", snapshot.percentile(0.9));
+            values.put("p99", snapshot.percentile(0.99));
+            histogramValues.put(snapshot.getName(), values);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("histograms", histogramValues);
+        json.put("counters", counterValues());
+        return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format.
+     */
+    @NotNull
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        for (Snapshot snapshot : histogramSnapshots()) {
+            String name = PREFIX + snapshot.getName();
+            text.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                cumulative += snapshot.bucketCounts[i];
+                text.append(name).append("_bucket{le=\"").append(format(BUCKET_BOUNDS[i])).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            text.append(name).append("_bucket{le=\"+Inf\"} ").append(snapshot.getCount()).append('\n');
+            text.append(name).append("_sum ").append(format(snapshot.getSum())).append('\n');
+            text.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+        }
+        counterValues().forEach((counter, value) -> {
+            String name = PREFIX + counter;
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(value).append('\n');
+        });
+        return text.toString();
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static final class Histogram {
+        private final long[] bucketCounts = new long[BUCKET_BOUNDS.length + 1];
+        private long count;
+        private double sum;
+        private double min = Double.MAX_VALUE;
+        private double max;
+
+        synchronized void record(double value) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && value > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            bucketCounts[bucket]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        synchronized Snapshot snapshot(String name) {
+            return new Snapshot(name, bucketCounts.clone(), count, sum, count > 0 ? min : 0, max);
+        }
+    }
+
+    /**
+     * The state of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long[] bucketCounts;
+        private final long count;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        Snapshot(String name, long[] bucketCounts, long count, double sum, double min, double max) {
+            this.name = name;
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * Estimates the given quantile by interpolating linearly inside the bucket it falls into.
+         */
+        public double percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            double rank = quantile * count;
+            long cumulative = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                if (bucketCounts[i] > 0 && cumulative + bucketCounts[i] >= rank) {
+                    double lower = Math.max(i == 0 ? min : BUCKET_BOUNDS[i - 1], min);
+                    double upper = Math.min(i < BUCKET_BOUNDS.length ? BUCKET_BOUNDS[i] : max, max);
+                    return lower + (upper - lower) * (rank - cumulative) / bucketCounts[i];
+                }
+                cumulative += bucketCounts[i];
+            }
+            return max;
+        }
+    }
+}
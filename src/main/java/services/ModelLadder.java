@@ -0,0 +1,65 @@
+package services;
+
+import org.jetbrains.annotations.NotNull;
+import settings.PluginSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The models a fix may use, cheapest first. A fix starts on the rung {@link ModelStatistics} picks
+ * and moves up when the model it uses gets stuck. All rungs are served by the same backend.
+ */
+public class ModelLadder {
+    private final List<OpenAIService> rungs;
+
+    private ModelLadder(List<OpenAIService> rungs) {
+        this.rungs = rungs;
+    }
+
+    /**
+     * The ladder configured in the settings, or just {@code base} if none is configured.
+     */
+    @NotNull
+    public static ModelLadder fromSettings(@NotNull OpenAIService base) {
+        List<OpenAIService> rungs = new ArrayList<>();
+        for (String modelName : PluginSettings.getInstance().getModelLadder().split(",")) {
+            if (!modelName.isBlank()) {
+                rungs.add(base.withModel(modelName.strip()));
+            }
+        }
+        return new ModelLadder(rungs.isEmpty() ? List.of(base) : rungs);
+    }
+
+    public int size() {
+        return rungs.size();
+    }
+
+    @NotNull
+    public OpenAIService get(int rung) {
+        return rungs.get(rung);
+    }
+
+    /**
+     * The rung to start a fix on, from how the models have done so far.
+     */
+    public int startRung() {
+        return ModelStatistics.getInstance().startRung(modelNames());
+    }
+
+    /**
+     * The rung a fix usually starts on, e.g. to warm up its connection; unlike {@link #startRung()}
+     * this does not count as the start of a fix.
+     */
+    public int preferredRung() {
+        return ModelStatistics.getInstance().preferredRung(modelNames());
+    }
+
+    private List<String> modelNames() {
+        List<String> modelNames = new ArrayList<>(rungs.size());
+        for (OpenAIService rung : rungs) {
+            modelNames.add(rung.getModelName());
+        }
+        return modelNames;
+    }
+}
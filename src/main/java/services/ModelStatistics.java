@@ -0,0 +1,137 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How fast each model answers and how often its answers pass, kept across IDE sessions. The
+ * history decides on which rung of the {@link ModelLadder} a fix starts: a model that rarely fixes
+ * anything is skipped, except for every {@value #EXPLORE_EVERY}th fix, so that it can show it has
+ * become useful again. Old results count less as new ones come in.
+ */
+@State(name = "ModelStatistics", storages = @Storage("ModelStatistics.xml"))
+public class ModelStatistics implements PersistentStateComponent<ModelStatistics.State> {
+    // Below this many attempts a model's success rate says too little to skip it
+    private static final int MIN_ATTEMPTS = 10;
+    private static final double MIN_SUCCESS_RATE = 0.2;
+    // Counts are halved once a model has this many attempts, so the rate follows recent results
+    private static final int WINDOW = 100;
+    private static final int EXPLORE_EVERY = 10;
+
+    public static class State {
+        public Map<String, Model> models = new HashMap<>();
+    }
+
+    public static class Model {
+        public long attempts;
+        public long successes;
+        public long requests;
+        public long latencyMillis;
+    }
+
+    private State myState = new State();
+    private final AtomicInteger starts = new AtomicInteger();
+
+    public static ModelStatistics getInstance() {
+        return ApplicationManager.getApplication().getService(ModelStatistics.class);
+    }
+
+    @Override
+    public synchronized State getState() {
+        return myState;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull State state) {
+        myState = state;
+    }
+
+    /**
+     * Records the duration of one answered request.
+     */
+    public synchronized void recordLatency(@NotNull String modelName, long millis) {
+        Model model = model(modelName);
+        model.requests++;
+        model.latencyMillis += millis;
+        if (model.requests >= WINDOW) {
+            model.requests /= 2;
+            model.latencyMillis /= 2;
+        }
+    }
+
+    /**
+     * Records whether the code of one fix attempt passed.
+     */
+    public synchronized void recordAttempt(@NotNull String modelName, boolean success) {
+        Model model = model(modelName);
+        model.attempts++;
+        if (success) {
+            model.successes++;
+        }
+        if (model.attempts >= WINDOW) {
+            model.attempts /= 2;
+            model.successes /= 2;
+        }
+    }
+
+    /**
+     * The share of attempts that passed, or -1 if there are none yet.
+     */
+    public synchronized double successRate(@NotNull String modelName) {
+        Model model = myState.models.get(modelName);
+        return model == null || model.attempts == 0 ? -1 : (double) model.successes / model.attempts;
+    }
+
+    /**
+     * The average duration of a request in milliseconds, or -1 if there are none yet.
+     */
+    public synchronized long averageLatencyMillis(@NotNull String modelName) {
+        Model model = myState.models.get(modelName);
+        return model == null || model.requests == 0 ? -1 : model.latencyMillis / model.requests;
+    }
+
+    /**
+     * The first rung of {@code ladder}, cheapest first, whose model is worth trying. The last rung
+     * is always worth it.
+     */
+    public synchronized int startRung(@NotNull List<String> ladder) {
+        if (starts.incrementAndGet() % EXPLORE_EVERY == 0) {
+            return 0;
+        }
+        return preferredRung(ladder);
+    }
+
+    /**
+     * The cheapest rung that has been doing well enough, without counting this as the start of a fix.
+     */
+    public synchronized int preferredRung(@NotNull List<String> ladder) {
+        for (int rung = 0; rung < ladder.size() - 1; rung++) {
+            Model model = myState.models.get(ladder.get(rung));
+            if (model == null || model.attempts < MIN_ATTEMPTS
+                    || (double) model.successes / model.attempts >= MIN_SUCCESS_RATE) {
+                return rung;
+            }
+        }
+        return Math.max(ladder.size() - 1, 0);
+    }
+
+    @NotNull
+    public synchronized String describe(@NotNull String modelName) {
+        double rate = successRate(modelName);
+        long latency = averageLatencyMillis(modelName);
+        return modelName + ": " + (rate < 0 ? "no attempts" : Math.round(rate * 100) + "% passed")
+                + ", " + (latency < 0 ? "no requests" : latency + " ms per request");
+    }
+
+    private Model model(String modelName) {
+        return myState.models.computeIfAbsent(modelName, name -> new Model());
+    }
+}
@@ -1,34 +1,148 @@
 package services;
 
-import dev.langchain4j.model.openai.OpenAiChatModel;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiModelName;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
 import settings.PluginSettings;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static dev.langchain4j.data.message.SystemMessage.systemMessage;
+import static dev.langchain4j.data.message.UserMessage.userMessage;
+
 public class OpenAIService {
 
+    static final String SYSTEM_PROMPT = "You are a Java programming expert. Fix the code errors in the provided code.\n" +
+            "        Only respond with the corrected code, no explanations.\n" +
+            "        Maintain the original structure and intent of the code while fixing the errors.";
+    private static final int CONVERSATION_EXCHANGES = 3;
+    private static final Map<String, OpenAiTokenizer> TOKENIZERS = new ConcurrentHashMap<>();
+    private static final String WARM_UP_PROMPT = "Reply with OK.";
+    private static final int WARM_UP_TIMEOUT_SECONDS = 30;
+
     // Interface für OpenAI-Interaktionen
     interface OpenAiInteractionService {
-        @SystemMessage("You are a Java programming expert. Fix the code errors in the provided code.\n" +
-                "        Only respond with the corrected code, no explanations.\n" +
-                "        Maintain the original structure and intent of the code while fixing the errors.")
+        @SystemMessage(SYSTEM_PROMPT)
         String sendMessage(@UserMessage String message);
     }
 
     private final OpenAiInteractionService openAiInteractionService;
+    private final ChatBackend backend;
+    // Kennung von Modell und Server, Schlüssel für den Antwort-Cache
+    private final String LLM;
+    private final LlmRequestScheduler.Priority priority;
+    private final ChatLanguageModel chatModel;
+    // Zusätzliche Modelle und Services je Temperatur für parallele Kandidaten
+    private final Map<Double, ChatLanguageModel> modelsByTemperature = new ConcurrentHashMap<>();
+    private final Map<Double, OpenAiInteractionService> servicesByTemperature = new ConcurrentHashMap<>();
+    // Services für die anderen Modelle der ModelLadder, damit auch deren Verbindungen erhalten bleiben
+    private final Map<String, OpenAIService> servicesByModel = new ConcurrentHashMap<>();
+    // Streaming-Modell, wird erst bei Bedarf erzeugt
+    private volatile StreamingChatLanguageModel streamingChatModel;
 
     // Konstruktor zur Initialisierung des OpenAI-Services
     public OpenAIService(String apiKey) {
-        String LLM = PluginSettings.getInstance().getLLM();
-        OpenAiChatModel chatModel = OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .modelName(LLM) // Modellname, kann angepasst werden
-                .timeout(java.time.Duration.ofSeconds(30)) // Timeout für API-Aufrufe
-                .build();
+        this(apiKey, LlmRequestScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * @param priority Vorrang der Anfragen dieses Services in der gemeinsamen Warteschlange, z.B. BATCH für
+     *                 Hintergrundarbeit, die interaktiven Anfragen den Vortritt lassen soll.
+     */
+    public OpenAIService(String apiKey, LlmRequestScheduler.Priority priority) {
+        this(OpenAiCompatibleBackend.fromSettings(apiKey), priority);
+    }
+
+    /**
+     * Verwendet ein beliebiges Backend, z.B. einen lokalen Server oder den {@link ScriptedChatBackend} ohne Netzwerk.
+     */
+    public OpenAIService(ChatBackend backend, LlmRequestScheduler.Priority priority) {
+        this.backend = backend;
+        this.priority = priority;
+        this.LLM = backend.getId();
+        this.chatModel = backend.createChatModel(null);
         this.openAiInteractionService = AiServices.create(OpenAiInteractionService.class, chatModel);
     }
 
+    /**
+     * Derselbe Service mit einem anderen Modell desselben Servers, z.B. für eine Stufe der {@link ModelLadder}.
+     */
+    public OpenAIService withModel(String modelName) {
+        if (modelName.equals(backend.getModelName())) {
+            return this;
+        }
+        return servicesByModel.computeIfAbsent(modelName, name -> new OpenAIService(backend.withModel(name), priority));
+    }
+
+    /**
+     * Sendet eine minimale Anfrage an jedes Modell, das mit den aktuellen Einstellungen Anfragen stellen wird, damit
+     * dessen Verbindung zum Server im Pool seines HTTP-Clients bereitliegt, bevor die erste echte Anfrage kommt:
+     * die Modelle je Temperatur bei parallelen Kandidaten, sonst das Streaming- oder das Standardmodell. Läuft an
+     * Cache und Warteschlange vorbei.
+     */
+    public void warmUp() {
+        PluginSettings settings = PluginSettings.getInstance();
+        int candidates = settings.getFanOutCandidates();
+        if (candidates > 1) {
+            for (double temperature : CodeExecutorImprover.candidateTemperatures(candidates)) {
+                chatModelFor(temperature).generate(userMessage(WARM_UP_PROMPT));
+            }
+        } else if (settings.isStreamResponses()) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            getStreamingChatModel().generate(List.of(userMessage(WARM_UP_PROMPT)), new StreamingResponseHandler<AiMessage>() {
+                @Override
+                public void onNext(String token) {
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    done.complete(null);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    done.completeExceptionally(error);
+                }
+            });
+            done.orTimeout(WARM_UP_TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+        } else {
+            chatModel.generate(userMessage(WARM_UP_PROMPT));
+        }
+    }
+
+    public String getModelName() {
+        return backend.getModelName();
+    }
+
+    private ChatLanguageModel chatModelFor(Double temperature) {
+        return modelsByTemperature.computeIfAbsent(temperature, backend::createChatModel);
+    }
+
+    private OpenAiInteractionService createInteractionService(Double temperature) {
+        return AiServices.create(OpenAiInteractionService.class, chatModelFor(temperature));
+    }
+
     /**
      * Sendet eine Nachricht an OpenAI und gibt die Antwort zurück.
      *
@@ -36,10 +150,301 @@ public class OpenAIService {
      * @return Die Antwort von OpenAI.
      */
     public String sendMessageToOpenAI(String message) {
+        return join(sendMessageToOpenAIAsync(message));
+    }
+
+    /**
+     * Sendet eine Nachricht mit einer bestimmten Temperatur, z.B. um mehrere unterschiedliche Kandidaten zu erhalten.
+     *
+     * @param message     Die Nachricht, die an OpenAI gesendet werden soll.
+     * @param temperature Die Sampling-Temperatur für diese Anfrage.
+     * @return Die Antwort von OpenAI.
+     */
+    public String sendMessageToOpenAI(String message, double temperature) {
+        return join(sendMessageToOpenAIAsync(message, temperature, null));
+    }
+
+    /**
+     * Wie {@link #sendMessageToOpenAI(String, double)}, blockiert aber keinen Thread. Wird der Indikator abgebrochen,
+     * wird die Anfrage aus der Warteschlange genommen bzw. nicht mehr abgewartet.
+     */
+    public CompletableFuture<String> sendMessageToOpenAIAsync(String message, double temperature,
+                                                              ProgressIndicator indicator) {
+        return LlmResponseCache.getInstance().getOrComputeAsync(message, LLM, temperature,
+                () -> schedule(messagesOf(message), indicator, () -> CompletableFuture.supplyAsync(
+                        () -> CodeBlockExtractor.extract(servicesByTemperature
+                                .computeIfAbsent(temperature, this::createInteractionService)
+                                .sendMessage(message)),
+                        AppExecutorUtil.getAppExecutorService())));
+    }
+
+    private static String join(CompletableFuture<String> response) {
         try {
-            return openAiInteractionService.sendMessage(message);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to communicate with OpenAI: " + e.getMessage(), e);
+            return response.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to communicate with OpenAI: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Verwirft eine zwischengespeicherte Antwort, z.B. wenn der gelieferte Code die Prüfung nicht bestanden hat.
+     *
+     * @param message     Die ursprünglich gesendete Nachricht.
+     * @param temperature Die verwendete Temperatur oder {@code null} für den Standardwert.
+     */
+    public void forgetResponse(String message, Double temperature) {
+        LlmResponseCache.getInstance().invalidate(message, LLM, temperature);
+    }
+
+    /**
+     * Beginnt ein Gespräch, in dem sich das Modell an die letzten Nachrichten erinnert, sodass Folgeanfragen nur
+     * noch die Änderungen enthalten müssen.
+     */
+    public Conversation startConversation() {
+        return new Conversation();
+    }
+
+    /**
+     * Schätzt die Anzahl der Tokens, die für die Nachrichten an das Modell gesendet werden.
+     */
+    public int estimateTokenCount(List<ChatMessage> messages) {
+        try {
+            return tokenizer(backend.getModelName()).estimateTokenCountInMessages(messages);
+        } catch (RuntimeException e) {
+            // Unbekanntes Modell, die Kodierung von GPT-3.5 ist eine gute Näherung
+            return tokenizer(OpenAiModelName.GPT_3_5_TURBO).estimateTokenCountInMessages(messages);
+        }
+    }
+
+    private int estimateTokenCount(String text) {
+        try {
+            return tokenizer(backend.getModelName()).estimateTokenCountInText(text);
+        } catch (RuntimeException e) {
+            return tokenizer(OpenAiModelName.GPT_3_5_TURBO).estimateTokenCountInText(text);
+        }
+    }
+
+    /**
+     * Der Tokenizer für das Modell. Er lädt beim Erzeugen seine Kodierung, deshalb gibt es nur einen pro Modell;
+     * für ein unbekanntes Modell wird der von GPT-3.5 verwendet.
+     */
+    private static OpenAiTokenizer tokenizer(String modelName) {
+        return TOKENIZERS.computeIfAbsent(modelName, name -> {
+            try {
+                return new OpenAiTokenizer(name);
+            } catch (RuntimeException e) {
+                return new OpenAiTokenizer(OpenAiModelName.GPT_3_5_TURBO);
+            }
+        });
+    }
+
+    /**
+     * Ein Gespräch mit Gedächtnis über die letzten {@value #CONVERSATION_EXCHANGES} Frage-Antwort-Paare.
+     */
+    public class Conversation {
+        private final List<ChatMessage> history = new ArrayList<>();
+        private String lastTranscript;
+
+        /**
+         * Die Nachrichten, die mit {@code message} gesendet würden, einschließlich Systemnachricht und Verlauf.
+         */
+        public synchronized List<ChatMessage> messagesFor(String message) {
+            List<ChatMessage> messages = new ArrayList<>();
+            messages.add(systemMessage(SYSTEM_PROMPT));
+            messages.addAll(history);
+            messages.add(userMessage(message));
+            return messages;
+        }
+
+        /**
+         * Sendet die Nachricht mit dem bisherigen Verlauf und merkt sich Frage und Antwort.
+         *
+         * @return Der Code aus der Antwort von OpenAI.
+         */
+        public CompletableFuture<String> sendAsync(String message, ProgressIndicator indicator) {
+            List<ChatMessage> messages = messagesFor(message);
+            String transcript = transcriptOf(messages);
+            synchronized (this) {
+                lastTranscript = transcript;
+            }
+            Supplier<CompletableFuture<String>> call = PluginSettings.getInstance().isStreamResponses()
+                    ? () -> stream(messages, indicator)
+                    : () -> CompletableFuture.supplyAsync(
+                            () -> CodeBlockExtractor.extract(chatModel.generate(messages).content().text()),
+                            AppExecutorUtil.getAppExecutorService());
+            return LlmResponseCache.getInstance().getOrComputeAsync(transcript, LLM, null,
+                    () -> schedule(messages, indicator, call)).thenApply(code -> {
+                synchronized (this) {
+                    history.add(userMessage(message));
+                    history.add(AiMessage.from(code));
+                    while (history.size() > CONVERSATION_EXCHANGES * 2) {
+                        history.remove(0);
+                        history.remove(0);
+                    }
+                }
+                return code;
+            });
+        }
+
+        /**
+         * Verwirft die zwischengespeicherte letzte Antwort, das Gespräch selbst behält sie.
+         */
+        public synchronized void forgetLastResponse() {
+            if (lastTranscript != null) {
+                LlmResponseCache.getInstance().invalidate(lastTranscript, LLM, null);
+            }
+        }
+
+        private String transcriptOf(List<ChatMessage> messages) {
+            StringBuilder transcript = new StringBuilder();
+            for (ChatMessage chatMessage : messages) {
+                transcript.append(chatMessage.type()).append(":\n").append(chatMessage.text()).append("\n\n");
+            }
+            return transcript.toString();
+        }
+    }
+
+    /**
+     * Sendet eine Nachricht im Streaming-Modus. Eingehende Tokens werden im Fortschrittsindikator angezeigt, und
+     * der Code wird zurückgegeben, sobald der Codeblock geschlossen ist, auch wenn das Modell noch weiterschreibt.
+     * Wird der Indikator abgebrochen, wird der Stream verworfen.
+     *
+     * @param message   Die Nachricht, die an OpenAI gesendet werden soll.
+     * @param indicator Fortschrittsindikator für Token-Anzeige und Abbruch.
+     * @return Der Code aus der Antwort von OpenAI.
+     */
+    public String streamMessageToOpenAI(String message, ProgressIndicator indicator) {
+        try {
+            return streamMessageToOpenAIAsync(message, indicator).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Wie {@link #streamMessageToOpenAI}, blockiert aber keinen Thread, bis der Code vorliegt.
+     */
+    public CompletableFuture<String> streamMessageToOpenAIAsync(String message, ProgressIndicator indicator) {
+        List<ChatMessage> messages = messagesOf(message);
+        return LlmResponseCache.getInstance().getOrComputeAsync(message, LLM, null,
+                () -> schedule(messages, indicator, () -> stream(messages, indicator)));
+    }
+
+    /**
+     * Wie {@link #sendMessageToOpenAI(String)}, der blockierende Aufruf läuft aber auf einem Pool-Thread.
+     */
+    public CompletableFuture<String> sendMessageToOpenAIAsync(String message) {
+        return LlmResponseCache.getInstance().getOrComputeAsync(message, LLM, null,
+                () -> schedule(messagesOf(message), null, () -> CompletableFuture.supplyAsync(
+                        () -> CodeBlockExtractor.extract(openAiInteractionService.sendMessage(message)),
+                        AppExecutorUtil.getAppExecutorService())));
+    }
+
+    private static List<ChatMessage> messagesOf(String message) {
+        return List.of(
+                systemMessage(SYSTEM_PROMPT),
+                userMessage(message));
+    }
+
+    /**
+     * Reiht den Aufruf beim LlmRequestScheduler ein, der die Raten-Limits einhält und bei 429/5xx wiederholt.
+     * Dauer und Tokens jedes Versuchs werden im MetricsRegistry erfasst, die Dauer zusätzlich je Modell in den
+     * ModelStatistics, die Wartezeit in der Warteschlange erfasst der Scheduler selbst.
+     */
+    private CompletableFuture<String> schedule(List<ChatMessage> messages, ProgressIndicator indicator,
+                                               Supplier<CompletableFuture<String>> call) {
+        int promptTokens = estimateTokenCount(messages);
+        Supplier<CompletableFuture<String>> measuredCall = () -> measured(promptTokens, call);
+        if (!backend.isRateLimited()) {
+            return measuredCall.get();
+        }
+        // Die Antwort ist etwa so lang wie der gesendete Code, daher zählt der Prompt doppelt
+        return LlmRequestScheduler.getInstance().submit(priority, 2 * promptTokens, indicator, measuredCall);
+    }
+
+    private CompletableFuture<String> measured(int promptTokens, Supplier<CompletableFuture<String>> call) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        long started = System.nanoTime();
+        return call.get().whenComplete((code, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (!(cause instanceof ProcessCanceledException) && !(cause instanceof CancellationException)) {
+                    metrics.increment("llm_failures_total");
+                }
+                return;
+            }
+            metrics.recordSince("llm_request_milliseconds", started);
+            ModelStatistics.getInstance().recordLatency(backend.getModelName(), (System.nanoTime() - started) / 1_000_000);
+            metrics.record("llm_prompt_tokens", promptTokens);
+            // Geschätzt aus dem gelieferten Code, da ein abgebrochener Stream keine Token-Nutzung meldet
+            metrics.record("llm_completion_tokens", estimateTokenCount(code));
+        });
+    }
+
+    private CompletableFuture<String> stream(List<ChatMessage> messages, ProgressIndicator indicator) {
+        CompletableFuture<String> code = new CompletableFuture<>();
+        StringBuilder answer = new StringBuilder();
+        AtomicInteger tokens = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        long started = System.nanoTime();
+
+        Runnable stopListening = CancellationEvents.onCancel(indicator, () -> {
+            if (done.compareAndSet(false, true)) {
+                code.completeExceptionally(new ProcessCanceledException());
+            }
+        });
+        code.whenComplete((result, error) -> {
+            stopListening.run();
+            indicator.setText2("");
+        });
+
+        getStreamingChatModel().generate(messages, new StreamingResponseHandler<AiMessage>() {
+            @Override
+            public void onNext(String token) {
+                if (done.get()) {
+                    // Abbrechen des restlichen Streams, der Code wird nicht mehr benötigt
+                    throw new CancellationException("Stream no longer needed");
+                }
+                String closedBlock;
+                synchronized (answer) {
+                    answer.append(token);
+                    closedBlock = CodeBlockExtractor.findClosedBlock(answer);
+                }
+                if (tokens.incrementAndGet() == 1) {
+                    MetricsRegistry.getInstance().recordSince("llm_first_token_milliseconds", started);
+                }
+                indicator.setText2("Receiving fix: " + tokens.get() + " tokens");
+                if (closedBlock != null && done.compareAndSet(false, true)) {
+                    code.complete(closedBlock);
+                }
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                if (done.compareAndSet(false, true)) {
+                    code.complete(CodeBlockExtractor.extract(response.content().text()));
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (done.compareAndSet(false, true)) {
+                    code.completeExceptionally(
+                            new RuntimeException("Failed to communicate with OpenAI: " + error.getMessage(), error));
+                }
+            }
+        });
+        return code;
+    }
+
+    private StreamingChatLanguageModel getStreamingChatModel() {
+        if (streamingChatModel == null) {
+            synchronized (this) {
+                if (streamingChatModel == null) {
+                    streamingChatModel = backend.createStreamingChatModel();
+                }
+            }
         }
+        return streamingChatModel;
     }
 }
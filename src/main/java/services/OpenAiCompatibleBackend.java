@@ -0,0 +1,84 @@
+package services;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import settings.PluginSettings;
+
+import java.time.Duration;
+
+/**
+ * Talks to the OpenAI API or to any server that implements its chat completions endpoint, such as
+ * a model served locally on the same machine.
+ */
+public class OpenAiCompatibleBackend implements ChatBackend {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    // Local servers usually ignore the key, but the client refuses to send a request without one.
+    private static final String PLACEHOLDER_API_KEY = "none";
+
+    private final String apiKey;
+    private final String baseUrl;
+    private final String modelName;
+
+    /**
+     * @param baseUrl the endpoint, e.g. {@code http://localhost:8080/v1}, or empty for the OpenAI API
+     */
+    public OpenAiCompatibleBackend(@Nullable String apiKey, @NotNull String baseUrl, @NotNull String modelName) {
+        this.apiKey = apiKey == null || apiKey.isEmpty() ? PLACEHOLDER_API_KEY : apiKey;
+        this.baseUrl = baseUrl.trim();
+        this.modelName = modelName;
+    }
+
+    /**
+     * The backend configured in the settings.
+     */
+    public static OpenAiCompatibleBackend fromSettings(@Nullable String apiKey) {
+        PluginSettings settings = PluginSettings.getInstance();
+        return new OpenAiCompatibleBackend(apiKey, settings.getLlmBaseUrl(), settings.getLLM());
+    }
+
+    @Override
+    public @NotNull String getModelName() {
+        return modelName;
+    }
+
+    @Override
+    public @NotNull String getId() {
+        return baseUrl.isEmpty() ? modelName : modelName + "@" + baseUrl;
+    }
+
+    @Override
+    public @NotNull ChatBackend withModel(@NotNull String modelName) {
+        return modelName.equals(this.modelName) ? this : new OpenAiCompatibleBackend(apiKey, baseUrl, modelName);
+    }
+
+    @Override
+    public @NotNull ChatLanguageModel createChatModel(@Nullable Double temperature) {
+        OpenAiChatModel.OpenAiChatModelBuilder builder = OpenAiChatModel.builder()
+                .apiKey(apiKey)
+                .modelName(modelName)
+                .temperature(temperature)
+                .timeout(TIMEOUT)
+                // Retries are left to the LlmRequestScheduler.
+                .maxRetries(1);
+        if (!baseUrl.isEmpty()) {
+            builder.baseUrl(baseUrl);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public @NotNull StreamingChatLanguageModel createStreamingChatModel() {
+        OpenAiStreamingChatModel.OpenAiStreamingChatModelBuilder builder = OpenAiStreamingChatModel.builder()
+                .apiKey(apiKey)
+                .modelName(modelName)
+                .timeout(TIMEOUT);
+        if (!baseUrl.isEmpty()) {
+            builder.baseUrl(baseUrl);
+        }
+        return builder.build();
+    }
+}
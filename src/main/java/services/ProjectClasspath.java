@@ -0,0 +1,125 @@
+package services;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.io.DigestUtil;
+import models.CompilationTarget;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves what a file in the project is compiled against: the output directories of its module
+ * and the modules it depends on, plus their libraries. Those outputs come from the project's own
+ * builds, so only the edited file has to be compiled.
+ */
+public final class ProjectClasspath {
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)", Pattern.MULTILINE);
+    // State of each classpath entry by its system-independent path, until a change under it is reported
+    private static final Map<String, String> ENTRY_STATES = new ConcurrentHashMap<>();
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+    private ProjectClasspath() {
+    }
+
+    @NotNull
+    public static CompilationTarget targetFor(@NotNull Project project, @NotNull VirtualFile file) {
+        List<String> classpath = ReadAction.compute(() -> {
+            Module module = ModuleUtilCore.findModuleForFile(file, project);
+            if (module == null) {
+                return List.of();
+            }
+            // The JDK running the compiler provides the platform classes.
+            return OrderEnumerator.orderEntries(module).recursively().withoutSdk().classes()
+                    .getPathsList().getPathList();
+        });
+        return new CompilationTarget(file.getNameWithoutExtension(), classpath);
+    }
+
+    /**
+     * The package declared in the source, or an empty string for the default package.
+     */
+    @NotNull
+    public static String packageOf(@NotNull String sourceCode) {
+        Matcher matcher = PACKAGE.matcher(sourceCode);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    /**
+     * The binary name of the target's class as declared by the source, e.g. {@code com.example.Foo}.
+     */
+    @NotNull
+    public static String qualifiedName(@NotNull CompilationTarget target, @NotNull String sourceCode) {
+        String packageName = packageOf(sourceCode);
+        return packageName.isEmpty() ? target.getClassName() : packageName + "." + target.getClassName();
+    }
+
+    /**
+     * Identifies the classpath and the state of everything on it, so that a rebuild of the project
+     * invalidates results that were compiled against the old outputs. The state of an entry is
+     * computed once and kept until {@link ClasspathChangeListener} reports a change under it.
+     */
+    @NotNull
+    public static String fingerprint(@NotNull List<String> classpath) {
+        StringBuilder identity = new StringBuilder();
+        for (String entry : classpath) {
+            String path = FileUtil.toSystemIndependentName(entry);
+            String state = ENTRY_STATES.get(path);
+            if (state == null) {
+                long invalidations = INVALIDATIONS.get();
+                state = entryState(entry);
+                // A change reported while the entry was being walked may not be part of the state.
+                if (INVALIDATIONS.get() == invalidations) {
+                    ENTRY_STATES.putIfAbsent(path, state);
+                }
+            }
+            identity.append(entry).append(' ').append(state).append('\n');
+        }
+        return DigestUtil.sha256Hex(identity.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Forgets the state of every entry that contains one of the changed paths.
+     */
+    static void invalidate(@NotNull Collection<String> changedPaths) {
+        if (ENTRY_STATES.isEmpty()) {
+            return;
+        }
+        INVALIDATIONS.incrementAndGet();
+        for (String changed : changedPaths) {
+            ENTRY_STATES.keySet().removeIf(entry -> FileUtil.isAncestor(entry, changed, false));
+        }
+    }
+
+    static void invalidateAll() {
+        INVALIDATIONS.incrementAndGet();
+        ENTRY_STATES.clear();
+    }
+
+    private static String entryState(String entry) {
+        File file = new File(entry);
+        long lastModified = file.lastModified();
+        long size = file.length();
+        if (file.isDirectory()) {
+            size = 0;
+            for (File child : FileUtil.findFilesByMask(Pattern.compile(".*"), file)) {
+                lastModified = Math.max(lastModified, child.lastModified());
+                size += child.length();
+            }
+        }
+        return lastModified + " " + size;
+    }
+}
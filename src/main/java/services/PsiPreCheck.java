@@ -0,0 +1,126 @@
+package services;
+
+import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.LineColumn;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiErrorElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.util.PsiTreeUtil;
+import models.Diagnostic;
+import models.ExecutionResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds errors without launching a compiler. The open file's errors are read from what the IDE has
+ * already highlighted, and candidates are parsed in memory, so code with syntax errors never gets
+ * to the external compiler. Neither check proves that code compiles; only errors are trusted.
+ */
+public class PsiPreCheck {
+    private static final String SYNTAX_ERROR = "psi.syntax";
+    private static final String IDE_ERROR = "ide.error";
+
+    private final Project project;
+    private final String fileName;
+    private final boolean isKotlin;
+
+    /**
+     * @param fileName the name the code is compiled under, used in the diagnostics
+     */
+    public PsiPreCheck(@NotNull Project project, @NotNull String fileName, boolean isKotlin) {
+        this.project = project;
+        this.fileName = fileName;
+        this.isKotlin = isKotlin;
+    }
+
+    /**
+     * The errors the IDE shows for {@code document}, or an empty list if the document no longer has
+     * the text {@code sourceCode}, is not committed or has not been analyzed yet. Syntax errors are
+     * reported even before the analysis has finished.
+     */
+    @NotNull
+    public List<Diagnostic> knownErrors(@NotNull Document document, @NotNull String sourceCode) {
+        return ReadAction.compute(() -> {
+            PsiDocumentManager documents = PsiDocumentManager.getInstance(project);
+            if (project.isDisposed() || !StringUtil.equals(document.getImmutableCharSequence(), sourceCode)
+                    || !documents.isCommitted(document)) {
+                return List.of();
+            }
+            PsiFile file = documents.getPsiFile(document);
+            if (file == null) {
+                return List.of();
+            }
+
+            DaemonCodeAnalyzerEx daemon = DaemonCodeAnalyzerEx.getInstanceEx(project);
+            if (!daemon.isErrorAnalyzingFinished(file)) {
+                return syntaxErrors(file, sourceCode);
+            }
+            List<Diagnostic> errors = new ArrayList<>();
+            DaemonCodeAnalyzerEx.processHighlights(document, project, HighlightSeverity.ERROR, 0,
+                    document.getTextLength(), info -> {
+                        if (info.getSeverity().compareTo(HighlightSeverity.ERROR) >= 0 && info.getDescription() != null) {
+                            errors.add(toDiagnostic(sourceCode, info));
+                        }
+                        return true;
+                    });
+            return errors;
+        });
+    }
+
+    /**
+     * The syntax errors of {@code sourceCode}, found by parsing it in memory. Empty if the code
+     * parses, or if the IDE has no parser for the language.
+     */
+    @NotNull
+    public List<Diagnostic> parseErrors(@NotNull String sourceCode) {
+        FileType fileType = FileTypeManager.getInstance().getFileTypeByExtension(isKotlin ? "kt" : "java");
+        return ReadAction.compute(() -> {
+            if (project.isDisposed()) {
+                return List.of();
+            }
+            PsiFile file = PsiFileFactory.getInstance(project).createFileFromText(fileName, fileType, sourceCode);
+            return syntaxErrors(file, sourceCode);
+        });
+    }
+
+    /**
+     * A failed compilation carrying {@code errors}, as if the compiler had reported them.
+     */
+    @NotNull
+    public static ExecutionResult toResult(@NotNull List<Diagnostic> errors) {
+        return new ExecutionResult(false, "", DiagnosticParser.describe(errors), errors,
+                ExecutionResult.FailureKind.COMPILATION_ERROR);
+    }
+
+    private List<Diagnostic> syntaxErrors(PsiFile file, String sourceCode) {
+        List<Diagnostic> errors = new ArrayList<>();
+        for (PsiErrorElement error : PsiTreeUtil.collectElementsOfType(file, PsiErrorElement.class)) {
+            errors.add(diagnostic(sourceCode, error.getTextOffset(), SYNTAX_ERROR, error.getErrorDescription()));
+        }
+        return errors;
+    }
+
+    private Diagnostic toDiagnostic(String sourceCode, HighlightInfo info) {
+        String code = info.getInspectionToolId() != null ? info.getInspectionToolId() : IDE_ERROR;
+        return diagnostic(sourceCode, info.getStartOffset(), code, info.getDescription());
+    }
+
+    private Diagnostic diagnostic(String sourceCode, int offset, @Nullable String code, String message) {
+        LineColumn position = StringUtil.offsetToLineColumn(sourceCode, Math.min(offset, sourceCode.length()));
+        long line = position != null ? position.line + 1 : 0;
+        long column = position != null ? position.column + 1 : 0;
+        return new Diagnostic(fileName, line, column, Diagnostic.ERROR, code, message);
+    }
+}
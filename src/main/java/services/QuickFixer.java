@@ -0,0 +1,242 @@
+package services;
+
+import com.intellij.core.JavaPsiBundle;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassInitializer;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiErrorElement;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLambdaExpression;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiPackageStatement;
+import com.intellij.psi.PsiReferenceList;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.psi.util.PsiTreeUtil;
+import models.Diagnostic;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Repairs the errors that have exactly one obvious fix, the way the IDE's own quick-fixes would, so
+ * they do not need a model request: a missing import of a class whose name is unique in the
+ * project and its libraries, a missing semicolon, and a checked exception the enclosing method does
+ * not declare. The repairs are made on a parsed copy of the code; the result still has to be
+ * compiled to know whether it is right.
+ */
+public class QuickFixer {
+    // javac: "cannot find symbol ... symbol: class Foo", the IDE: "Cannot resolve symbol 'Foo'"
+    private static final Pattern MISSING_CLASS = Pattern.compile(
+            "symbol:\\s+(?:class|variable) ([A-Z][\\w$]*)|Cannot resolve symbol '([A-Z][\\w$]*)'");
+    // javac: "unreported exception java.io.IOException; must be caught ...", the IDE: "Unhandled exception: ..."
+    private static final Pattern UNREPORTED_EXCEPTION = Pattern.compile(
+            "unreported exception ([\\w.$]+); must be caught or declared to be thrown|Unhandled exceptions?: ([\\w.$, ]+)");
+
+    private final Project project;
+    private final boolean isKotlin;
+
+    public QuickFixer(@NotNull Project project, boolean isKotlin) {
+        this.project = project;
+        this.isKotlin = isKotlin;
+    }
+
+    /**
+     * The code with every error repaired that has an obvious fix, or {@code null} if there is none.
+     * Only Java is supported.
+     */
+    @Nullable
+    public String repair(@NotNull String sourceCode, @NotNull List<Diagnostic> diagnostics) {
+        if (isKotlin) {
+            return null;
+        }
+        return ReadAction.compute(() -> {
+            if (project.isDisposed()) {
+                return null;
+            }
+            PsiJavaFile file = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                    .createFileFromText("Repair.java", JavaFileType.INSTANCE, sourceCode);
+            List<Edit> edits = new ArrayList<>();
+            addMissingSemicolons(file, edits);
+            addMissingImports(file, diagnostics, edits);
+            addMissingThrows(file, sourceCode, diagnostics, edits);
+            return edits.isEmpty() ? null : apply(sourceCode, edits);
+        });
+    }
+
+    private static void addMissingSemicolons(PsiJavaFile file, List<Edit> edits) {
+        String expected = JavaPsiBundle.message("expected.semicolon");
+        for (PsiErrorElement error : PsiTreeUtil.collectElementsOfType(file, PsiErrorElement.class)) {
+            if (expected.equals(error.getErrorDescription())) {
+                edits.add(new Edit(error.getTextOffset(), ";"));
+            }
+        }
+    }
+
+    private void addMissingImports(PsiJavaFile file, List<Diagnostic> diagnostics, List<Edit> edits) {
+        // Class names are looked up in the indexes, which are not available while they are being built.
+        if (DumbService.isDumb(project)) {
+            return;
+        }
+        Set<String> imports = new TreeSet<>();
+        for (String name : matches(MISSING_CLASS, diagnostics)) {
+            String qualifiedName = uniqueClass(name);
+            if (qualifiedName != null && !isImported(file, name)) {
+                imports.add(qualifiedName);
+            }
+        }
+        if (imports.isEmpty()) {
+            return;
+        }
+
+        StringBuilder block = new StringBuilder();
+        for (String qualifiedName : imports) {
+            block.append("import ").append(qualifiedName).append(";\n");
+        }
+        PsiImportList importList = file.getImportList();
+        PsiPackageStatement packageStatement = file.getPackageStatement();
+        if (importList != null && importList.getAllImportStatements().length > 0) {
+            edits.add(new Edit(importList.getTextRange().getEndOffset(), "\n" + StringUtil.trimEnd(block.toString(), "\n")));
+        } else if (packageStatement != null) {
+            edits.add(new Edit(packageStatement.getTextRange().getEndOffset(), "\n\n" + StringUtil.trimEnd(block.toString(), "\n")));
+        } else {
+            edits.add(new Edit(0, block + "\n"));
+        }
+    }
+
+    /**
+     * The qualified name of the only public top-level class called {@code name}, or {@code null} if
+     * there is none or the name is ambiguous.
+     */
+    @Nullable
+    private String uniqueClass(String name) {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (PsiClass psiClass : PsiShortNamesCache.getInstance(project).getClassesByName(name, GlobalSearchScope.allScope(project))) {
+            String qualifiedName = psiClass.getQualifiedName();
+            if (qualifiedName != null && qualifiedName.contains(".") && psiClass.getContainingClass() == null
+                    && psiClass.hasModifierProperty(PsiModifier.PUBLIC)) {
+                candidates.add(qualifiedName);
+            }
+        }
+        return candidates.size() == 1 ? candidates.iterator().next() : null;
+    }
+
+    private static boolean isImported(PsiJavaFile file, String name) {
+        PsiImportList importList = file.getImportList();
+        return importList != null && importList.findSingleImportStatement(name) != null;
+    }
+
+    private static void addMissingThrows(PsiJavaFile file, String sourceCode, List<Diagnostic> diagnostics,
+                                         List<Edit> edits) {
+        Map<PsiMethod, Set<String>> missing = new LinkedHashMap<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            Matcher matcher = UNREPORTED_EXCEPTION.matcher(diagnostic.getMessage());
+            PsiMethod method = matcher.find() ? enclosingMethod(file, sourceCode, diagnostic) : null;
+            if (method == null) {
+                continue;
+            }
+            String exceptions = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            for (String exception : exceptions.split(",")) {
+                if (!exception.isBlank() && !declares(method, exception.strip())) {
+                    missing.computeIfAbsent(method, m -> new LinkedHashSet<>()).add(exception.strip());
+                }
+            }
+        }
+        missing.forEach((method, exceptions) -> {
+            PsiReferenceList throwsList = method.getThrowsList();
+            String names = String.join(", ", exceptions);
+            if (throwsList.getReferenceElements().length == 0) {
+                edits.add(new Edit(method.getParameterList().getTextRange().getEndOffset(), " throws " + names));
+            } else {
+                edits.add(new Edit(throwsList.getTextRange().getEndOffset(), ", " + names));
+            }
+        });
+    }
+
+    /**
+     * The method the diagnostic is in, or {@code null} if it is inside a lambda or an initializer,
+     * where a throws clause cannot help.
+     */
+    @Nullable
+    private static PsiMethod enclosingMethod(PsiJavaFile file, String sourceCode, Diagnostic diagnostic) {
+        if (diagnostic.getLine() <= 0) {
+            return null;
+        }
+        int offset = StringUtil.lineColToOffset(sourceCode, (int) diagnostic.getLine() - 1,
+                (int) Math.max(diagnostic.getColumn() - 1, 0));
+        if (offset < 0) {
+            return null;
+        }
+        if (diagnostic.getColumn() <= 0) {
+            // No column: take the first token of the line.
+            while (offset < sourceCode.length() && Character.isWhitespace(sourceCode.charAt(offset))) {
+                offset++;
+            }
+        }
+        PsiElement element = file.findElementAt(offset);
+        PsiElement owner = PsiTreeUtil.getParentOfType(element, PsiMethod.class, PsiLambdaExpression.class,
+                PsiClassInitializer.class);
+        return owner instanceof PsiMethod method && method.getBody() != null ? method : null;
+    }
+
+    private static boolean declares(PsiMethod method, String exception) {
+        String simpleName = StringUtil.getShortName(exception);
+        for (PsiJavaCodeReferenceElement reference : method.getThrowsList().getReferenceElements()) {
+            if (exception.equals(reference.getQualifiedName()) || simpleName.equals(reference.getReferenceName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> matches(Pattern pattern, List<Diagnostic> diagnostics) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            Matcher matcher = pattern.matcher(diagnostic.getMessage());
+            while (matcher.find()) {
+                names.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+            }
+        }
+        return names;
+    }
+
+    private static String apply(String sourceCode, List<Edit> edits) {
+        StringBuilder code = new StringBuilder(sourceCode);
+        // The sort is stable and the edits are inserted back to front, so those at the same offset keep their order.
+        List<Edit> ordered = new ArrayList<>(edits);
+        ordered.sort(Comparator.comparingInt(edit -> edit.offset));
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            code.insert(ordered.get(i).offset, ordered.get(i).text);
+        }
+        return code.toString();
+    }
+
+    private static final class Edit {
+        final int offset;
+        final String text;
+
+        Edit(int offset, String text) {
+            this.offset = offset;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package services;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process stand-in for a model that answers from a script, so that the fix loop can be run
+ * and measured without a network. Answers are deterministic: the same requests in the same order
+ * always get the same answers, whatever the temperature.
+ */
+public class ScriptedChatBackend implements ChatBackend {
+    private static final Pattern STREAM_CHUNK = Pattern.compile("\\s*\\S+");
+
+    private final Function<List<ChatMessage>, String> script;
+    private final Duration latency;
+    private final List<List<ChatMessage>> requests = new ArrayList<>();
+
+    /**
+     * Answers with the given responses in turn and repeats the last one once they run out.
+     */
+    public ScriptedChatBackend(@NotNull List<String> answers) {
+        this(inTurn(answers), Duration.ZERO);
+    }
+
+    /**
+     * @param script  computes the answer from the messages of a request
+     * @param latency how long every answer takes, to imitate a model's response time
+     */
+    public ScriptedChatBackend(@NotNull Function<List<ChatMessage>, String> script, @NotNull Duration latency) {
+        this.script = script;
+        this.latency = latency;
+    }
+
+    private static Function<List<ChatMessage>, String> inTurn(List<String> answers) {
+        if (answers.isEmpty()) {
+            throw new IllegalArgumentException("A script needs at least one answer");
+        }
+        int[] next = {0};
+        return messages -> {
+            synchronized (next) {
+                return answers.get(Math.min(next[0]++, answers.size() - 1));
+            }
+        };
+    }
+
+    /**
+     * The messages of every request so far, in the order they were received.
+     */
+    public synchronized List<List<ChatMessage>> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    @Override
+    public @NotNull String getModelName() {
+        return "scripted";
+    }
+
+    @Override
+    public @NotNull String getId() {
+        // Every instance follows its own script, so answers must not be shared through the cache.
+        return "scripted@" + System.identityHashCode(this);
+    }
+
+    @Override
+    public boolean isRateLimited() {
+        return false;
+    }
+
+    @Override
+    public @NotNull ChatLanguageModel createChatModel(@Nullable Double temperature) {
+        return messages -> {
+            String answer = answer(messages);
+            return new Response<>(AiMessage.from(answer), usage(messages, answer), FinishReason.STOP);
+        };
+    }
+
+    @Override
+    public @NotNull StreamingChatLanguageModel createStreamingChatModel() {
+        return (messages, handler) -> {
+            String answer;
+            try {
+                answer = answer(messages);
+            } catch (RuntimeException e) {
+                handler.onError(e);
+                return;
+            }
+            stream(answer, usage(messages, answer), handler);
+        };
+    }
+
+    private static void stream(String answer, TokenUsage usage, StreamingResponseHandler<AiMessage> handler) {
+        Matcher chunks = STREAM_CHUNK.matcher(answer);
+        int end = 0;
+        try {
+            while (chunks.find()) {
+                handler.onNext(chunks.group());
+                end = chunks.end();
+            }
+            if (end < answer.length()) {
+                handler.onNext(answer.substring(end));
+            }
+        } catch (CancellationException e) {
+            // The consumer has what it needs, like a client that closes the connection.
+            return;
+        }
+        handler.onComplete(new Response<>(AiMessage.from(answer), usage, FinishReason.STOP));
+    }
+
+    private String answer(List<ChatMessage> messages) {
+        synchronized (this) {
+            requests.add(List.copyOf(messages));
+        }
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while answering", e);
+            }
+        }
+        return script.apply(messages);
+    }
+
+    // A rough count, four characters per token, so that usage statistics are not empty.
+    private static TokenUsage usage(List<ChatMessage> messages, String answer) {
+        int input = 0;
+        for (ChatMessage message : messages) {
+            input += message.text().length() / 4;
+        }
+        return new TokenUsage(input, answer.length() / 4);
+    }
+}
@@ -0,0 +1,345 @@
+package services;
+
+import models.Diagnostic;
+import models.StackFrame;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Narrows a fix request down to the declarations that the diagnostics point at, and puts the
+ * model's answer for such an excerpt back into the full source. Declarations are found by
+ * matching braces, with comments and literals masked out, so this works for Java and Kotlin
+ * without a parser.
+ */
+public final class SourceScope {
+    private static final Pattern CONTROL_STATEMENT = Pattern.compile(
+            "(?:if|else|for|while|do|switch|when|try|catch|finally|synchronized)\\b.*", Pattern.DOTALL);
+    private static final Pattern TYPE_DECLARATION = Pattern.compile("\\b(?:class|interface|enum|record|object)\\b");
+    private static final Pattern KOTLIN_FUNCTION = Pattern.compile("\\bfun\\b");
+    private static final Pattern JAVA_METHOD = Pattern.compile("\\)\\s*(?:throws\\s+[\\w.,\\s<>]+)?$");
+    private static final Pattern NEW_EXPRESSION = Pattern.compile("\\bnew\\b|->|=");
+    // An excerpt that is nearly the whole file saves nothing and loses the surrounding context.
+    private static final double MAX_SCOPE_FRACTION = 0.75;
+
+    private SourceScope() {
+    }
+
+    /**
+     * A range of lines of a source file, 0-based and inclusive, together with their text.
+     */
+    public static final class Region {
+        private final int startLine;
+        private final int endLine;
+        private final String text;
+
+        Region(int startLine, int endLine, String text) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.text = text;
+        }
+
+        public int getStartLine() {
+            return startLine;
+        }
+
+        public int getEndLine() {
+            return endLine;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getLineCount() {
+            return endLine - startLine + 1;
+        }
+
+        public boolean overlaps(@NotNull Region other) {
+            return startLine <= other.endLine && other.startLine <= endLine;
+        }
+    }
+
+    /**
+     * The source after an answer was put in, and where the answer ended up.
+     */
+    public static final class Spliced {
+        private final String source;
+        private final Region region;
+
+        Spliced(String source, Region region) {
+            this.source = source;
+            this.region = region;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public Region getRegion() {
+            return region;
+        }
+    }
+
+    /**
+     * Returns the smallest range of declarations that covers every line of {@code fileName} the
+     * diagnostics point at, or {@code null} when none of them has a line in that file or the range
+     * would be about as large as the file. Diagnostics in other files, e.g. sources compiled from
+     * the sourcepath, are ignored; an exception counts at its innermost frame in the file.
+     */
+    @Nullable
+    public static Region find(@NotNull String source, @NotNull List<Diagnostic> diagnostics, @NotNull String fileName) {
+        Set<Integer> errorLines = new TreeSet<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            long line = lineIn(diagnostic, fileName);
+            if (line > 0) {
+                errorLines.add((int) line - 1);
+            }
+        }
+        if (errorLines.isEmpty()) {
+            return null;
+        }
+
+        String[] lines = source.split("\n", -1);
+        String masked = mask(source);
+        List<int[]> declarations = declarations(masked);
+
+        int start = Integer.MAX_VALUE;
+        int end = -1;
+        for (int errorLine : errorLines) {
+            int[] enclosing = null;
+            for (int[] declaration : declarations) {
+                if (declaration[0] <= errorLine && errorLine <= declaration[1]
+                        && (enclosing == null || declaration[1] - declaration[0] < enclosing[1] - enclosing[0])) {
+                    enclosing = declaration;
+                }
+            }
+            if (enclosing == null) {
+                return null;
+            }
+            start = Math.min(start, enclosing[0]);
+            end = Math.max(end, enclosing[1]);
+        }
+
+        if (end - start + 1 > lines.length * MAX_SCOPE_FRACTION) {
+            return null;
+        }
+        return region(lines, start, end);
+    }
+
+    private static long lineIn(Diagnostic diagnostic, String fileName) {
+        if (Diagnostic.WARNING.equals(diagnostic.getSeverity())) {
+            return 0;
+        }
+        if (fileName.equals(diagnostic.getFile())) {
+            return diagnostic.getLine();
+        }
+        for (StackFrame frame : diagnostic.getStackTrace()) {
+            if (fileName.equals(frame.getFile()) && frame.getLine() > 0) {
+                return frame.getLine();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The whole source as a region, for when the model was given the complete file.
+     */
+    @NotNull
+    public static Region whole(@NotNull String source) {
+        String[] lines = source.split("\n", -1);
+        return region(lines, 0, lines.length - 1);
+    }
+
+    /**
+     * The given lines of the source, 0-based and inclusive.
+     */
+    @NotNull
+    public static Region range(@NotNull String source, int startLine, int endLine) {
+        return region(source.split("\n", -1), startLine, endLine);
+    }
+
+    /**
+     * The package and import declarations of the source.
+     */
+    @NotNull
+    public static String header(@NotNull String source) {
+        StringBuilder header = new StringBuilder();
+        for (String line : source.split("\n", -1)) {
+            if (isHeaderLine(line.trim())) {
+                header.append(line.trim()).append('\n');
+            }
+        }
+        return header.toString();
+    }
+
+    /**
+     * Replaces the region with the answer. Import lines at the start of the answer are merged into
+     * the imports of the source instead.
+     */
+    @NotNull
+    public static Spliced splice(@NotNull String source, @NotNull Region region, @NotNull String answer) {
+        List<String> lines = new ArrayList<>(List.of(source.split("\n", -1)));
+        List<String> answerLines = new ArrayList<>(List.of(answer.stripTrailing().split("\n", -1)));
+
+        Set<String> existingImports = new LinkedHashSet<>();
+        int lastHeaderLine = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            String trimmed = lines.get(i).trim();
+            if (isHeaderLine(trimmed)) {
+                existingImports.add(trimmed);
+                lastHeaderLine = i;
+            }
+        }
+
+        List<String> newImports = new ArrayList<>();
+        int body = 0;
+        while (body < answerLines.size()) {
+            String trimmed = answerLines.get(body).trim();
+            if (!trimmed.isEmpty() && !isHeaderLine(trimmed)) {
+                break;
+            }
+            if (trimmed.startsWith("import ") && existingImports.add(trimmed)) {
+                newImports.add(trimmed);
+            }
+            body++;
+        }
+        List<String> code = answerLines.subList(body, answerLines.size());
+
+        List<String> replaced = lines.subList(region.getStartLine(), region.getEndLine() + 1);
+        replaced.clear();
+        replaced.addAll(code);
+
+        int insertAt = lastHeaderLine + 1;
+        if (lastHeaderLine < 0 && !newImports.isEmpty()) {
+            newImports.add("");
+        }
+        int shift = insertAt <= region.getStartLine() ? newImports.size() : 0;
+        lines.addAll(insertAt, newImports);
+
+        int start = region.getStartLine() + shift;
+        return new Spliced(String.join("\n", lines),
+                new Region(start, start + code.size() - 1, String.join("\n", code)));
+    }
+
+    private static boolean isHeaderLine(String trimmed) {
+        return trimmed.startsWith("import ") || trimmed.startsWith("package ");
+    }
+
+    private static Region region(String[] lines, int start, int end) {
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i <= end; i++) {
+            text.append(lines[i]);
+            if (i < end) {
+                text.append('\n');
+            }
+        }
+        return new Region(start, end, text.toString());
+    }
+
+    /**
+     * Line ranges of every brace-delimited declaration (types, methods, functions, initializers),
+     * starting at the first line of the declaration's header.
+     */
+    private static List<int[]> declarations(String masked) {
+        List<int[]> declarations = new ArrayList<>();
+        Deque<Integer> openBraces = new ArrayDeque<>();
+        for (int i = 0; i < masked.length(); i++) {
+            char c = masked.charAt(i);
+            if (c == '{') {
+                openBraces.push(i);
+            } else if (c == '}' && !openBraces.isEmpty()) {
+                int open = openBraces.pop();
+                int boundary = open - 1;
+                while (boundary >= 0 && ";{}".indexOf(masked.charAt(boundary)) < 0) {
+                    boundary--;
+                }
+                String header = masked.substring(boundary + 1, open).trim();
+                if (isDeclaration(header)) {
+                    int headerStart = boundary + 1;
+                    while (Character.isWhitespace(masked.charAt(headerStart))) {
+                        headerStart++;
+                    }
+                    declarations.add(new int[]{lineOf(masked, headerStart), lineOf(masked, i)});
+                }
+            }
+        }
+        return declarations;
+    }
+
+    private static boolean isDeclaration(String header) {
+        if (header.isEmpty() || CONTROL_STATEMENT.matcher(header).matches()) {
+            return false;
+        }
+        if (header.equals("static") || header.equals("init")
+                || TYPE_DECLARATION.matcher(header).find() || KOTLIN_FUNCTION.matcher(header).find()) {
+            return true;
+        }
+        return JAVA_METHOD.matcher(header).find() && !NEW_EXPRESSION.matcher(header).find();
+    }
+
+    private static int lineOf(String text, int offset) {
+        int line = 0;
+        for (int i = 0; i < offset; i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Blanks out comments and string and character literals, keeping line breaks, so that braces
+     * and semicolons inside them are not mistaken for code.
+     */
+    private static String mask(String source) {
+        char[] masked = source.toCharArray();
+        int i = 0;
+        while (i < masked.length) {
+            int end;
+            if (source.startsWith("//", i)) {
+                end = source.indexOf('\n', i);
+            } else if (source.startsWith("/*", i)) {
+                end = source.indexOf("*/", i + 2);
+                end = end < 0 ? -1 : end + 2;
+            } else if (source.startsWith("\"\"\"", i)) {
+                end = source.indexOf("\"\"\"", i + 3);
+                end = end < 0 ? -1 : end + 3;
+            } else if (masked[i] == '"' || masked[i] == '\'') {
+                end = closingQuote(source, i);
+            } else {
+                i++;
+                continue;
+            }
+            end = end < 0 ? masked.length : end;
+            for (int j = i; j < end; j++) {
+                if (masked[j] != '\n') {
+                    masked[j] = ' ';
+                }
+            }
+            i = end;
+        }
+        return new String(masked);
+    }
+
+    private static int closingQuote(String source, int open) {
+        char quote = source.charAt(open);
+        for (int i = open + 1; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote || c == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,82 @@
+package services;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.execution.util.ExecUtil;
+import com.intellij.openapi.util.SystemInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Version strings of the external tools used to compile and run candidates. A tool is queried once
+ * per resolved binary, so replacing the JDK or kotlinc on the PATH yields a different version.
+ */
+public final class ToolchainInfo {
+    private static final int VERSION_TIMEOUT_MILLIS = 30_000;
+    private static final Map<String, String> VERSIONS = new ConcurrentHashMap<>();
+    // "1.8.0_392" up to Java 8, "17.0.9" since
+    private static final Pattern FEATURE_VERSION = Pattern.compile("version \"(?:1\\.)?(\\d+)");
+
+    private ToolchainInfo() {
+    }
+
+    public static String javaVersion() {
+        return version("java");
+    }
+
+    /**
+     * The feature version of the {@code java} that runs candidates, e.g. 17, or 0 if it is unknown.
+     */
+    public static int javaFeatureVersion() {
+        Matcher matcher = FEATURE_VERSION.matcher(javaVersion());
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    public static String javacVersion() {
+        return version("javac");
+    }
+
+    public static String kotlincVersion() {
+        return version("kotlinc");
+    }
+
+    /**
+     * Identifies the binary a tool name resolves to, including its modification time.
+     */
+    public static String binaryIdentity(String tool) {
+        File binary = PathEnvironmentVariableUtil.findInPath(SystemInfo.isWindows ? tool + ".exe" : tool);
+        if (binary == null && SystemInfo.isWindows) {
+            binary = PathEnvironmentVariableUtil.findInPath(tool + ".bat");
+        }
+        if (binary == null) {
+            return tool;
+        }
+        try {
+            File resolved = binary.toPath().toRealPath().toFile();
+            return resolved.getAbsolutePath() + "@" + resolved.lastModified();
+        } catch (IOException e) {
+            return binary.getAbsolutePath();
+        }
+    }
+
+    private static String version(String tool) {
+        return VERSIONS.computeIfAbsent(binaryIdentity(tool), identity -> queryVersion(tool));
+    }
+
+    private static String queryVersion(String tool) {
+        GeneralCommandLine commandLine = new GeneralCommandLine(tool, "-version");
+        try {
+            ProcessOutput output = ExecUtil.execAndGetOutput(commandLine, VERSION_TIMEOUT_MILLIS);
+            return (output.getStdout() + output.getStderr()).trim();
+        } catch (ExecutionException e) {
+            return tool + " unavailable";
+        }
+    }
+}
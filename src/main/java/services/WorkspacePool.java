@@ -0,0 +1,362 @@
+package services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DigestUtil;
+import org.jetbrains.annotations.NotNull;
+import settings.PluginSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scratch directories for compiling and running candidates, kept between executions instead of
+ * creating and deleting a temp directory every time. A workspace remembers what it holds, so
+ * writing a file with the same content again is skipped, and whatever a run left behind or changed
+ * is removed before the next use.
+ * <p>
+ * The workspaces of an IDE session live in a session directory with a lock file that is held until
+ * the IDE exits. Session directories whose lock can be taken belong to an IDE that died without
+ * cleaning up and are swept at startup.
+ */
+public class WorkspacePool implements Disposable {
+    private static final Logger LOG = Logger.getInstance(WorkspacePool.class);
+    private static final String POOL_DIRECTORY = "eeagent-workspaces";
+    private static final String SESSION_PREFIX = "session-";
+    private static final String LOCK_FILE = ".lock";
+    private static final File TMPFS = new File("/dev/shm");
+    private static final int MAX_IDLE_WORKSPACES = 8;
+
+    private final Deque<Workspace> idleWorkspaces = new ArrayDeque<>();
+    private final Map<File, Session> sessions = new HashMap<>();
+    private final AtomicInteger workspaceCount = new AtomicInteger();
+    private final AtomicBoolean swept = new AtomicBoolean();
+    private boolean disposed;
+
+    public static WorkspacePool getInstance() {
+        return ApplicationManager.getApplication().getService(WorkspacePool.class);
+    }
+
+    /**
+     * Takes an idle workspace or creates a new one under the configured root.
+     */
+    @NotNull
+    public Workspace acquire() throws IOException {
+        File root = currentRoot();
+        synchronized (this) {
+            if (disposed) {
+                throw new IOException("Workspace pool is disposed");
+            }
+            while (!idleWorkspaces.isEmpty()) {
+                Workspace workspace = idleWorkspaces.poll();
+                if (workspace.root.equals(root) && workspace.directory.isDirectory()) {
+                    return workspace;
+                }
+                // The tmpfs setting changed or the directory was removed from outside.
+                workspace.delete();
+            }
+            Session session = sessions.get(root);
+            if (session == null) {
+                session = Session.open(root);
+                sessions.put(root, session);
+            }
+            File directory = new File(session.directory, "ws-" + workspaceCount.incrementAndGet());
+            if (!directory.mkdirs()) {
+                throw new IOException("Could not create workspace " + directory);
+            }
+            return new Workspace(root, directory);
+        }
+    }
+
+    /**
+     * Returns the workspace to the pool.
+     *
+     * @param reusable {@code false} if the use ended in a state the workspace cannot vouch for, for
+     *                 example a process killed while writing; the workspace is deleted instead
+     */
+    public void release(@NotNull Workspace workspace, boolean reusable) {
+        if (reusable) {
+            try {
+                workspace.reset();
+            } catch (IOException e) {
+                LOG.info("Could not reset workspace " + workspace.directory, e);
+                reusable = false;
+            }
+        }
+        synchronized (this) {
+            if (reusable && !disposed && idleWorkspaces.size() < MAX_IDLE_WORKSPACES) {
+                idleWorkspaces.push(workspace);
+                return;
+            }
+        }
+        workspace.delete();
+    }
+
+    /**
+     * Deletes the session directories of IDEs that are no longer running. Runs once per IDE session.
+     */
+    public void sweepOrphans() {
+        if (!swept.compareAndSet(false, true)) {
+            return;
+        }
+        for (File root : List.of(defaultRoot(), tmpfsRoot())) {
+            File[] children = root.listFiles();
+            if (children == null) {
+                continue;
+            }
+            for (File child : children) {
+                if (child.isDirectory() && child.getName().startsWith(SESSION_PREFIX) && isOrphan(child)) {
+                    LOG.info("Deleting orphaned workspaces in " + child);
+                    FileUtil.delete(child);
+                }
+            }
+        }
+    }
+
+    private synchronized boolean isOrphan(File sessionDirectory) {
+        for (Session session : sessions.values()) {
+            if (session.directory.equals(sessionDirectory)) {
+                return false;
+            }
+        }
+        File lockFile = new File(sessionDirectory, LOCK_FILE);
+        if (!lockFile.isFile()) {
+            // Either never locked, or another IDE has only just created it.
+            return sessionDirectory.lastModified() < System.currentTimeMillis() - 60_000;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            return lock != null;
+        } catch (IOException | OverlappingFileLockException e) {
+            return false;
+        }
+    }
+
+    private static File currentRoot() {
+        boolean onTmpfs = PluginSettings.getInstance().isWorkspacesOnTmpfs() && TMPFS.isDirectory() && TMPFS.canWrite();
+        return onTmpfs ? tmpfsRoot() : defaultRoot();
+    }
+
+    private static File defaultRoot() {
+        return new File(FileUtil.getTempDirectory(), POOL_DIRECTORY);
+    }
+
+    private static File tmpfsRoot() {
+        return new File(TMPFS, POOL_DIRECTORY);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        idleWorkspaces.clear();
+        sessions.values().forEach(Session::close);
+        sessions.clear();
+    }
+
+    /**
+     * A session directory and the lock that marks it as in use.
+     */
+    private static final class Session {
+        final File directory;
+        final FileChannel channel;
+        final FileLock lock;
+
+        private Session(File directory, FileChannel channel, FileLock lock) {
+            this.directory = directory;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        static Session open(File root) throws IOException {
+            // The start time keeps the name unique when an earlier process with the same pid left its directory behind.
+            File directory = new File(root, SESSION_PREFIX + ProcessHandle.current().pid() + "-" + System.currentTimeMillis());
+            if (!directory.mkdirs()) {
+                throw new IOException("Could not create workspace directory " + directory);
+            }
+            FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                throw new IOException("Workspace directory " + directory + " is locked by another process");
+            }
+            return new Session(directory, channel, lock);
+        }
+
+        void close() {
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                LOG.info("Could not release workspace lock in " + directory, e);
+            }
+            FileUtil.delete(directory);
+        }
+    }
+
+    /**
+     * One scratch directory. Paths are relative to {@link #getDirectory()} and use '/'. Not thread-safe,
+     * a workspace belongs to one execution at a time.
+     */
+    public static final class Workspace {
+        private final File root;
+        private final File directory;
+        // The files this workspace wrote or knows the compiler wrote
+        private final Map<String, Stamp> stamps = new HashMap<>();
+        private final Set<String> outputs = new HashSet<>();
+
+        private Workspace(File root, File directory) {
+            this.root = root;
+            this.directory = directory;
+        }
+
+        @NotNull
+        public File getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Writes the file unless it already has this content.
+         */
+        @NotNull
+        public File writeFile(@NotNull String relativePath, byte @NotNull [] content) throws IOException {
+            File file = new File(directory, relativePath);
+            String hash = DigestUtil.sha256Hex(content);
+            Stamp stamp = stamps.get(relativePath);
+            if (stamp == null || !stamp.hash.equals(hash) || !stamp.matches(file)) {
+                stamps.remove(relativePath);
+                FileUtil.writeToFile(file, content);
+                stamps.put(relativePath, Stamp.of(file, hash));
+            }
+            return file;
+        }
+
+        /**
+         * Makes the compiled outputs in the workspace exactly {@code files}: changed files are written,
+         * unchanged ones are left alone and outputs of the previous compilation that are not part of
+         * this one are deleted.
+         */
+        public void syncOutputs(@NotNull Map<String, byte[]> files) throws IOException {
+            for (String stale : new HashSet<>(outputs)) {
+                if (!files.containsKey(stale)) {
+                    forget(stale);
+                }
+            }
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                writeFile(file.getKey(), file.getValue());
+                outputs.add(file.getKey());
+            }
+        }
+
+        /**
+         * Records files a compiler wrote into the workspace as its outputs.
+         */
+        public void rememberOutputs(@NotNull Map<String, byte[]> files) throws IOException {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                stamps.put(file.getKey(), Stamp.of(new File(directory, file.getKey()), DigestUtil.sha256Hex(file.getValue())));
+                outputs.add(file.getKey());
+            }
+        }
+
+        /**
+         * Deletes every file of the workspace except {@code relativePath}, e.g. to let a compiler
+         * find nothing but the source it is given and leave nothing but its own outputs behind.
+         */
+        public void retainOnly(@NotNull String relativePath) {
+            for (String path : new HashSet<>(stamps.keySet())) {
+                if (!path.equals(relativePath)) {
+                    forget(path);
+                }
+            }
+        }
+
+        private void forget(String relativePath) {
+            FileUtil.delete(new File(directory, relativePath));
+            stamps.remove(relativePath);
+            outputs.remove(relativePath);
+        }
+
+        /**
+         * Removes everything the workspace did not write itself, e.g. files the program created, and
+         * the files it wrote that have been changed since, so they are written again on the next use.
+         */
+        void reset() throws IOException {
+            deleteUnknown(directory, "");
+        }
+
+        private void deleteUnknown(File dir, String prefix) throws IOException {
+            File[] children = dir.listFiles();
+            if (children == null) {
+                throw new IOException("Cannot list " + dir);
+            }
+            for (File child : children) {
+                String path = prefix + child.getName();
+                if (child.isDirectory()) {
+                    deleteUnknown(child, path + "/");
+                    String[] remaining = child.list();
+                    if (remaining != null && remaining.length == 0) {
+                        FileUtil.delete(child);
+                    }
+                } else {
+                    Stamp stamp = stamps.get(path);
+                    if (stamp == null || !stamp.matches(child)) {
+                        forget(path);
+                    }
+                }
+            }
+        }
+
+        void delete() {
+            FileUtil.delete(directory);
+        }
+    }
+
+    /**
+     * The content hash of a file and its size and modification time when that hash was taken; if
+     * either differs now, the file was changed behind the workspace's back.
+     */
+    private static final class Stamp {
+        final String hash;
+        final long size;
+        final long modifiedNanos;
+
+        private Stamp(String hash, long size, long modifiedNanos) {
+            this.hash = hash;
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+        }
+
+        static Stamp of(File file, String hash) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new Stamp(hash, attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        }
+
+        boolean matches(File file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                return attributes.isRegularFile() && attributes.size() == size
+                        && attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) == modifiedNanos;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
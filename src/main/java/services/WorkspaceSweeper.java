@@ -0,0 +1,17 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Removes the scratch workspaces of IDE sessions that ended without cleaning up.
+ */
+public class WorkspaceSweeper implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> WorkspacePool.getInstance().sweepOrphans());
+    }
+}
@@ -4,6 +4,10 @@ import com.intellij.openapi.options.Configurable;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
 
+import services.ExecutionCache;
+import services.LlmClientService;
+import services.LlmResponseCache;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -13,6 +17,39 @@ public class PluginConfigurable implements Configurable {
     private JTextField apiKeyField;
     private JSlider iterationsSlider;
     private JComboBox<String> modeComboBox;
+    private JComboBox<String> compilerComboBox;
+    private JCheckBox kotlinDaemonCheckBox;
+    private JComboBox<String> executionComboBox;
+    private JSpinner runTimeoutSpinner;
+    private JSpinner runHeapSpinner;
+    private JSpinner workerRecycleSpinner;
+    private JSpinner fanOutSpinner;
+    private JSpinner fanOutParallelismSpinner;
+    private JCheckBox executionCacheCheckBox;
+    private JSpinner executionCacheSizeSpinner;
+    private JCheckBox llmCacheCheckBox;
+    private JCheckBox llmCacheOnDiskCheckBox;
+    private JSpinner llmCacheTtlSpinner;
+    private JCheckBox streamResponsesCheckBox;
+    private JCheckBox incrementalPromptsCheckBox;
+    private JSpinner batchExecutionSpinner;
+    private JSpinner batchLlmSpinner;
+    private JSpinner llmRequestsPerMinuteSpinner;
+    private JSpinner llmTokensPerMinuteSpinner;
+    private JSpinner llmMaxRetriesSpinner;
+    private JTextField llmBaseUrlField;
+    private JSpinner compileTimeoutSpinner;
+    private JSpinner compileHeapSpinner;
+    private JSpinner processCpuSpinner;
+    private JSpinner maxOutputSpinner;
+    private JCheckBox workspacesOnTmpfsCheckBox;
+    private JCheckBox wordLevelDiffCheckBox;
+    private JCheckBox psiPreCheckCheckBox;
+    private JCheckBox quickFixesCheckBox;
+    private JTextField modelLadderField;
+    private JSpinner escalateAfterSpinner;
+    private JCheckBox warmUpLlmCheckBox;
+    private JCheckBox startupTunedRunsCheckBox;
 
     @Nls(capitalization = Nls.Capitalization.Title)
     @Override
@@ -34,6 +71,63 @@ public class PluginConfigurable implements Configurable {
         modeComboBox = new JComboBox<>(modes);
         modeComboBox.setSelectedItem(PluginSettings.getInstance().getLLM());
 
+        String[] compilers = {PluginSettings.COMPILER_FORKED, PluginSettings.COMPILER_IN_PROCESS};
+        compilerComboBox = new JComboBox<>(compilers);
+        compilerComboBox.setSelectedItem(PluginSettings.getInstance().getCompilerMode());
+
+        kotlinDaemonCheckBox = new JCheckBox("Keep a warm Kotlin compiler daemon", PluginSettings.getInstance().isUseKotlinDaemon());
+
+        String[] executionModes = {PluginSettings.EXECUTION_PROCESS, PluginSettings.EXECUTION_WORKER};
+        executionComboBox = new JComboBox<>(executionModes);
+        executionComboBox.setSelectedItem(PluginSettings.getInstance().getExecutionMode());
+
+        runTimeoutSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getRunTimeoutSeconds(), 1, 600, 1));
+        runHeapSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getRunHeapMb(), 16, 8192, 16));
+        workerRecycleSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getWorkerRecycleRuns(), 1, 1000, 1));
+
+        fanOutSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getFanOutCandidates(), 1, 8, 1));
+        fanOutParallelismSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getFanOutParallelism(), 1, 8, 1));
+
+        executionCacheCheckBox = new JCheckBox("Cache compile and execution results", PluginSettings.getInstance().isExecutionCacheEnabled());
+        executionCacheSizeSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getExecutionCacheSizeMb(), 16, 8192, 16));
+
+        llmCacheCheckBox = new JCheckBox("Cache LLM responses", PluginSettings.getInstance().isLlmCacheEnabled());
+        llmCacheOnDiskCheckBox = new JCheckBox("Keep LLM responses on disk", PluginSettings.getInstance().isLlmCacheOnDisk());
+        llmCacheTtlSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getLlmCacheTtlMinutes(), 1, 10080, 1));
+
+        streamResponsesCheckBox = new JCheckBox("Stream LLM responses", PluginSettings.getInstance().isStreamResponses());
+
+        incrementalPromptsCheckBox = new JCheckBox("Send only the code around the errors", PluginSettings.getInstance().isIncrementalPrompts());
+
+        batchExecutionSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getBatchExecutionConcurrency(), 1, 32, 1));
+        batchLlmSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getBatchLlmConcurrency(), 1, 32, 1));
+
+        llmRequestsPerMinuteSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getLlmRequestsPerMinute(), 1, 10000, 10));
+        llmTokensPerMinuteSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getLlmTokensPerMinute(), 1000, 10000000, 1000));
+        llmMaxRetriesSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getLlmMaxRetries(), 0, 20, 1));
+
+        llmBaseUrlField = new JTextField(PluginSettings.getInstance().getLlmBaseUrl(), 20);
+
+        compileTimeoutSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getCompileTimeoutSeconds(), 1, 600, 1));
+        compileHeapSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getCompileHeapMb(), 64, 8192, 64));
+        processCpuSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getProcessCpuSeconds(), 1, 3600, 1));
+        maxOutputSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getMaxOutputKb(), 16, 65536, 16));
+
+        workspacesOnTmpfsCheckBox = new JCheckBox("Keep scratch workspaces on tmpfs (/dev/shm)", PluginSettings.getInstance().isWorkspacesOnTmpfs());
+
+        wordLevelDiffCheckBox = new JCheckBox("Highlight changed words inside lines in the preview", PluginSettings.getInstance().isWordLevelDiff());
+
+        psiPreCheckCheckBox = new JCheckBox("Use the IDE's errors and skip compiling code that does not parse", PluginSettings.getInstance().isPsiPreCheck());
+
+        quickFixesCheckBox = new JCheckBox("Repair missing imports, semicolons and throws clauses before asking the model", PluginSettings.getInstance().isQuickFixes());
+
+        modelLadderField = new JTextField(PluginSettings.getInstance().getModelLadder(), 20);
+        escalateAfterSpinner = new JSpinner(new SpinnerNumberModel(PluginSettings.getInstance().getEscalateAfterAttempts(), 1, 10, 1));
+
+        warmUpLlmCheckBox = new JCheckBox("Open the model connection in the background when a project opens", PluginSettings.getInstance().isWarmUpLlm());
+
+        startupTunedRunsCheckBox = new JCheckBox("Start candidate JVMs with a class-data archive and startup flags", PluginSettings.getInstance().isStartupTunedRuns());
+
         settingsPanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(5, 5, 5, 5);
@@ -60,6 +154,220 @@ public class PluginConfigurable implements Configurable {
         gbc.gridx = 1;
         settingsPanel.add(modeComboBox, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        settingsPanel.add(new JLabel("Java Compiler:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(compilerComboBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 4;
+        settingsPanel.add(kotlinDaemonCheckBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        settingsPanel.add(new JLabel("Execution Mode:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(executionComboBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        settingsPanel.add(new JLabel("Run Time Limit (s):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(runTimeoutSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        settingsPanel.add(new JLabel("Run Heap Limit (MB):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(runHeapSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        settingsPanel.add(new JLabel("Recycle Worker After Runs:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(workerRecycleSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 9;
+        settingsPanel.add(new JLabel("Parallel Candidates:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(fanOutSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 10;
+        settingsPanel.add(new JLabel("Candidate Parallelism:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(fanOutParallelismSpinner, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 11;
+        settingsPanel.add(executionCacheCheckBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 12;
+        settingsPanel.add(new JLabel("Execution Cache Size (MB):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(executionCacheSizeSpinner, gbc);
+
+        JLabel cacheStatisticsLabel = new JLabel(ExecutionCache.getInstance().getStatistics());
+        JButton clearCacheButton = new JButton("Clear");
+        clearCacheButton.addActionListener(e -> {
+            ExecutionCache.getInstance().clear();
+            cacheStatisticsLabel.setText(ExecutionCache.getInstance().getStatistics());
+        });
+        JPanel cacheStatisticsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        cacheStatisticsPanel.add(cacheStatisticsLabel);
+        cacheStatisticsPanel.add(Box.createHorizontalStrut(10));
+        cacheStatisticsPanel.add(clearCacheButton);
+
+        gbc.gridx = 1;
+        gbc.gridy = 13;
+        settingsPanel.add(cacheStatisticsPanel, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 14;
+        settingsPanel.add(llmCacheCheckBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 15;
+        settingsPanel.add(llmCacheOnDiskCheckBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 16;
+        settingsPanel.add(new JLabel("LLM Cache TTL (min):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(llmCacheTtlSpinner, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 17;
+        settingsPanel.add(new JLabel(LlmResponseCache.getInstance().getStatistics()), gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 18;
+        settingsPanel.add(streamResponsesCheckBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 19;
+        settingsPanel.add(incrementalPromptsCheckBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 20;
+        settingsPanel.add(new JLabel("Batch compile/run concurrency:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(batchExecutionSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 21;
+        settingsPanel.add(new JLabel("Batch LLM request concurrency:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(batchLlmSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 22;
+        settingsPanel.add(new JLabel("LLM requests per minute:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(llmRequestsPerMinuteSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 23;
+        settingsPanel.add(new JLabel("LLM tokens per minute:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(llmTokensPerMinuteSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 24;
+        settingsPanel.add(new JLabel("LLM retries on 429/5xx:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(llmMaxRetriesSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 25;
+        settingsPanel.add(new JLabel("LLM base URL (empty for OpenAI):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(llmBaseUrlField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 26;
+        settingsPanel.add(new JLabel("Compile timeout (seconds):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(compileTimeoutSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 27;
+        settingsPanel.add(new JLabel("Compiler heap (MB):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(compileHeapSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 28;
+        settingsPanel.add(new JLabel("CPU time limit per process (seconds, Unix):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(processCpuSpinner, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 29;
+        settingsPanel.add(new JLabel("Output limit (KB):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(maxOutputSpinner, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 30;
+        settingsPanel.add(workspacesOnTmpfsCheckBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 31;
+        settingsPanel.add(wordLevelDiffCheckBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 32;
+        settingsPanel.add(psiPreCheckCheckBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 33;
+        settingsPanel.add(quickFixesCheckBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 34;
+        settingsPanel.add(new JLabel("Model ladder (cheapest first, comma-separated):"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(modelLadderField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 35;
+        settingsPanel.add(new JLabel("Escalate after attempts with the same error:"), gbc);
+
+        gbc.gridx = 1;
+        settingsPanel.add(escalateAfterSpinner, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 36;
+        settingsPanel.add(warmUpLlmCheckBox, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 37;
+        settingsPanel.add(startupTunedRunsCheckBox, gbc);
+
         return settingsPanel;
     }
 
@@ -67,7 +375,40 @@ public class PluginConfigurable implements Configurable {
     public boolean isModified() {
         return !apiKeyField.getText().equals(PluginSettings.getInstance().getApiKey()) ||
                 iterationsSlider.getValue() != PluginSettings.getInstance().getMaxIterations() ||
-                !modeComboBox.getSelectedItem().equals(PluginSettings.getInstance().getLLM());
+                !modeComboBox.getSelectedItem().equals(PluginSettings.getInstance().getLLM()) ||
+                !compilerComboBox.getSelectedItem().equals(PluginSettings.getInstance().getCompilerMode()) ||
+                kotlinDaemonCheckBox.isSelected() != PluginSettings.getInstance().isUseKotlinDaemon() ||
+                !executionComboBox.getSelectedItem().equals(PluginSettings.getInstance().getExecutionMode()) ||
+                (int) runTimeoutSpinner.getValue() != PluginSettings.getInstance().getRunTimeoutSeconds() ||
+                (int) runHeapSpinner.getValue() != PluginSettings.getInstance().getRunHeapMb() ||
+                (int) workerRecycleSpinner.getValue() != PluginSettings.getInstance().getWorkerRecycleRuns() ||
+                (int) fanOutSpinner.getValue() != PluginSettings.getInstance().getFanOutCandidates() ||
+                (int) fanOutParallelismSpinner.getValue() != PluginSettings.getInstance().getFanOutParallelism() ||
+                executionCacheCheckBox.isSelected() != PluginSettings.getInstance().isExecutionCacheEnabled() ||
+                (int) executionCacheSizeSpinner.getValue() != PluginSettings.getInstance().getExecutionCacheSizeMb() ||
+                llmCacheCheckBox.isSelected() != PluginSettings.getInstance().isLlmCacheEnabled() ||
+                llmCacheOnDiskCheckBox.isSelected() != PluginSettings.getInstance().isLlmCacheOnDisk() ||
+                (int) llmCacheTtlSpinner.getValue() != PluginSettings.getInstance().getLlmCacheTtlMinutes() ||
+                streamResponsesCheckBox.isSelected() != PluginSettings.getInstance().isStreamResponses() ||
+                incrementalPromptsCheckBox.isSelected() != PluginSettings.getInstance().isIncrementalPrompts() ||
+                (int) batchExecutionSpinner.getValue() != PluginSettings.getInstance().getBatchExecutionConcurrency() ||
+                (int) batchLlmSpinner.getValue() != PluginSettings.getInstance().getBatchLlmConcurrency() ||
+                (int) llmRequestsPerMinuteSpinner.getValue() != PluginSettings.getInstance().getLlmRequestsPerMinute() ||
+                (int) llmTokensPerMinuteSpinner.getValue() != PluginSettings.getInstance().getLlmTokensPerMinute() ||
+                (int) llmMaxRetriesSpinner.getValue() != PluginSettings.getInstance().getLlmMaxRetries() ||
+                !llmBaseUrlField.getText().equals(PluginSettings.getInstance().getLlmBaseUrl()) ||
+                (int) compileTimeoutSpinner.getValue() != PluginSettings.getInstance().getCompileTimeoutSeconds() ||
+                (int) compileHeapSpinner.getValue() != PluginSettings.getInstance().getCompileHeapMb() ||
+                (int) processCpuSpinner.getValue() != PluginSettings.getInstance().getProcessCpuSeconds() ||
+                (int) maxOutputSpinner.getValue() != PluginSettings.getInstance().getMaxOutputKb() ||
+                workspacesOnTmpfsCheckBox.isSelected() != PluginSettings.getInstance().isWorkspacesOnTmpfs() ||
+                wordLevelDiffCheckBox.isSelected() != PluginSettings.getInstance().isWordLevelDiff() ||
+                psiPreCheckCheckBox.isSelected() != PluginSettings.getInstance().isPsiPreCheck() ||
+                quickFixesCheckBox.isSelected() != PluginSettings.getInstance().isQuickFixes() ||
+                !modelLadderField.getText().equals(PluginSettings.getInstance().getModelLadder()) ||
+                (int) escalateAfterSpinner.getValue() != PluginSettings.getInstance().getEscalateAfterAttempts() ||
+                warmUpLlmCheckBox.isSelected() != PluginSettings.getInstance().isWarmUpLlm() ||
+                startupTunedRunsCheckBox.isSelected() != PluginSettings.getInstance().isStartupTunedRuns();
     }
 
     @Override
@@ -75,6 +416,41 @@ public class PluginConfigurable implements Configurable {
         PluginSettings.getInstance().setApiKey(apiKeyField.getText());
         PluginSettings.getInstance().setMaxIterations(iterationsSlider.getValue());
         PluginSettings.getInstance().setLLM((String) modeComboBox.getSelectedItem());
+        PluginSettings.getInstance().setCompilerMode((String) compilerComboBox.getSelectedItem());
+        PluginSettings.getInstance().setUseKotlinDaemon(kotlinDaemonCheckBox.isSelected());
+        PluginSettings.getInstance().setExecutionMode((String) executionComboBox.getSelectedItem());
+        PluginSettings.getInstance().setRunTimeoutSeconds((int) runTimeoutSpinner.getValue());
+        PluginSettings.getInstance().setRunHeapMb((int) runHeapSpinner.getValue());
+        PluginSettings.getInstance().setWorkerRecycleRuns((int) workerRecycleSpinner.getValue());
+        PluginSettings.getInstance().setFanOutCandidates((int) fanOutSpinner.getValue());
+        PluginSettings.getInstance().setFanOutParallelism((int) fanOutParallelismSpinner.getValue());
+        PluginSettings.getInstance().setExecutionCacheEnabled(executionCacheCheckBox.isSelected());
+        PluginSettings.getInstance().setExecutionCacheSizeMb((int) executionCacheSizeSpinner.getValue());
+        PluginSettings.getInstance().setLlmCacheEnabled(llmCacheCheckBox.isSelected());
+        PluginSettings.getInstance().setLlmCacheOnDisk(llmCacheOnDiskCheckBox.isSelected());
+        PluginSettings.getInstance().setLlmCacheTtlMinutes((int) llmCacheTtlSpinner.getValue());
+        PluginSettings.getInstance().setStreamResponses(streamResponsesCheckBox.isSelected());
+        PluginSettings.getInstance().setIncrementalPrompts(incrementalPromptsCheckBox.isSelected());
+        PluginSettings.getInstance().setBatchExecutionConcurrency((int) batchExecutionSpinner.getValue());
+        PluginSettings.getInstance().setBatchLlmConcurrency((int) batchLlmSpinner.getValue());
+        PluginSettings.getInstance().setLlmRequestsPerMinute((int) llmRequestsPerMinuteSpinner.getValue());
+        PluginSettings.getInstance().setLlmTokensPerMinute((int) llmTokensPerMinuteSpinner.getValue());
+        PluginSettings.getInstance().setLlmMaxRetries((int) llmMaxRetriesSpinner.getValue());
+        PluginSettings.getInstance().setLlmBaseUrl(llmBaseUrlField.getText());
+        PluginSettings.getInstance().setCompileTimeoutSeconds((int) compileTimeoutSpinner.getValue());
+        PluginSettings.getInstance().setCompileHeapMb((int) compileHeapSpinner.getValue());
+        PluginSettings.getInstance().setProcessCpuSeconds((int) processCpuSpinner.getValue());
+        PluginSettings.getInstance().setMaxOutputKb((int) maxOutputSpinner.getValue());
+        PluginSettings.getInstance().setWorkspacesOnTmpfs(workspacesOnTmpfsCheckBox.isSelected());
+        PluginSettings.getInstance().setWordLevelDiff(wordLevelDiffCheckBox.isSelected());
+        PluginSettings.getInstance().setPsiPreCheck(psiPreCheckCheckBox.isSelected());
+        PluginSettings.getInstance().setQuickFixes(quickFixesCheckBox.isSelected());
+        PluginSettings.getInstance().setModelLadder(modelLadderField.getText());
+        PluginSettings.getInstance().setEscalateAfterAttempts((int) escalateAfterSpinner.getValue());
+        PluginSettings.getInstance().setWarmUpLlm(warmUpLlmCheckBox.isSelected());
+        PluginSettings.getInstance().setStartupTunedRuns(startupTunedRunsCheckBox.isSelected());
+        // Rebuilds the model client if the key, model or server changed, and warms it up if enabled
+        LlmClientService.getInstance().settingsChanged();
     }
 
     @Override
@@ -82,5 +458,38 @@ public class PluginConfigurable implements Configurable {
         apiKeyField.setText(PluginSettings.getInstance().getApiKey());
         iterationsSlider.setValue(PluginSettings.getInstance().getMaxIterations());
         modeComboBox.setSelectedItem(PluginSettings.getInstance().getLLM());
+        compilerComboBox.setSelectedItem(PluginSettings.getInstance().getCompilerMode());
+        kotlinDaemonCheckBox.setSelected(PluginSettings.getInstance().isUseKotlinDaemon());
+        executionComboBox.setSelectedItem(PluginSettings.getInstance().getExecutionMode());
+        runTimeoutSpinner.setValue(PluginSettings.getInstance().getRunTimeoutSeconds());
+        runHeapSpinner.setValue(PluginSettings.getInstance().getRunHeapMb());
+        workerRecycleSpinner.setValue(PluginSettings.getInstance().getWorkerRecycleRuns());
+        fanOutSpinner.setValue(PluginSettings.getInstance().getFanOutCandidates());
+        fanOutParallelismSpinner.setValue(PluginSettings.getInstance().getFanOutParallelism());
+        executionCacheCheckBox.setSelected(PluginSettings.getInstance().isExecutionCacheEnabled());
+        executionCacheSizeSpinner.setValue(PluginSettings.getInstance().getExecutionCacheSizeMb());
+        llmCacheCheckBox.setSelected(PluginSettings.getInstance().isLlmCacheEnabled());
+        llmCacheOnDiskCheckBox.setSelected(PluginSettings.getInstance().isLlmCacheOnDisk());
+        llmCacheTtlSpinner.setValue(PluginSettings.getInstance().getLlmCacheTtlMinutes());
+        streamResponsesCheckBox.setSelected(PluginSettings.getInstance().isStreamResponses());
+        incrementalPromptsCheckBox.setSelected(PluginSettings.getInstance().isIncrementalPrompts());
+        batchExecutionSpinner.setValue(PluginSettings.getInstance().getBatchExecutionConcurrency());
+        batchLlmSpinner.setValue(PluginSettings.getInstance().getBatchLlmConcurrency());
+        llmRequestsPerMinuteSpinner.setValue(PluginSettings.getInstance().getLlmRequestsPerMinute());
+        llmTokensPerMinuteSpinner.setValue(PluginSettings.getInstance().getLlmTokensPerMinute());
+        llmMaxRetriesSpinner.setValue(PluginSettings.getInstance().getLlmMaxRetries());
+        llmBaseUrlField.setText(PluginSettings.getInstance().getLlmBaseUrl());
+        compileTimeoutSpinner.setValue(PluginSettings.getInstance().getCompileTimeoutSeconds());
+        compileHeapSpinner.setValue(PluginSettings.getInstance().getCompileHeapMb());
+        processCpuSpinner.setValue(PluginSettings.getInstance().getProcessCpuSeconds());
+        maxOutputSpinner.setValue(PluginSettings.getInstance().getMaxOutputKb());
+        workspacesOnTmpfsCheckBox.setSelected(PluginSettings.getInstance().isWorkspacesOnTmpfs());
+        wordLevelDiffCheckBox.setSelected(PluginSettings.getInstance().isWordLevelDiff());
+        psiPreCheckCheckBox.setSelected(PluginSettings.getInstance().isPsiPreCheck());
+        quickFixesCheckBox.setSelected(PluginSettings.getInstance().isQuickFixes());
+        modelLadderField.setText(PluginSettings.getInstance().getModelLadder());
+        escalateAfterSpinner.setValue(PluginSettings.getInstance().getEscalateAfterAttempts());
+        warmUpLlmCheckBox.setSelected(PluginSettings.getInstance().isWarmUpLlm());
+        startupTunedRunsCheckBox.setSelected(PluginSettings.getInstance().isStartupTunedRuns());
     }
 }
\ No newline at end of file
@@ -10,10 +10,48 @@ import org.jetbrains.annotations.Nullable;
 @State(name = "PluginSettings", storages = @Storage("PluginSettings.xml"))
 public class PluginSettings implements PersistentStateComponent<PluginSettings.State> {
 
+    public static final String COMPILER_FORKED = "Forked javac";
+    public static final String COMPILER_IN_PROCESS = "In-process";
+    public static final String EXECUTION_PROCESS = "New JVM per run";
+    public static final String EXECUTION_WORKER = "In-memory worker";
+
     public static class State {
         public String apiKey = "";
         public int maxIterations = 5;
         public String LLM = "gpt-3.5-turbo";
+        public String compilerMode = COMPILER_FORKED;
+        public boolean useKotlinDaemon = true;
+        public String executionMode = EXECUTION_PROCESS;
+        public int runTimeoutSeconds = 10;
+        public int runHeapMb = 256;
+        public int workerRecycleRuns = 50;
+        public int fanOutCandidates = 1;
+        public int fanOutParallelism = 3;
+        public boolean executionCacheEnabled = true;
+        public int executionCacheSizeMb = 256;
+        public boolean llmCacheEnabled = true;
+        public boolean llmCacheOnDisk = false;
+        public int llmCacheTtlMinutes = 60;
+        public boolean streamResponses = false;
+        public boolean incrementalPrompts = false;
+        public int batchExecutionConcurrency = 4;
+        public int batchLlmConcurrency = 4;
+        public int llmRequestsPerMinute = 60;
+        public int llmTokensPerMinute = 90000;
+        public int llmMaxRetries = 5;
+        public String llmBaseUrl = "";
+        public int compileTimeoutSeconds = 60;
+        public int compileHeapMb = 512;
+        public int processCpuSeconds = 60;
+        public int maxOutputKb = 1024;
+        public boolean workspacesOnTmpfs = false;
+        public boolean wordLevelDiff = true;
+        public boolean psiPreCheck = true;
+        public boolean quickFixes = true;
+        public String modelLadder = "";
+        public int escalateAfterAttempts = 2;
+        public boolean warmUpLlm = false;
+        public boolean startupTunedRuns = true;
     }
 
     private State myState = new State();
@@ -56,4 +94,268 @@ public class PluginSettings implements PersistentStateComponent<PluginSettings.S
     public void setLLM(String LLM) {
         myState.LLM = LLM;
     }
-}
\ No newline at end of file
+
+    public String getCompilerMode() {
+        return myState.compilerMode;
+    }
+
+    public void setCompilerMode(String compilerMode) {
+        myState.compilerMode = compilerMode;
+    }
+
+    public boolean isUseKotlinDaemon() {
+        return myState.useKotlinDaemon;
+    }
+
+    public void setUseKotlinDaemon(boolean useKotlinDaemon) {
+        myState.useKotlinDaemon = useKotlinDaemon;
+    }
+
+    public String getExecutionMode() {
+        return myState.executionMode;
+    }
+
+    public void setExecutionMode(String executionMode) {
+        myState.executionMode = executionMode;
+    }
+
+    public int getRunTimeoutSeconds() {
+        return myState.runTimeoutSeconds;
+    }
+
+    public void setRunTimeoutSeconds(int runTimeoutSeconds) {
+        myState.runTimeoutSeconds = runTimeoutSeconds;
+    }
+
+    public int getRunHeapMb() {
+        return myState.runHeapMb;
+    }
+
+    public void setRunHeapMb(int runHeapMb) {
+        myState.runHeapMb = runHeapMb;
+    }
+
+    public int getWorkerRecycleRuns() {
+        return myState.workerRecycleRuns;
+    }
+
+    public void setWorkerRecycleRuns(int workerRecycleRuns) {
+        myState.workerRecycleRuns = workerRecycleRuns;
+    }
+
+    public int getFanOutCandidates() {
+        return myState.fanOutCandidates;
+    }
+
+    public void setFanOutCandidates(int fanOutCandidates) {
+        myState.fanOutCandidates = fanOutCandidates;
+    }
+
+    public int getFanOutParallelism() {
+        return myState.fanOutParallelism;
+    }
+
+    public void setFanOutParallelism(int fanOutParallelism) {
+        myState.fanOutParallelism = fanOutParallelism;
+    }
+
+    public boolean isExecutionCacheEnabled() {
+        return myState.executionCacheEnabled;
+    }
+
+    public void setExecutionCacheEnabled(boolean executionCacheEnabled) {
+        myState.executionCacheEnabled = executionCacheEnabled;
+    }
+
+    public int getExecutionCacheSizeMb() {
+        return myState.executionCacheSizeMb;
+    }
+
+    public void setExecutionCacheSizeMb(int executionCacheSizeMb) {
+        myState.executionCacheSizeMb = executionCacheSizeMb;
+    }
+
+    public boolean isLlmCacheEnabled() {
+        return myState.llmCacheEnabled;
+    }
+
+    public void setLlmCacheEnabled(boolean llmCacheEnabled) {
+        myState.llmCacheEnabled = llmCacheEnabled;
+    }
+
+    public boolean isLlmCacheOnDisk() {
+        return myState.llmCacheOnDisk;
+    }
+
+    public void setLlmCacheOnDisk(boolean llmCacheOnDisk) {
+        myState.llmCacheOnDisk = llmCacheOnDisk;
+    }
+
+    public int getLlmCacheTtlMinutes() {
+        return myState.llmCacheTtlMinutes;
+    }
+
+    public void setLlmCacheTtlMinutes(int llmCacheTtlMinutes) {
+        myState.llmCacheTtlMinutes = llmCacheTtlMinutes;
+    }
+
+    public boolean isStreamResponses() {
+        return myState.streamResponses;
+    }
+
+    public void setStreamResponses(boolean streamResponses) {
+        myState.streamResponses = streamResponses;
+    }
+
+    public boolean isIncrementalPrompts() {
+        return myState.incrementalPrompts;
+    }
+
+    public void setIncrementalPrompts(boolean incrementalPrompts) {
+        myState.incrementalPrompts = incrementalPrompts;
+    }
+
+    public int getBatchExecutionConcurrency() {
+        return myState.batchExecutionConcurrency;
+    }
+
+    public void setBatchExecutionConcurrency(int batchExecutionConcurrency) {
+        myState.batchExecutionConcurrency = batchExecutionConcurrency;
+    }
+
+    public int getBatchLlmConcurrency() {
+        return myState.batchLlmConcurrency;
+    }
+
+    public void setBatchLlmConcurrency(int batchLlmConcurrency) {
+        myState.batchLlmConcurrency = batchLlmConcurrency;
+    }
+
+    public int getLlmRequestsPerMinute() {
+        return myState.llmRequestsPerMinute;
+    }
+
+    public void setLlmRequestsPerMinute(int llmRequestsPerMinute) {
+        myState.llmRequestsPerMinute = llmRequestsPerMinute;
+    }
+
+    public int getLlmTokensPerMinute() {
+        return myState.llmTokensPerMinute;
+    }
+
+    public void setLlmTokensPerMinute(int llmTokensPerMinute) {
+        myState.llmTokensPerMinute = llmTokensPerMinute;
+    }
+
+    public int getLlmMaxRetries() {
+        return myState.llmMaxRetries;
+    }
+
+    public void setLlmMaxRetries(int llmMaxRetries) {
+        myState.llmMaxRetries = llmMaxRetries;
+    }
+
+    public String getLlmBaseUrl() {
+        return myState.llmBaseUrl;
+    }
+
+    public void setLlmBaseUrl(String llmBaseUrl) {
+        myState.llmBaseUrl = llmBaseUrl;
+    }
+
+    public int getCompileTimeoutSeconds() {
+        return myState.compileTimeoutSeconds;
+    }
+
+    public void setCompileTimeoutSeconds(int compileTimeoutSeconds) {
+        myState.compileTimeoutSeconds = compileTimeoutSeconds;
+    }
+
+    public int getCompileHeapMb() {
+        return myState.compileHeapMb;
+    }
+
+    public void setCompileHeapMb(int compileHeapMb) {
+        myState.compileHeapMb = compileHeapMb;
+    }
+
+    public int getProcessCpuSeconds() {
+        return myState.processCpuSeconds;
+    }
+
+    public void setProcessCpuSeconds(int processCpuSeconds) {
+        myState.processCpuSeconds = processCpuSeconds;
+    }
+
+    public int getMaxOutputKb() {
+        return myState.maxOutputKb;
+    }
+
+    public void setMaxOutputKb(int maxOutputKb) {
+        myState.maxOutputKb = maxOutputKb;
+    }
+
+    public boolean isWorkspacesOnTmpfs() {
+        return myState.workspacesOnTmpfs;
+    }
+
+    public void setWorkspacesOnTmpfs(boolean workspacesOnTmpfs) {
+        myState.workspacesOnTmpfs = workspacesOnTmpfs;
+    }
+
+    public boolean isWordLevelDiff() {
+        return myState.wordLevelDiff;
+    }
+
+    public void setWordLevelDiff(boolean wordLevelDiff) {
+        myState.wordLevelDiff = wordLevelDiff;
+    }
+
+    public boolean isPsiPreCheck() {
+        return myState.psiPreCheck;
+    }
+
+    public void setPsiPreCheck(boolean psiPreCheck) {
+        myState.psiPreCheck = psiPreCheck;
+    }
+
+    public boolean isQuickFixes() {
+        return myState.quickFixes;
+    }
+
+    public void setQuickFixes(boolean quickFixes) {
+        myState.quickFixes = quickFixes;
+    }
+
+    public String getModelLadder() {
+        return myState.modelLadder;
+    }
+
+    public void setModelLadder(String modelLadder) {
+        myState.modelLadder = modelLadder;
+    }
+
+    public int getEscalateAfterAttempts() {
+        return myState.escalateAfterAttempts;
+    }
+
+    public void setEscalateAfterAttempts(int escalateAfterAttempts) {
+        myState.escalateAfterAttempts = escalateAfterAttempts;
+    }
+
+    public boolean isWarmUpLlm() {
+        return myState.warmUpLlm;
+    }
+
+    public void setWarmUpLlm(boolean warmUpLlm) {
+        myState.warmUpLlm = warmUpLlm;
+    }
+
+    public boolean isStartupTunedRuns() {
+        return myState.startupTunedRuns;
+    }
+
+    public void setStartupTunedRuns(boolean startupTunedRuns) {
+        myState.startupTunedRuns = startupTunedRuns;
+    }
+}
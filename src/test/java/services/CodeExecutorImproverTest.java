@@ -0,0 +1,126 @@
+package services;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import models.FixOutcome;
+import settings.PluginSettings;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the whole fix loop against a {@link ScriptedChatBackend}: the real compiler and runner, the
+ * prompts and the verification of the answers, without a network.
+ */
+public class CodeExecutorImproverTest extends BasePlatformTestCase {
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    private static final String BROKEN = String.join("\n",
+            "public class Main {",
+            "    public static void main(String[] args) {",
+            "        System.out.println(greeting());",
+            "    }",
+            "}");
+    private static final String STILL_BROKEN = String.join("\n",
+            "public class Main {",
+            "    public static void main(String[] args) {",
+            "        System.out.println(greeting());",
+            "    }",
+            "",
+            "    static String greet() {",
+            "        return \"Hello\";",
+            "    }",
+            "}");
+    private static final String FIXED = String.join("\n",
+            "public class Main {",
+            "    public static void main(String[] args) {",
+            "        System.out.println(greeting());",
+            "    }",
+            "",
+            "    static String greeting() {",
+            "        return \"Hello\";",
+            "    }",
+            "}");
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        PluginSettings settings = PluginSettings.getInstance();
+        settings.loadState(new PluginSettings.State());
+        settings.setExecutionCacheEnabled(false);
+        settings.setLlmCacheEnabled(false);
+        settings.setUseKotlinDaemon(false);
+        // Every request must reach the script, so nothing may be repaired without the model.
+        settings.setPsiPreCheck(false);
+        settings.setQuickFixes(false);
+        settings.setStartupTunedRuns(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            PluginSettings.getInstance().loadState(new PluginSettings.State());
+        } catch (Throwable e) {
+            addSuppressedException(e);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    private FixOutcome fix(ScriptedChatBackend backend, String sourceCode) throws Exception {
+        OpenAIService openAiService = new OpenAIService(backend, LlmRequestScheduler.Priority.INTERACTIVE);
+        CodeExecutorImprover improver = new CodeExecutorImprover(new CodeExecutor(null), getProject(), openAiService, false);
+        // The loop waits for compilations and model requests, which must not block the event thread.
+        Future<FixOutcome> outcome = ApplicationManager.getApplication().executeOnPooledThread(
+                () -> improver.fix(sourceCode, new ProgressIndicatorBase()));
+        return PlatformTestUtil.waitForFuture(outcome, TIMEOUT_MILLIS);
+    }
+
+    private static String fenced(String code) {
+        return "```java\n" + code + "\n```";
+    }
+
+    public void testFixesWithOneRequest() throws Exception {
+        ScriptedChatBackend backend = new ScriptedChatBackend(List.of(fenced(FIXED)));
+
+        FixOutcome outcome = fix(backend, BROKEN);
+
+        assertTrue(outcome.isFixed());
+        assertEquals(FixOutcome.Tier.MODEL, outcome.getFixedBy());
+        assertEquals(FIXED, outcome.getCode().strip());
+        assertEquals(1, backend.getRequests().size());
+    }
+
+    public void testAsksAgainWhileTheAnswerFails() throws Exception {
+        ScriptedChatBackend backend = new ScriptedChatBackend(List.of(fenced(STILL_BROKEN), fenced(FIXED)));
+
+        FixOutcome outcome = fix(backend, BROKEN);
+
+        assertTrue(outcome.isFixed());
+        assertEquals(FIXED, outcome.getCode().strip());
+        assertEquals(2, backend.getRequests().size());
+    }
+
+    public void testStopsAfterTheMaximumAttempts() throws Exception {
+        PluginSettings.getInstance().setMaxIterations(2);
+        ScriptedChatBackend backend = new ScriptedChatBackend(List.of(fenced(STILL_BROKEN)));
+
+        FixOutcome outcome = fix(backend, BROKEN);
+
+        assertFalse(outcome.isFixed());
+        assertEquals(2, backend.getRequests().size());
+    }
+
+    public void testDoesNotAskForPassingCode() throws Exception {
+        ScriptedChatBackend backend = new ScriptedChatBackend(List.of(fenced(BROKEN)));
+
+        FixOutcome outcome = fix(backend, FIXED);
+
+        assertTrue(outcome.isFixed());
+        assertFalse(outcome.isChanged());
+        assertEquals(FixOutcome.Tier.NONE, outcome.getFixedBy());
+        assertEquals(0, backend.getRequests().size());
+    }
+}
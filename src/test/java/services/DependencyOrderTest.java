@@ -0,0 +1,71 @@
+package services;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DependencyOrderTest {
+
+    @Test
+    public void putsUsedFilesFirst() {
+        DependencyOrder order = DependencyOrder.of(
+                List.of("App", "Repository", "Model"),
+                List.of("class App { Repository repository = new Repository(); }",
+                        "class Repository { Model load() { return new Model(); } }",
+                        "class Model { }"));
+
+        assertEquals(List.of(2, 1, 0), order.getOrder());
+        assertEquals(List.of(1), order.upstreamOf(0));
+        assertEquals(List.of(2), order.upstreamOf(1));
+        assertEquals(List.of(), order.upstreamOf(2));
+    }
+
+    @Test
+    public void keepsTheOrderOfUnrelatedFiles() {
+        DependencyOrder order = DependencyOrder.of(
+                List.of("A", "B", "C"),
+                List.of("class A { }", "class B { }", "class C { }"));
+
+        assertEquals(List.of(0, 1, 2), order.getOrder());
+    }
+
+    @Test
+    public void ignoresNamesThatOnlyContainAClassName() {
+        DependencyOrder order = DependencyOrder.of(
+                List.of("Main", "Model"),
+                List.of("class Main { int ModelCount; String text = \"Models\"; }",
+                        "class Model { }"));
+
+        assertEquals(List.of(0, 1), order.getOrder());
+        assertEquals(List.of(), order.upstreamOf(0));
+    }
+
+    @Test
+    public void seesClassesOfOtherPackagesOnlyThroughImports() {
+        DependencyOrder order = DependencyOrder.of(
+                List.of("Service", "Entity", "Client", "Entity"),
+                List.of("package app;\nimport data.Entity;\nclass Service { Entity entity; }",
+                        "package data;\npublic class Entity { }",
+                        "package client;\nimport other.*;\nclass Client { Entity entity; }",
+                        "package other;\npublic class Entity { }"));
+
+        assertEquals(List.of(1), order.upstreamOf(0));
+        assertEquals(List.of(3), order.upstreamOf(2));
+        assertEquals(List.of(1, 0, 3, 2), order.getOrder());
+    }
+
+    @Test
+    public void breaksCyclesAtTheFirstFile() {
+        DependencyOrder order = DependencyOrder.of(
+                List.of("A", "B", "C"),
+                List.of("class A { B b; }", "class B { A a; }", "class C { A a; }"));
+
+        assertEquals(List.of(0, 1, 2), order.getOrder());
+        // Only the edge that points backwards is kept, so B waits for A but A does not wait for B.
+        assertEquals(List.of(), order.upstreamOf(0));
+        assertEquals(List.of(0), order.upstreamOf(1));
+        assertEquals(List.of(0), order.upstreamOf(2));
+    }
+}
@@ -0,0 +1,120 @@
+package services;
+
+import models.Diagnostic;
+import models.StackFrame;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosticParserTest {
+
+    @Test
+    public void parsesJavacErrorWithCaretAndDetails() {
+        String output = String.join("\n",
+                "/tmp/work/Main.java:5: error: cannot find symbol",
+                "        System.out.println(count);",
+                "                           ^",
+                "  symbol:   variable count",
+                "  location: class Main",
+                "1 error");
+
+        List<Diagnostic> diagnostics = DiagnosticParser.parseCompilerOutput(output);
+
+        assertEquals(1, diagnostics.size());
+        Diagnostic diagnostic = diagnostics.get(0);
+        assertEquals("Main.java", diagnostic.getFile());
+        assertEquals(5, diagnostic.getLine());
+        assertEquals(28, diagnostic.getColumn());
+        assertEquals(Diagnostic.ERROR, diagnostic.getSeverity());
+        assertEquals("cannot find symbol\n  symbol:   variable count\n  location: class Main", diagnostic.getMessage());
+    }
+
+    @Test
+    public void parsesEveryJavacDiagnosticAndSkipsNotes() {
+        String output = String.join("\n",
+                "/tmp/work/Main.java:3: warning: [deprecation] Integer(int) in Integer has been deprecated",
+                "        Integer i = new Integer(1);",
+                "                    ^",
+                "/tmp/work/Main.java:4: error: ';' expected",
+                "        int x = 1",
+                "                 ^",
+                "Note: Some input files use unchecked or unsafe operations.",
+                "1 error",
+                "1 warning");
+
+        List<Diagnostic> diagnostics = DiagnosticParser.parseCompilerOutput(output);
+
+        assertEquals(2, diagnostics.size());
+        assertEquals(Diagnostic.WARNING, diagnostics.get(0).getSeverity());
+        assertEquals(Diagnostic.ERROR, diagnostics.get(1).getSeverity());
+        assertEquals(4, diagnostics.get(1).getLine());
+        assertEquals("';' expected", diagnostics.get(1).getMessage());
+    }
+
+    @Test
+    public void parsesKotlincErrorsWithAndWithoutLocation() {
+        String output = String.join("\n",
+                "/tmp/work/Main.kt:2:13: error: unresolved reference: foo",
+                "    println(foo)",
+                "            ^",
+                "error: no main function found");
+
+        List<Diagnostic> diagnostics = DiagnosticParser.parseCompilerOutput(output);
+
+        assertEquals(2, diagnostics.size());
+        assertEquals("Main.kt", diagnostics.get(0).getFile());
+        assertEquals(2, diagnostics.get(0).getLine());
+        assertEquals(13, diagnostics.get(0).getColumn());
+        assertEquals("unresolved reference: foo", diagnostics.get(0).getMessage());
+        assertNull(diagnostics.get(1).getFile());
+        assertEquals(0, diagnostics.get(1).getLine());
+    }
+
+    @Test
+    public void locatesExceptionAtInnermostFrameOfTheProgram() {
+        String stderr = String.join("\n",
+                "Exception in thread \"main\" java.lang.ArrayIndexOutOfBoundsException: Index 3 out of bounds for length 3",
+                "\tat java.base/java.util.Objects.checkIndex(Objects.java:361)",
+                "\tat Main.get(Main.java:9)",
+                "\tat Main.main(Main.java:4)");
+
+        List<Diagnostic> diagnostics = DiagnosticParser.parseStackTraces(stderr);
+
+        assertEquals(1, diagnostics.size());
+        Diagnostic diagnostic = diagnostics.get(0);
+        assertEquals(Diagnostic.EXCEPTION, diagnostic.getSeverity());
+        assertEquals("java.lang.ArrayIndexOutOfBoundsException", diagnostic.getCode());
+        assertEquals("Main.java", diagnostic.getFile());
+        assertEquals(9, diagnostic.getLine());
+        List<StackFrame> frames = diagnostic.getStackTrace();
+        assertEquals(3, frames.size());
+        assertEquals("java.util.Objects", frames.get(0).getClassName());
+    }
+
+    @Test
+    public void parsesCausesAsSeparateDiagnostics() {
+        String stderr = String.join("\n",
+                "Exception in thread \"main\" java.lang.IllegalStateException: wrapped",
+                "\tat Main.main(Main.java:6)",
+                "Caused by: java.lang.NullPointerException",
+                "\tat Main.load(Main.java:12)",
+                "\t... 1 more");
+
+        List<Diagnostic> diagnostics = DiagnosticParser.parseStackTraces(stderr);
+
+        assertEquals(2, diagnostics.size());
+        assertEquals("java.lang.NullPointerException", diagnostics.get(1).getCode());
+        assertEquals("(no message)", diagnostics.get(1).getMessage());
+        assertEquals(12, diagnostics.get(1).getLine());
+    }
+
+    @Test
+    public void ignoresOutputWithoutDiagnostics() {
+        assertTrue(DiagnosticParser.parseCompilerOutput("Picked up JAVA_TOOL_OPTIONS: -Xmx1g\n").isEmpty());
+        assertTrue(DiagnosticParser.parseStackTraces("java.lang.Exception: not followed by frames\n").isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package services;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LlmRequestSchedulerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void startsFull() {
+        LlmRequestScheduler.TokenBucket bucket = new LlmRequestScheduler.TokenBucket();
+        bucket.configure(60, 0);
+
+        assertEquals(0, bucket.nanosUntil(60));
+        assertEquals(SECOND, bucket.nanosUntil(61));
+    }
+
+    @Test
+    public void refillsAtThePerMinuteRate() {
+        LlmRequestScheduler.TokenBucket bucket = new LlmRequestScheduler.TokenBucket();
+        bucket.configure(60, 0);
+        bucket.take(60);
+
+        assertEquals(SECOND, bucket.nanosUntil(1));
+        bucket.configure(60, 10 * SECOND);
+        assertEquals(10, bucket.available, 1e-9);
+        assertEquals(0, bucket.nanosUntil(10));
+    }
+
+    @Test
+    public void holdsAtMostOneMinuteWorth() {
+        LlmRequestScheduler.TokenBucket bucket = new LlmRequestScheduler.TokenBucket();
+        bucket.configure(60, 0);
+        bucket.take(30);
+        bucket.configure(60, TimeUnit.MINUTES.toNanos(5));
+
+        assertEquals(60, bucket.available, 1e-9);
+    }
+
+    @Test
+    public void followsAChangedRate() {
+        LlmRequestScheduler.TokenBucket bucket = new LlmRequestScheduler.TokenBucket();
+        bucket.configure(60, 0);
+        bucket.take(60);
+        bucket.configure(120, 0);
+
+        assertEquals(SECOND / 2, bucket.nanosUntil(1));
+        bucket.configure(30, 0);
+        assertEquals(2 * SECOND, bucket.nanosUntil(1));
+    }
+
+    @Test
+    public void drainingKeepsDebt() {
+        LlmRequestScheduler.TokenBucket bucket = new LlmRequestScheduler.TokenBucket();
+        bucket.configure(60, 0);
+        bucket.take(70);
+        bucket.drain();
+
+        assertEquals(-10, bucket.available, 1e-9);
+        assertEquals(11 * SECOND, bucket.nanosUntil(1));
+    }
+
+    @Test
+    public void drainingEmptiesAPartlyFullBucket() {
+        LlmRequestScheduler.TokenBucket bucket = new LlmRequestScheduler.TokenBucket();
+        bucket.configure(60, 0);
+        bucket.take(20);
+        bucket.drain();
+
+        assertEquals(SECOND, bucket.nanosUntil(1));
+    }
+}
@@ -0,0 +1,57 @@
+package services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricsRegistryTest {
+    private static final double DELTA = 1e-9;
+
+    private static MetricsRegistry.Snapshot snapshot(double... values) {
+        MetricsRegistry registry = new MetricsRegistry();
+        for (double value : values) {
+            registry.record("latency", value);
+        }
+        return registry.histogramSnapshots().get(0);
+    }
+
+    @Test
+    public void interpolatesInsideTheBucket() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        MetricsRegistry.Snapshot snapshot = snapshot(values);
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50.5, snapshot.getMean(), DELTA);
+        assertEquals(50, snapshot.percentile(0.5), DELTA);
+        assertEquals(90, snapshot.percentile(0.9), DELTA);
+        assertEquals(100, snapshot.percentile(1.0), DELTA);
+    }
+
+    @Test
+    public void staysWithinTheRecordedValues() {
+        MetricsRegistry.Snapshot snapshot = snapshot(7, 7, 7);
+
+        assertEquals(7, snapshot.percentile(0.01), DELTA);
+        assertEquals(7, snapshot.percentile(0.99), DELTA);
+    }
+
+    @Test
+    public void usesTheMaximumAboveTheLastBucket() {
+        MetricsRegistry.Snapshot snapshot = snapshot(600_000, 700_000);
+
+        assertEquals(700_000, snapshot.percentile(1.0), DELTA);
+        assertEquals(600_000, snapshot.getMin(), DELTA);
+    }
+
+    @Test
+    public void isZeroWithoutValues() {
+        MetricsRegistry.Snapshot snapshot = new MetricsRegistry.Snapshot("empty",
+                new long[MetricsRegistry.BUCKET_BOUNDS.length + 1], 0, 0, 0, 0);
+
+        assertEquals(0, snapshot.percentile(0.5), DELTA);
+        assertEquals(0, snapshot.getMean(), DELTA);
+    }
+}
@@ -0,0 +1,73 @@
+package services;
+
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+import models.Diagnostic;
+
+import java.util.List;
+
+public class QuickFixerTest extends LightJavaCodeInsightFixtureTestCase {
+    private static final String UNREPORTED_IO_EXCEPTION =
+            "unreported exception java.io.IOException; must be caught or declared to be thrown";
+
+    private String repair(String sourceCode, Diagnostic... diagnostics) {
+        return new QuickFixer(getProject(), false).repair(sourceCode, List.of(diagnostics));
+    }
+
+    private static Diagnostic error(long line, long column, String message) {
+        return new Diagnostic("Main.java", line, column, Diagnostic.ERROR, null, message);
+    }
+
+    public void testAddsMissingSemicolon() {
+        String source = "class Main {\n    void run() {\n        int count = 1\n    }\n}";
+
+        assertEquals("class Main {\n    void run() {\n        int count = 1;\n    }\n}",
+                repair(source, error(3, 22, "';' expected")));
+    }
+
+    public void testDeclaresUnreportedException() {
+        String source = "class Main {\n    void read() {\n        throw new java.io.IOException(\"x\");\n    }\n}";
+
+        assertEquals("class Main {\n    void read() throws java.io.IOException {\n        throw new java.io.IOException(\"x\");\n    }\n}",
+                repair(source, error(3, 9, UNREPORTED_IO_EXCEPTION)));
+    }
+
+    public void testExtendsExistingThrowsClause() {
+        String source = "class Main {\n    void read() throws InterruptedException {\n        throw new java.io.IOException(\"x\");\n    }\n}";
+
+        assertEquals("class Main {\n    void read() throws InterruptedException, java.io.IOException {\n        throw new java.io.IOException(\"x\");\n    }\n}",
+                repair(source, error(3, 9, UNREPORTED_IO_EXCEPTION)));
+    }
+
+    public void testLeavesExceptionsInLambdasAlone() {
+        String source = "class Main {\n    Runnable read = () -> {\n        throw new java.io.IOException(\"x\");\n    };\n}";
+
+        assertNull(repair(source, error(3, 9, UNREPORTED_IO_EXCEPTION)));
+    }
+
+    public void testAppliesEditsFromBackToFront() {
+        String source = "class Main {\n    void read() {\n        int count = 1\n        throw new java.io.IOException(\"x\");\n    }\n}";
+
+        assertEquals("class Main {\n    void read() throws java.io.IOException {\n        int count = 1;\n        throw new java.io.IOException(\"x\");\n    }\n}",
+                repair(source, error(3, 22, "';' expected"), error(4, 9, UNREPORTED_IO_EXCEPTION)));
+    }
+
+    public void testImportsClassWithUniqueName() {
+        myFixture.addClass("package util; public class Unique {}");
+        String source = "package app;\n\nclass Main {\n    Unique unique;\n}";
+
+        assertEquals("package app;\n\nimport util.Unique;\n\nclass Main {\n    Unique unique;\n}",
+                repair(source, error(4, 5, "cannot find symbol\n  symbol:   class Unique\n  location: class Main")));
+    }
+
+    public void testDoesNotGuessBetweenClassesWithTheSameName() {
+        myFixture.addClass("package util; public class Twin {}");
+        myFixture.addClass("package other; public class Twin {}");
+        String source = "package app;\n\nclass Main {\n    Twin twin;\n}";
+
+        assertNull(repair(source, error(4, 5, "cannot find symbol\n  symbol:   class Twin\n  location: class Main")));
+    }
+
+    public void testSkipsKotlin() {
+        assertNull(new QuickFixer(getProject(), true).repair("fun main() {\n    val x = 1\n}", List.of()));
+    }
+}
@@ -0,0 +1,120 @@
+package services;
+
+import models.Diagnostic;
+import models.StackFrame;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SourceScopeTest {
+    private static final String SOURCE = String.join("\n",
+            "import java.util.List;",
+            "",
+            "public class Main {",
+            "    public static void main(String[] args) {",
+            "        System.out.println(first());",
+            "    }",
+            "",
+            "    static int first() {",
+            "        String text = \"{ not a brace }\";",
+            "        return text.length()",
+            "    }",
+            "",
+            "    static int second() {",
+            "        return 2;",
+            "    }",
+            "",
+            "    static int third() {",
+            "        return 3;",
+            "    }",
+            "",
+            "    static int fourth() {",
+            "        return 4;",
+            "    }",
+            "}");
+
+    private static Diagnostic error(String file, long line) {
+        return new Diagnostic(file, line, 0, Diagnostic.ERROR, null, "';' expected");
+    }
+
+    @Test
+    public void findsTheMethodAroundTheError() {
+        SourceScope.Region region = SourceScope.find(SOURCE, List.of(error("Main.java", 10)), "Main.java");
+
+        assertNotNull(region);
+        assertEquals(7, region.getStartLine());
+        assertEquals(10, region.getEndLine());
+        assertEquals("    static int first() {", region.getText().split("\n")[0]);
+    }
+
+    @Test
+    public void coversEveryErrorLine() {
+        SourceScope.Region region = SourceScope.find(SOURCE,
+                List.of(error("Main.java", 10), error("Main.java", 14)), "Main.java");
+
+        assertNotNull(region);
+        assertEquals(7, region.getStartLine());
+        assertEquals(14, region.getEndLine());
+    }
+
+    @Test
+    public void ignoresDiagnosticsInOtherFilesAndWarnings() {
+        Diagnostic otherFile = error("Helper.java", 10);
+        Diagnostic warning = new Diagnostic("Main.java", 10, 0, Diagnostic.WARNING, null, "deprecated");
+
+        assertNull(SourceScope.find(SOURCE, List.of(otherFile, warning), "Main.java"));
+    }
+
+    @Test
+    public void locatesExceptionsByTheirFrameInTheFile() {
+        Diagnostic exception = new Diagnostic("Helper.java", 3, 0, Diagnostic.EXCEPTION,
+                "java.lang.IllegalStateException", "(no message)",
+                List.of(new StackFrame("Helper", "check", "Helper.java", 3),
+                        new StackFrame("Main", "third", "Main.java", 18)));
+
+        SourceScope.Region region = SourceScope.find(SOURCE, List.of(exception), "Main.java");
+
+        assertNotNull(region);
+        assertEquals(16, region.getStartLine());
+        assertEquals(18, region.getEndLine());
+    }
+
+    @Test
+    public void givesUpWhenTheScopeIsAlmostTheWholeFile() {
+        assertNull(SourceScope.find(SOURCE, List.of(error("Main.java", 5), error("Main.java", 22)), "Main.java"));
+    }
+
+    @Test
+    public void splicesTheAnswerIntoTheRegion() {
+        SourceScope.Region region = SourceScope.range(SOURCE, 7, 10);
+        String answer = "    static int first() {\n        return 1;\n    }\n";
+
+        SourceScope.Spliced spliced = SourceScope.splice(SOURCE, region, answer);
+
+        String[] lines = spliced.getSource().split("\n", -1);
+        assertEquals(SOURCE.split("\n", -1).length - 1, lines.length);
+        assertEquals("        return 1;", lines[8]);
+        assertEquals("    static int second() {", lines[11]);
+        assertEquals(7, spliced.getRegion().getStartLine());
+        assertEquals(9, spliced.getRegion().getEndLine());
+    }
+
+    @Test
+    public void mergesImportsOfTheAnswerIntoTheHeader() {
+        SourceScope.Region region = SourceScope.range(SOURCE, 7, 10);
+        String answer = "import java.util.List;\nimport java.util.Map;\n\n    static int first() {\n        return Map.of().size();\n    }";
+
+        SourceScope.Spliced spliced = SourceScope.splice(SOURCE, region, answer);
+
+        String[] lines = spliced.getSource().split("\n", -1);
+        assertEquals("import java.util.List;", lines[0]);
+        assertEquals("import java.util.Map;", lines[1]);
+        assertEquals("    static int first() {", lines[8]);
+        assertEquals(8, spliced.getRegion().getStartLine());
+        assertEquals(10, spliced.getRegion().getEndLine());
+    }
+}